@@ -4,6 +4,7 @@ import java.util.Arrays;
 
 import swg.crafting.resources.SWGResource;
 import swg.crafting.resources.SWGResourceClass;
+import swg.crafting.resources.SWGResourceColumns;
 import swg.crafting.resources.types.SWGMineral;
 
 /**
@@ -25,6 +26,13 @@ import swg.crafting.resources.types.SWGMineral;
  * <li><b>Expected stat: </b>a stat that is required by the particular resource
  * class, one can also say <b>expected value</b> as that is a corollary.</li>
  * </ul>
+ * <p>
+ * Resources are rated by a {@link RatingPlan} which is compiled from the
+ * weights of this instance, a resource class for caps, and the options for
+ * zero-is-max and JTL caps. The most recently used plan is retained by this
+ * instance so that repeated calls to
+ * {@link #rate(SWGResource, SWGResourceClass, boolean, boolean)} with the same
+ * arguments rate resources without allocation.
  * 
  * @author <a href="mailto:simongronlund@gmail.com">Simon Gronlund</a> aka
  *         Chimaera.Zimoon
@@ -45,6 +53,12 @@ public final class SWGWeights extends SWGValues {
      */
     private static final long serialVersionUID = -8011338581375257491L;
 
+    /**
+     * The most recently used rating plan, or {@code null}. It is replaced when
+     * a plan for other arguments or for modified weights is requested.
+     */
+    private transient volatile RatingPlan plan;
+
     /**
      * Do not use the default constructor
      */
@@ -133,7 +147,7 @@ public final class SWGWeights extends SWGValues {
      * @return the decimal value with which to adjust a value, or 1.0
      * @throws IllegalArgumentException if cap is outside [0 1000]
      */
-    private double adjCap(int cap) {
+    private static double adjCap(int cap) {
         if (cap < 0 || cap > 1000)
             throw new IllegalArgumentException("Invalid cap: " + cap);
         return cap > 0
@@ -141,31 +155,6 @@ public final class SWGWeights extends SWGValues {
                 : 1.0;
     }
 
-    /**
-     * Helper method to #getWeight(...) which returns the value after it is
-     * adjusted based on {@code zeroIsMax} and {@code weight}.
-     * <p>
-     * The return value is one of {@code value}, {@code weight*10}, or 0:
-     * <ul>
-     * <li>if {@code value > 0}: {@code value} itself</li>
-     * <li>else if {@code zeroIsMax}: the product {@code weight * 10}</li>
-     * <li>else: the value 0</li>
-     * </ul>
-     * The rationale for {@code weight * 10} is that weights are percent values
-     * in the range [0 100] but we want to return a fake <i>resource value </i>
-     * in the range [1 1000].
-     * 
-     * @param value the value to possibly adjust
-     * @param zeroIsMax {@code true} if zero values should fake a value
-     * @param weight the weight that pertains to a stat
-     * @return the value itself, or one of {@code weight*10} or 0
-     */
-    private double adjIfZero(int value, boolean zeroIsMax, double weight) {
-        return value == 0 && zeroIsMax
-                ? weight * 10.0
-                : value;
-    }
-
     /**
      * Adjusts this instance to a sum close to 100. This method overwrites the
      * non-zero weights of this instance with the adjusted values.
@@ -211,6 +200,33 @@ public final class SWGWeights extends SWGValues {
         return isValid(values);
     }
 
+    /**
+     * Returns a rating plan for the current weights of this instance and the
+     * specified arguments, see
+     * {@link #rate(SWGResource, SWGResourceClass, boolean, boolean)} for the
+     * arguments. If the most recently used plan matches it is returned,
+     * otherwise a plan is compiled and retained. A client which rates many
+     * resources in a loop should obtain a plan once and invoke
+     * {@link RatingPlan#rate(SWGResource)}; the plan is not affected if this
+     * instance is modified later.
+     * 
+     * @param caps the resource class for upper caps, or {@code null}
+     * @param zeroIsMax {@code true} if zero-values are considered
+     * @param useJTLcaps {@code true} to adjust for server-side JTL resource
+     *        rules
+     * @return a rating plan
+     */
+    public RatingPlan plan(SWGResourceClass caps, boolean zeroIsMax,
+            boolean useJTLcaps) {
+
+        RatingPlan p = plan;
+        if (p == null || !p.matches(values, caps, zeroIsMax, useJTLcaps)) {
+            p = new RatingPlan(values, caps, zeroIsMax, useJTLcaps);
+            plan = p;
+        }
+        return p;
+    }
+
     /**
      * Returns the rate for the specified resource as a decimal value in the
      * range [0.0 1000.0]. The rate is computed from the values of the resource
@@ -220,7 +236,7 @@ public final class SWGWeights extends SWGValues {
      * More formally, the returned rate is the sum of a sequence of computed
      * values. For all all non-zero weights of this instance, the resource value
      * that pertains to that stat is adjusted by by {@link #adjCap(int)} and
-     * {@link #adjIfZero(int, boolean, double)}. Thus, for each
+     * capped at 1000. Thus, for each
      * <i>w<sub>i</sub>&nbsp;</i> {@literal > 0}:
      * 
      * <pre>
@@ -232,10 +248,10 @@ public final class SWGWeights extends SWGValues {
      * greater than 1.0.
      * <p>
      * If a non-zero weight corresponds to a zero resource-value {@code
-     * zeroIsMax} determines if rather the upper cap should replace the missing
-     * value. Remember, in-game it suffices if just <i>one </i> resource meet a
-     * stat called for by the schematic, but this method rates just one resource
-     * of several resource slots.
+     * zeroIsMax} determines if rather that weight is removed and redistributed
+     * evenly to the remaining weights. Remember, in-game it suffices if just
+     * <i>one </i> resource meet a stat called for by the schematic, but this
+     * method rates just one resource of several resource slots.
      * <p>
      * If the resource class argument is {@code null} the resource class of the
      * resource determines the upper caps; effectively this means that the
@@ -254,67 +270,7 @@ public final class SWGWeights extends SWGValues {
      * @throws NullPointerException if the resource is {@code null}
      */
     public double rate(SWGResource res, SWGResourceClass caps, boolean zeroIsMax, boolean useJTLcaps) {
-        if (caps != null && !res.rc().isSub(caps.getClass()))
-            throw new IllegalArgumentException(String.format(
-                    "%s is not subclass of %s",
-                    res.rc().rcName(), caps.rcName()));
-
-        if (!hasMinimumOneStat(res))
-            return 0.0;
-
-        if (useJTLcaps && caps.isAffectedByJTLcap())
-        	caps = SWGMineral.getInstance();
-        
-        // allocating a local copy of these weights in case we have to remove
-        // one or more to redistribute without destroying this instance
-        double[] weights = new double[Stat.COUNT];
-        for (Stat s : Stat.values())
-            weights[s.i] = values[s.i];
-
-        int[] rValues = res.stats().values;
-
-        // for each weight, if a rValue does not exist we need to remove the
-        // weight and later redistribute that weight evenly to the remaining
-        // weights (this logic does not care for flawed resource data when an
-        // expected value is missing)
-        double weightSA = 0.0;
-        if (zeroIsMax)
-            for (Stat s : Stat.values()) {
-                if (weights[s.i] > 0 && rValues[s.i] <= 0)
-                    weights[s.i] = 0;
-
-                weightSA += weights[s.i];
-            }
-        else
-            weightSA = 100.0;
-
-        weightSA = 100 / weightSA; // make Sum an Adjustor
-
-        double resWeight = 0.0;
-        for (Stat s : Stat.values()) {
-            if (weights[s.i] > 0) {
-                double weight = weights[s.i];
-
-                // adjust the weights with the similar ratio as the remaining
-                // weights
-                weight = weight * weightSA;
-
-                // the resource value adjusted for the option zeroIsMax
-                double value = adjIfZero(rValues[s.i], zeroIsMax, weight);
-
-                // the complete formula to compute a weighed value with is
-                // sum += value * (1000 / cap) * weight / 100
-
-                // if possible: 1000/cap which is >= 1.00
-                double multiplier = caps != null
-                        ? adjCap(caps.max(s))
-                        : 1.0;
-
-                resWeight += Math.min(1000.0, value * multiplier)
-                        * weight / 100.0;
-            }
-        }
-        return resWeight;
+        return plan(caps, zeroIsMax, useJTLcaps).rate(res);
     }
 
     @Override
@@ -412,4 +368,247 @@ public final class SWGWeights extends SWGValues {
                 ? ww1
                 : null;
     }
+
+    /**
+     * A compiled plan for rating resources by experimental weights. A plan is
+     * created from a snapshot of the weights, a resource class for caps, and
+     * the options for zero-is-max and JTL caps; it precomputes the stats with
+     * non-zero weights and the adjustment factors for their caps so that
+     * {@link #rate(SWGResource)} rates a resource without allocation. The
+     * result is identical to that of
+     * {@link SWGWeights#rate(SWGResource, SWGResourceClass, boolean, boolean)}.
+     * <p>
+     * Instances of this type are immutable and thus thread safe.
+     */
+    public static final class RatingPlan {
+
+        /**
+         * The resource class for caps as specified by the client, or {@code
+         * null}.
+         */
+        private final SWGResourceClass caps;
+
+        /**
+         * A bit mask of {@link #stats}, bit {@link Stat#i} for each stat.
+         */
+        private final int mask;
+
+        /**
+         * The adjustment factors for the caps of {@link #stats}, see
+         * {@link SWGWeights#adjCap(int)}.
+         */
+        private final double[] multipliers;
+
+        /**
+         * The stats with non-zero weights, in the order of {@link Stat}.
+         */
+        private final Stat[] stats;
+
+        /**
+         * {@code true} if this plan adjusts for server-side JTL resource rules.
+         */
+        private final boolean useJTLcaps;
+
+        /**
+         * A snapshot of the weights this plan is compiled from.
+         */
+        private final int[] values;
+
+        /**
+         * The non-zero weights which pertain to {@link #stats}.
+         */
+        private final double[] weights;
+
+        /**
+         * {@code true} if zero-values are considered.
+         */
+        private final boolean zeroIsMax;
+
+        /**
+         * Creates a plan for the specified arguments.
+         * 
+         * @param values the weights to compile
+         * @param caps the resource class for upper caps, or {@code null}
+         * @param zeroIsMax {@code true} if zero-values are considered
+         * @param useJTLcaps {@code true} to adjust for JTL resource rules
+         * @throws IllegalArgumentException if a cap is invalid
+         */
+        RatingPlan(int[] values, SWGResourceClass caps, boolean zeroIsMax,
+                boolean useJTLcaps) {
+
+            this.values = Arrays.copyOf(values, values.length);
+            this.caps = caps;
+            this.zeroIsMax = zeroIsMax;
+            this.useJTLcaps = useJTLcaps;
+
+            SWGResourceClass cr = useJTLcaps && caps != null
+                    && caps.isAffectedByJTLcap()
+                    ? SWGMineral.getInstance()
+                    : caps;
+
+            int n = 0;
+            for (int v : values)
+                if (v > 0) ++n;
+
+            stats = new Stat[n];
+            weights = new double[n];
+            multipliers = new double[n];
+            int k = 0, m = 0;
+            for (Stat s : Stat.values()) {
+                if (values[s.i] > 0) {
+                    m |= 1 << s.i;
+                    stats[k] = s;
+                    weights[k] = values[s.i];
+                    multipliers[k] = cr != null
+                            ? adjCap(cr.max(s))
+                            : 1.0;
+                    ++k;
+                }
+            }
+            mask = m;
+        }
+
+        /**
+         * Determines if this plan is compiled from the specified arguments.
+         * 
+         * @param vals the current weights
+         * @param cps the resource class for upper caps, or {@code null}
+         * @param zim {@code true} if zero-values are considered
+         * @param jtl {@code true} to adjust for JTL resource rules
+         * @return {@code true} if this plan matches the arguments
+         */
+        boolean matches(int[] vals, SWGResourceClass cps, boolean zim,
+                boolean jtl) {
+
+            if (cps != caps || zim != zeroIsMax || jtl != useJTLcaps)
+                return false;
+            for (int i = 0; i < Stat.COUNT; ++i)
+                if (vals[i] != values[i]) return false;
+
+            return true;
+        }
+
+        /**
+         * Returns the rate for the specified resource as a decimal value in
+         * the range [0.0 1000.0], see
+         * {@link SWGWeights#rate(SWGResource, SWGResourceClass, boolean, boolean)}.
+         * 
+         * @param res a resource to rate by this plan
+         * @return the resource rate in the range [0.0 1000.0]
+         * @throws IllegalArgumentException if the resource class for caps does
+         *         not match the specified resource
+         * @throws NullPointerException if the resource is {@code null}
+         */
+        public double rate(SWGResource res) {
+            SWGResourceClass rc = res.rc();
+            if (caps != null && !rc.isSub(caps.getClass()))
+                throw new IllegalArgumentException(String.format(
+                        "%s is not subclass of %s",
+                        rc.rcName(), caps.rcName()));
+
+            boolean has = false;
+            for (Stat s : stats)
+                if (rc.has(s)) {
+                    has = true;
+                    break;
+                }
+            if (!has)
+                return 0.0;
+
+            // if a resource value does not exist the weight is removed and
+            // redistributed evenly to the remaining weights, the sum of the
+            // remaining weights makes an adjustor
+            double weightSA = 1.0;
+            if (zeroIsMax) {
+                double sum = 0.0;
+                for (int k = 0; k < stats.length; ++k)
+                    if (res.stat(stats[k]) > 0) sum += weights[k];
+
+                weightSA = 100 / sum;
+            }
+
+            double resWeight = 0.0;
+            for (int k = 0; k < stats.length; ++k) {
+                int value = res.stat(stats[k]);
+                if (zeroIsMax && value <= 0)
+                    continue; // removed weight
+
+                double weight = weights[k] * weightSA;
+
+                // sum += value * (1000 / cap) * weight / 100
+                resWeight += Math.min(1000.0, value * multipliers[k])
+                        * weight / 100.0;
+            }
+            return resWeight;
+        }
+
+        /**
+         * Returns the rates for the resources of the specified snapshot, a
+         * rate per row. The rate of a row is identical to that of
+         * {@link #rate(SWGResource)} for the resource, but rather than rating
+         * one resource at a time this method reads the snapshot one stat at a
+         * time over all rows. If the resource class of a row is not the same
+         * as or a sub-class of the resource class for caps its rate is
+         * {@link Double#NaN}, rather than an exception.
+         * 
+         * @param cols a snapshot of resources
+         * @return the rates, per row
+         * @throws NullPointerException if the argument is {@code null}
+         */
+        public double[] rate(SWGResourceColumns cols) {
+            int n = cols.size();
+            double[] ret = new double[n];
+
+            // with zero-is-max the weights of missing values are removed and
+            // the adjustor is computed per row, otherwise it is 1.0; a row
+            // without values has no adjustor and it rates 0.0
+            //
+            // the loops are without branches so that the just-in-time compiler
+            // vectorizes them over the rows; the terms of a row are added in
+            // the same order as by rate(SWGResource), and a removed weight
+            // adds 0.0 which does not change the sum, thus the rates are
+            // identical
+            double[] adj = null;
+            if (zeroIsMax) {
+                adj = new double[n];
+                for (int k = 0; k < stats.length; ++k) {
+                    short[] col = cols.column(stats[k]);
+                    double w = weights[k];
+                    for (int r = 0; r < n; ++r)
+                        adj[r] += col[r] > 0
+                                ? w
+                                : 0.0;
+                }
+                for (int r = 0; r < n; ++r)
+                    adj[r] = adj[r] > 0
+                            ? 100 / adj[r]
+                            : 0.0;
+            }
+
+            for (int k = 0; k < stats.length; ++k) {
+                short[] col = cols.column(stats[k]);
+                double w = weights[k];
+                double m = multipliers[k];
+                if (adj == null)
+                    for (int r = 0; r < n; ++r)
+                        ret[r] += Math.min(1000.0, col[r] * m) * w / 100.0;
+                else
+                    for (int r = 0; r < n; ++r)
+                        ret[r] += Math.min(1000.0, Math.max(0, col[r]) * m)
+                                * (w * adj[r]) / 100.0;
+            }
+
+            short[] exp = cols.expected();
+            boolean[] sub = caps != null
+                    ? cols.isSub(caps)
+                    : null;
+            for (int r = 0; r < n; ++r) {
+                if (sub != null && !sub[r])
+                    ret[r] = Double.NaN;
+                else if ((exp[r] & mask) == 0)
+                    ret[r] = 0.0; // no expected stat in union
+            }
+            return ret;
+        }
+    }
 }
@@ -9,6 +9,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import swg.crafting.Stat;
 import swg.crafting.resources.types.SWGOrganic;
 import swg.gui.common.SWGGui;
 import swg.model.SWGCGalaxy;
@@ -817,6 +818,21 @@ public abstract class SWGResource implements Comparable<SWGResource>, SWGGui {
         return waypointMap;
     }
 
+    /**
+     * Returns the value of the specified stat, or 0 if the stats are not set.
+     * This method does not copy the stats, see {@link #stats()}, and it is
+     * meant for code which reads a few values of many resources.
+     * 
+     * @param s a stat
+     * @return the value of the stat, or 0
+     * @throws NullPointerException if the argument is {@code null}
+     */
+    public final int stat(Stat s) {
+        return stats == null
+                ? 0
+                : stats.safeValues()[s.i];
+    }
+
     /**
      * Returns a copy of the resource stats, or {@link SWGResourceStats#BLANK}.
      * The returned object may have zero-values, but if any value is non-zero
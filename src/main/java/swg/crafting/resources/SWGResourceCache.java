@@ -1,7 +1,13 @@
 package swg.crafting.resources;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 import swg.gui.SWGFrame;
 import swg.model.SWGCGalaxy;
@@ -70,8 +76,29 @@ import swg.tools.SimplePrefsKeeper;
  * of this cache. After deserialization of resources
  * {@link SWGResourceManager#initiate()} is called.
  * <p>
+ * Besides the list of cached instances this type maintains four secondary
+ * indexes: by SWGCraft ID, by galaxy/name, by name/resource-class, and a
+ * sorted index by galaxy and lower case name. Thus the lookup methods are
+ * constant time rather than a scan of the whole cache, and the names which
+ * begin with some letters are found by a range query, see
+ * {@link #getPrefix(String, SWGCGalaxy)}. The
+ * indexes are updated when an instance is added, and the resource manager must
+ * call {@link #reindex(SWGKnownResource, long, String, SWGCGalaxy,
+ * SWGResourceClass)} when it edits any of the identifiers of a cached instance.
+ * <p>
+ * The cached instances are also partitioned by galaxy. Each partition has a
+ * version which is incremented when a resource is added to or moved from the
+ * galaxy, and when the resource manager invokes {@link #touch(SWGCGalaxy)}
+ * after it has changed the depletion state of resources at the galaxy. The set
+ * of spawning resources for a galaxy is a read-only snapshot which is shared
+ * by all callers until the version of the galaxy changes, then it is rebuilt
+ * on demand.
+ * <p>
  * This type is not thread safe. However, as only the resource manager can
- * access this instance and its member functions this should cause no problem.
+ * access this instance and its member functions this should cause no problem;
+ * the resource manager guards this cache with a read-write lock. The only
+ * exception is {@link #peekSpawning(SWGCGalaxy)} which can be invoked without
+ * a lock.
  * 
  * @author <a href="mailto:simongronlund@gmail.com">Simon Gronlund</a> aka
  *         Chimaera.Zimoon
@@ -83,6 +110,38 @@ final class SWGResourceCache {
      */
     private static List<SWGKnownResource> cache;
 
+    /**
+     * An index of the cached instances mapped to by their SWGCraft ID. Only
+     * instances with a known ID are contained by this index.
+     */
+    private static Map<Long, SWGKnownResource> byID;
+
+    /**
+     * An index of the cached instances mapped to by galaxy name and resource
+     * name, in that order.
+     */
+    private static Map<String, Map<String, SWGKnownResource>> byName;
+
+    /**
+     * An index of the cached instances mapped to by galaxy name and lower case
+     * resource name, in that order. The inner maps are sorted so that all
+     * names which begin with some letters are a contiguous range.
+     */
+    private static Map<String, NavigableMap<String, SWGKnownResource>> byPrefix;
+
+    /**
+     * An index of the cached instances mapped to by resource class and
+     * resource name, in that order. If several galaxies have a resource with
+     * equal name and class the instance that was cached first is contained.
+     */
+    private static Map<SWGResourceClass, Map<String, SWGKnownResource>> byType;
+
+    /**
+     * A map of the cached instances partitioned by galaxy, mapped to by galaxy
+     * name.
+     */
+    private static Map<String, Bucket> galaxies;
+
     /**
      * The resource manager.
      */
@@ -104,7 +163,7 @@ final class SWGResourceCache {
 
         SWGResourceCache.manager = manager;
 
-        cache = new ArrayList<SWGKnownResource>(initSize);
+        init(initSize);
     }
 
     /**
@@ -119,11 +178,14 @@ final class SWGResourceCache {
      *         false} otherwise or if the argument is {@code null}
      */
     boolean add(SWGKnownResource resource) {
-        return (resource == null)
-                ? false
-                : cache.add(resource);
+        if (resource == null || !cache.add(resource))
+            return false;
+
+        index(resource);
+        bucketAdd(resource);
+        return true;
     }
-    
+
     /**
      * Clears all contents from the resource cache. This method must only be
      * used if there is an error loading the SWGAide.DAT file, to make room for
@@ -131,6 +193,11 @@ final class SWGResourceCache {
      */
     void clear() {
         cache.clear();
+        byID.clear();
+        byName.clear();
+        byPrefix.clear();
+        byType.clear();
+        galaxies.clear();
     }
 
     /**
@@ -144,11 +211,10 @@ final class SWGResourceCache {
         if (swgCraftID <= 0)
             throw new IllegalArgumentException("Invalid ID: " + swgCraftID);
 
-        for (SWGKnownResource kr : cache) {
-            if (kr.id() == swgCraftID)
-                return kr;
-        }
-        return null;
+        SWGKnownResource kr = byID.get(Long.valueOf(swgCraftID));
+        return kr != null && kr.id() == swgCraftID
+                ? kr
+                : null;
     }
 
     /**
@@ -163,11 +229,31 @@ final class SWGResourceCache {
         if (name == null || galaxy == null)
             throw new NullPointerException("An argument is null");
 
-        for (SWGKnownResource kr : cache) {
-            if (kr.galaxy().equals(galaxy) && kr.getName().equals(name))
-                return kr;
-        }
-        return null;
+        return byName(name, galaxy);
+    }
+
+    /**
+     * Returns the first cached instance with the specified name and resource
+     * class, or {@code null}. Notice that this identifier is not unique, see
+     * note 2 for {@link #getInstance(SWGResource)}, and the galaxy of the
+     * returned instance must be examined by the caller.
+     * 
+     * @param name the proper name of the resource
+     * @param type the resource class of the resource
+     * @return a resource, or {@code null}
+     * @throws NullPointerException if an argument is {@code null}
+     */
+    SWGKnownResource getInstance(String name, SWGResourceClass type) {
+        if (name == null || type == null)
+            throw new NullPointerException("An argument is null");
+
+        Map<String, SWGKnownResource> m = byType.get(type);
+        SWGKnownResource kr = m != null
+                ? m.get(name)
+                : null;
+        return kr != null && kr.rc() == type && kr.getName().equals(name)
+                ? kr
+                : null;
     }
 
     /**
@@ -210,6 +296,36 @@ final class SWGResourceCache {
         return contains(res);
     }
 
+    /**
+     * Returns a list of the cached resources at the specified galaxy which
+     * names begin with the specified letters, ignoring case. The list is
+     * sorted alphabetically by name. This method reads a range of a sorted
+     * index and its cost does not depend on the size of this cache.
+     * 
+     * @param prefix the first letters of a resource name, or its full name
+     * @param galaxy a galaxy constant
+     * @return a list of resources, or an empty list
+     * @throws NullPointerException if an argument is {@code null}
+     */
+    List<SWGKnownResource> getPrefix(String prefix, SWGCGalaxy galaxy) {
+        if (prefix == null || galaxy == null)
+            throw new NullPointerException("An argument is null");
+
+        NavigableMap<String, SWGKnownResource> m =
+                byPrefix.get(galaxy.getName());
+        if (m == null)
+            return new ArrayList<SWGKnownResource>(0);
+
+        String p = prefix.toLowerCase(Locale.ENGLISH);
+        NavigableMap<String, SWGKnownResource> sub =
+                m.subMap(p, true, p + Character.MAX_VALUE, false);
+        List<SWGKnownResource> ret = new ArrayList<SWGKnownResource>(sub.size());
+        for (SWGKnownResource kr : sub.values())
+            if (galaxy.equals(kr.galaxy())) ret.add(kr);
+
+        return ret;
+    }
+
     /**
      * Returns a set of resources which are spawning or have spawned at the
      * specified galaxy. If no instance is found {@link SWGResourceSet#EMPTY} is
@@ -223,8 +339,12 @@ final class SWGResourceCache {
         if (galaxy == null)
             throw new NullPointerException("Argument is null");
 
-        SWGResourceSet ret = new SWGResourceSet(cache.size());
-        for (SWGKnownResource kr : cache) {
+        Bucket b = galaxies.get(galaxy.getName());
+        if (b == null)
+            return SWGResourceSet.EMPTY;
+
+        SWGResourceSet ret = new SWGResourceSet(b.members.size());
+        for (SWGKnownResource kr : b.members) {
             if (kr.galaxy().equals(galaxy))
                 ret.privateAdd(kr); // we are sure kr is valid
         }
@@ -240,9 +360,50 @@ final class SWGResourceCache {
         return cache.size();
     }
 
+    /**
+     * Returns the current snapshot of spawning resources at the specified
+     * galaxy, or {@code null} if it must be rebuilt by
+     * {@link #getSpawning(SWGCGalaxy)}. This method does not read the cached
+     * instances and it is safe to invoke without a lock.
+     * 
+     * @param galaxy a galaxy constant
+     * @return a read-only set of spawning resources, or {@code null}
+     * @throws NullPointerException if the argument is {@code null}
+     */
+    SWGResourceSet peekSpawning(SWGCGalaxy galaxy) {
+        Bucket b = galaxies.get(galaxy.getName());
+        if (b == null)
+            return SWGResourceSet.EMPTY;
+
+        Snapshot sn = b.spawning;
+        return sn != null && sn.version == b.version
+                ? sn.set
+                : null;
+    }
+
+    /**
+     * Increments the version of the resources at the specified galaxy. The
+     * resource manager must invoke this method when it has changed the
+     * depletion state of one or several resources at the galaxy, so that the
+     * snapshot of spawning resources is rebuilt. If the argument is {@code
+     * null} this method does nothing.
+     * 
+     * @param galaxy a galaxy constant
+     */
+    void touch(SWGCGalaxy galaxy) {
+        if (galaxy == null) return;
+        Bucket b = galaxies.get(galaxy.getName());
+        if (b != null) b.version++;
+    }
+
     /**
      * Returns a set of resources which are in spawn at the specified galaxy. If
      * no instances are found {@link SWGResourceSet#EMPTY} is returned.
+     * <p>
+     * The returned set is a read-only snapshot which is shared by all callers
+     * until the version of the galaxy is changed, hence it must not be sorted
+     * or otherwise modified by a caller; a client must create a copy for such
+     * purposes.
      * 
      * @param galaxy
      *            a galaxy constant denoting where the resources are in spawn
@@ -254,12 +415,24 @@ final class SWGResourceCache {
         if (galaxy == null)
             throw new NullPointerException("Argument is null");
 
-        SWGResourceSet ret = new SWGResourceSet(cache.size());
-        for (SWGKnownResource kr : cache) {
-            if (kr.galaxy().equals(galaxy) && !kr.isDepleted())
-                ret.privateAdd(kr); // we are sure kr is valid
+        Bucket b = galaxies.get(galaxy.getName());
+        if (b == null)
+            return SWGResourceSet.EMPTY;
+
+        Snapshot sn = b.spawning;
+        int v = b.version;
+        if (sn == null || sn.version != v) {
+            SWGResourceSet ret = new SWGResourceSet(b.members.size());
+            for (SWGKnownResource kr : b.members) {
+                if (kr.galaxy().equals(galaxy) && !kr.isDepleted())
+                    ret.privateAdd(kr); // we are sure kr is valid
+            }
+            sn = new Snapshot(ret.isEmpty()
+                    ? SWGResourceSet.EMPTY
+                    : ret.readOnly(), v);
+            b.spawning = sn;
         }
-        return ret.get();
+        return sn.set;
     }
 
     /**
@@ -280,10 +453,13 @@ final class SWGResourceCache {
         if (type == null || galaxy == null)
             throw new NullPointerException("An argument is null");
 
-        SWGResourceSet ret = new SWGResourceSet(cache.size());
-        Class<? extends SWGResourceClass> c = type.getClass();
-        for (SWGKnownResource kr : cache) {
-            if (kr.galaxy().equals(galaxy) && kr.rc().isSub(c))
+        Bucket b = galaxies.get(galaxy.getName());
+        if (b == null)
+            return SWGResourceSet.EMPTY;
+
+        SWGResourceSet ret = new SWGResourceSet();
+        for (SWGKnownResource kr : b.members) {
+            if (kr.galaxy().equals(galaxy) && kr.rc().isSub(type))
                 ret.privateAdd(kr); // we are sure kr is valid
         }
         return ret.get();
@@ -310,6 +486,8 @@ final class SWGResourceCache {
         SWGKnownResource prev = contains(deserialized);
         if (prev == null) {
             cache.add(deserialized);
+            index(deserialized);
+            bucketAdd(deserialized);
             return null;
         }
         return prev;
@@ -333,25 +511,244 @@ final class SWGResourceCache {
      *         null}
      */
     private static SWGKnownResource contains(SWGResource res) {
-        // Notes on performance: lists, and ArrayList in particular, have
-        // extremely good marshaling performance plus the fact that there is
-        // usually less than 500 concurrently spawning resources at a galaxy.
-        // Even if a user tracks several galaxies this method will work well.
-
         long id = res.id();
         SWGCGalaxy gx = res.galaxy();
         String name = res.getName();
 
-        if(cache == null) cache = new ArrayList<SWGKnownResource>();
-        
-        for (SWGKnownResource kr : cache) {
-            if (kr == res)
-                return kr;
-            if (id > 0 && id == kr.id())
-                return kr;
-            if (gx.equals(kr.galaxy()) && name.equals(kr.getName()))
-                return kr;
+        if (cache == null) init(16);
+
+        SWGKnownResource kr = id > 0
+                ? byID.get(Long.valueOf(id))
+                : null;
+        if (kr != null && kr.id() == id)
+            return kr;
+
+        return byName(name, gx);
+    }
+
+    /**
+     * Helper method which returns the instance for the specified name and
+     * galaxy from the galaxy/name index, or {@code null}. If the indexed
+     * instance is not equal to the arguments it is stale and {@code null} is
+     * returned.
+     * 
+     * @param name the proper name of the resource
+     * @param gxy the galaxy constant for the resource
+     * @return a resource, or {@code null}
+     */
+    private static SWGKnownResource byName(String name, SWGCGalaxy gxy) {
+        Map<String, SWGKnownResource> m = byName.get(gxy.getName());
+        SWGKnownResource kr = m != null
+                ? m.get(name)
+                : null;
+        return kr != null && gxy.equals(kr.galaxy())
+                && name.equals(kr.getName())
+                ? kr
+                : null;
+    }
+
+    /**
+     * Helper method which adds the specified resource to the indexes of this
+     * cache. An instance that is already indexed by ID or by name/galaxy is not
+     * replaced, in the same way as a scan of the cache returns the first
+     * element that matches.
+     * 
+     * @param kr the resource to index
+     */
+    private static void index(SWGKnownResource kr) {
+        if (kr.id() > 0) {
+            Long k = Long.valueOf(kr.id());
+            if (!byID.containsKey(k)) byID.put(k, kr);
+        }
+        if (kr.galaxy() != null) {
+            indexPut(byName, kr.galaxy().getName(), kr.getName(), kr);
+            prefixPut(kr);
+        }
+        indexPut(byType, kr.rc(), kr.getName(), kr);
+    }
+
+    /**
+     * Helper method which adds the specified resource to the partition for its
+     * galaxy and increments the version of the partition. If the galaxy is
+     * {@code null} this method does nothing.
+     * 
+     * @param kr the resource to add
+     */
+    private static void bucketAdd(SWGKnownResource kr) {
+        if (kr.galaxy() == null) return;
+
+        String gn = kr.galaxy().getName();
+        Bucket b = galaxies.get(gn);
+        if (b == null) {
+            b = new Bucket();
+            galaxies.put(gn, b);
+        }
+        b.members.add(kr);
+        b.version++;
+    }
+
+    /**
+     * Helper method which maps the specified resource to by the specified
+     * keys, unless there already is a mapping for the keys.
+     * 
+     * @param <K> the type of the outer key
+     * @param index the index to update
+     * @param key the outer key
+     * @param name the name of the resource
+     * @param kr the resource to index
+     */
+    private static <K> void indexPut(Map<K, Map<String, SWGKnownResource>> index,
+            K key, String name, SWGKnownResource kr) {
+
+        Map<String, SWGKnownResource> m = index.get(key);
+        if (m == null) {
+            m = new HashMap<String, SWGKnownResource>();
+            index.put(key, m);
+        }
+        if (!m.containsKey(name)) m.put(name, kr);
+    }
+
+    /**
+     * Helper method which removes the mapping for the specified keys, but only
+     * if the mapped instance is the specified resource.
+     * 
+     * @param <K> the type of the outer key
+     * @param index the index to update
+     * @param key the outer key
+     * @param name the name of the resource
+     * @param kr the resource to remove
+     */
+    private static <K> void indexRemove(
+            Map<K, Map<String, SWGKnownResource>> index,
+            K key, String name, SWGKnownResource kr) {
+
+        Map<String, SWGKnownResource> m = index.get(key);
+        if (m != null && m.get(name) == kr) m.remove(name);
+    }
+
+    /**
+     * Helper method which creates the containers of this cache. This method is
+     * invoked if SWGAide begins deserialization of resources before the
+     * resource manager has created this cache.
+     * 
+     * @param initSize initial size of the cache
+     */
+    private static void init(int initSize) {
+        cache = new ArrayList<SWGKnownResource>(initSize);
+        byID = new HashMap<Long, SWGKnownResource>(initSize);
+        byName = new HashMap<String, Map<String, SWGKnownResource>>();
+        byPrefix = new HashMap<String, NavigableMap<String, SWGKnownResource>>();
+        byType = new HashMap<SWGResourceClass, Map<String, SWGKnownResource>>();
+        galaxies = new ConcurrentHashMap<String, Bucket>();
+    }
+
+    /**
+     * Helper method which adds the specified resource to the sorted index for
+     * its galaxy, unless there already is an instance with the same name
+     * ignoring case. The galaxy of the resource must not be {@code null}.
+     * 
+     * @param kr the resource to index
+     */
+    private static void prefixPut(SWGKnownResource kr) {
+        String gn = kr.galaxy().getName();
+        NavigableMap<String, SWGKnownResource> m = byPrefix.get(gn);
+        if (m == null) {
+            m = new TreeMap<String, SWGKnownResource>();
+            byPrefix.put(gn, m);
+        }
+        String k = kr.getName().toLowerCase(Locale.ENGLISH);
+        if (!m.containsKey(k)) m.put(k, kr);
+    }
+
+    /**
+     * Updates the indexes of this cache for the specified resource, the
+     * arguments are the identifiers of the resource before it was edited. The
+     * resource manager must invoke this method after it has edited the ID,
+     * name, galaxy, or resource class of a cached instance.
+     * 
+     * @param kr the edited resource
+     * @param oldID the previous SWGCraft ID
+     * @param oldName the previous name
+     * @param oldGalaxy the previous galaxy, or {@code null}
+     * @param oldType the previous resource class
+     */
+    void reindex(SWGKnownResource kr, long oldID, String oldName,
+            SWGCGalaxy oldGalaxy, SWGResourceClass oldType) {
+
+        if (oldID > 0 && oldID != kr.id()
+                && byID.get(Long.valueOf(oldID)) == kr)
+            byID.remove(Long.valueOf(oldID));
+        if (oldGalaxy != null) {
+            indexRemove(byName, oldGalaxy.getName(), oldName, kr);
+            NavigableMap<String, SWGKnownResource> m =
+                    byPrefix.get(oldGalaxy.getName());
+            String k = oldName.toLowerCase(Locale.ENGLISH);
+            if (m != null && m.get(k) == kr) m.remove(k);
+        }
+        indexRemove(byType, oldType, oldName, kr);
+
+        index(kr);
+
+        if (kr.galaxy() != null && !kr.galaxy().equals(oldGalaxy)) {
+            Bucket b = oldGalaxy != null
+                    ? galaxies.get(oldGalaxy.getName())
+                    : null;
+            if (b != null && b.members.remove(kr)) b.version++;
+            bucketAdd(kr);
+        }
+    }
+
+    /**
+     * A partition of the cached instances for one galaxy, with its version
+     * and the most recent snapshot of spawning resources.
+     */
+    private static final class Bucket {
+
+        /**
+         * The cached instances for the galaxy, in the order they were added.
+         */
+        final List<SWGKnownResource> members =
+                new ArrayList<SWGKnownResource>(
+                        SWGResourceMgr.COLLECTION_SIZE);
+
+        /**
+         * The most recent snapshot of spawning resources at the galaxy, or
+         * {@code null} if it is not yet created.
+         */
+        volatile Snapshot spawning;
+
+        /**
+         * The version of this partition, it is only incremented while the
+         * write lock of the resource manager is held.
+         */
+        volatile int version;
+    }
+
+    /**
+     * An immutable pair of a read-only set of spawning resources and the
+     * version of the partition it was created from.
+     */
+    private static final class Snapshot {
+
+        /**
+         * A read-only set of spawning resources.
+         */
+        final SWGResourceSet set;
+
+        /**
+         * The version of the partition when the set was created.
+         */
+        final int version;
+
+        /**
+         * Creates an instance of this type.
+         * 
+         * @param set a read-only set of spawning resources
+         * @param version the version of the partition
+         */
+        Snapshot(SWGResourceSet set, int version) {
+            this.set = set;
+            this.version = version;
         }
-        return null;
     }
 }
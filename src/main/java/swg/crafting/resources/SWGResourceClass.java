@@ -3,8 +3,10 @@ package swg.crafting.resources;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -217,23 +219,43 @@ public abstract class SWGResourceClass implements Serializable,
      * Determines if this is a resource class that is a sub-type of the
      * suggested super-class. This method returns {@code true} if this instance
      * is the same class or a sub-class of the argument.
+     * <p>
+     * If the argument is the class of a resource class constant this method
+     * tests a precomputed bit set, otherwise it falls back to reflection.
      * 
      * @param zuper the suggested super-type
      * @return {@code true} if {@code this} &le; {@code zuper}
      */
     public boolean isSub(Class<? extends SWGResourceClass> zuper) {
-        return zuper.isAssignableFrom(this.getClass());
+        Integer id = Ancestry.classToID.get(zuper);
+        return id != null
+                ? Ancestry.isSub(rcID(), id.intValue())
+                : zuper.isAssignableFrom(this.getClass());
     }
 
     /**
      * Determines if this is a resource class that is a sub-type of the
-     * suggested super-class; invokes {@link #isSub(Class)}.
+     * suggested super-class. This implementation tests a precomputed bit set,
+     * see {@link #isSub(Class)}.
      * 
      * @param zuper the suggested super-class
      * @return {@code true} if {@code this} &le; {@code zuper}
      */
     public boolean isSub(SWGResourceClass zuper) {
-        return isSub(zuper.getClass());
+        return Ancestry.isSub(rcID(), zuper.rcID());
+    }
+
+    /**
+     * Determines if the resource class with ID {@code sub} is the same as or
+     * a sub-class of the resource class with ID {@code zuper}. This method
+     * tests a precomputed bit set, see {@link #isSub(Class)}.
+     * 
+     * @param sub the ID of the suggested sub-class
+     * @param zuper the ID of the suggested super-class
+     * @return {@code true} if {@code sub} &le; {@code zuper}
+     */
+    static boolean isSub(int sub, int zuper) {
+        return Ancestry.isSub(sub, zuper);
     }
 
     /**
@@ -553,6 +575,66 @@ public abstract class SWGResourceClass implements Serializable,
         return validate(stats.safeValues(), rc);
     }
 
+    /**
+     * A helper type which holds the precomputed ancestry of all resource
+     * classes. For each resource class there is a bit set with the IDs of the
+     * class itself and all of its super-classes, indexed by the SWGCraft ID of
+     * the resource class. The bit sets are computed once when this type is
+     * first used, which is after all resource class constants are created.
+     */
+    private static final class Ancestry {
+
+        /**
+         * The bit sets of ancestor IDs, indexed by resource class ID. The
+         * element at index 0 and elements for unused IDs are {@code null}.
+         */
+        static final long[][] ancestors;
+
+        /**
+         * A map of resource class IDs mapped to by the class of resource class
+         * constants.
+         */
+        static final Map<Class<?>, Integer> classToID;
+
+        static {
+            List<SWGResourceClass> rcs = SWGResourceClassInfo.swgIDtoInstance;
+            classToID = new HashMap<Class<?>, Integer>(rcs.size() * 2);
+            for (SWGResourceClass rc : rcs)
+                if (rc != null)
+                    classToID.put(rc.getClass(), Integer.valueOf(rc.rcID()));
+
+            int words = (rcs.size() + 63) >>> 6;
+            ancestors = new long[rcs.size()][];
+            for (SWGResourceClass rc : rcs) {
+                if (rc == null) continue;
+
+                long[] bits = new long[words];
+                for (Class<?> c = rc.getClass(); c != SWGResourceClass.class;
+                        c = c.getSuperclass()) {
+                    Integer id = classToID.get(c);
+                    if (id != null) bits[id.intValue() >>> 6] |= 1L << id;
+                }
+                ancestors[rc.rcID()] = bits;
+            }
+        }
+
+        /**
+         * Determines if the resource class with ID {@code sub} is the same as
+         * or a sub-class of the resource class with ID {@code zuper}.
+         * 
+         * @param sub the ID of the suggested sub-class
+         * @param zuper the ID of the suggested super-class
+         * @return {@code true} if {@code sub} &le; {@code zuper}
+         */
+        static boolean isSub(int sub, int zuper) {
+            long[] bits = sub < ancestors.length
+                    ? ancestors[sub]
+                    : null;
+            return bits != null && zuper > 0
+                    && (bits[zuper >>> 6] & (1L << zuper)) != 0;
+        }
+    }
+
     /**
      * A helper type that denotes the top-most node of the tree of resource
      * classes. This type is only used to represent the abstract topmost node of
@@ -0,0 +1,256 @@
+package swg.crafting.resources;
+
+import java.util.Arrays;
+import java.util.List;
+
+import swg.crafting.SWGValues;
+import swg.crafting.Stat;
+import swg.model.SWGPlanet;
+
+/**
+ * This type is a columnar snapshot of a set of resources. Rather than one
+ * object per resource, with its stats in yet another object, the stats of all
+ * resources are stored in one array per stat, and the resource class and the
+ * planet availability of each resource are stored in arrays of primitives.
+ * Bulk operations such as rating, filtering, and guard matching read these
+ * arrays in tight loops, see {@link SWGResourceSet#columns()} and
+ * {@link swg.crafting.SWGWeights.RatingPlan#rate(SWGResourceColumns)}.
+ * <p>
+ * The resources of a snapshot are addressed by their row, the index of the
+ * resource in the set the snapshot is created from. Methods which select
+ * resources return an array of flags which is indexed by row, and
+ * {@link #select(boolean[])} returns a set of the flagged resources in the
+ * order of the rows.
+ * <p>
+ * A snapshot reflects the resources when it was created. The resource manager
+ * shares one snapshot per galaxy for the spawning resources, it is replaced
+ * when the resources at the galaxy are updated.
+ * <p>
+ * Instances of this type are immutable and thus thread safe.
+ */
+public final class SWGResourceColumns {
+
+    /**
+     * {@code true} if bulk operations, such as the filtering and rating of
+     * read-only resource sets and the matching of resource guards, use
+     * snapshots of this type, which is the default. If the system property
+     * {@code swgaide.columns} is {@code false} they operate on one resource at
+     * a time; the results are identical.
+     */
+    public static final boolean ENABLED =
+            !"false".equalsIgnoreCase(System.getProperty("swgaide.columns"));
+
+    /**
+     * The resource class IDs of the resources, per row.
+     */
+    private final int[] classes;
+
+    /**
+     * The expected stats of the resource classes, per row. A bit is set for
+     * each stat the resource class has, bit {@link Stat#i} for a stat.
+     */
+    private final short[] expected;
+
+    /**
+     * The planet availability of the resources, per row. A bit is set for
+     * each planet the resource is available at, bit
+     * {@link SWGPlanet#ordinal()} for a planet.
+     */
+    private final int[] planets;
+
+    /**
+     * The resources, per row.
+     */
+    private final SWGKnownResource[] resources;
+
+    /**
+     * The stats of the resources, one column per stat indexed by
+     * {@link Stat#i}, each column has one value per row.
+     */
+    private final short[][] stats;
+
+    /**
+     * Creates a snapshot of the specified resources.
+     * 
+     * @param elements a list of resources
+     * @throws NullPointerException if an element is {@code null}
+     */
+    SWGResourceColumns(List<SWGKnownResource> elements) {
+        int n = elements.size();
+        resources = elements.toArray(new SWGKnownResource[n]);
+        classes = new int[n];
+        expected = new short[n];
+        planets = new int[n];
+        stats = new short[Stat.COUNT][n];
+
+        Stat[] sts = Stat.values();
+        for (int r = 0; r < n; ++r) {
+            SWGKnownResource kr = resources[r];
+            SWGResourceClass rc = kr.rc();
+            classes[r] = rc.rcID();
+
+            int e = 0;
+            for (Stat s : sts) {
+                if (rc.has(s)) e |= 1 << s.i;
+                stats[s.i][r] = (short) kr.stat(s);
+            }
+            expected[r] = (short) e;
+
+            int p = 0;
+            for (SWGPlanet pl : kr.availability())
+                p |= 1 << pl.ordinal();
+            planets[r] = p;
+        }
+    }
+
+    /**
+     * Returns the column for the specified stat, a value per row. The
+     * returned array is the internal storage of this snapshot and it <b>must
+     * not be modified</b>.
+     * 
+     * @param s a stat
+     * @return the values of the stat, per row
+     */
+    public short[] column(Stat s) {
+        return stats[s.i];
+    }
+
+    /**
+     * Returns the expected stats of the resource classes, a bit mask per row
+     * with the bit {@link Stat#i} set for each stat the resource class has.
+     * The returned array is the internal storage of this snapshot and it
+     * <b>must not be modified</b>.
+     * 
+     * @return the expected stats, per row
+     */
+    public short[] expected() {
+        return expected;
+    }
+
+    /**
+     * Returns the resource at the specified row.
+     * 
+     * @param row a row
+     * @return a resource
+     * @throws IndexOutOfBoundsException if the row is invalid
+     */
+    public SWGKnownResource get(int row) {
+        return resources[row];
+    }
+
+    /**
+     * Returns flags for the rows which have all values in union with the
+     * specified values, compare {@link SWGValues#hasAllValues(SWGResource)}.
+     * 
+     * @param v the values to match
+     * @return flags per row
+     * @throws NullPointerException if the argument is {@code null}
+     */
+    public boolean[] hasAllValues(SWGValues v) {
+        boolean[] ret = new boolean[resources.length];
+        Arrays.fill(ret, true);
+        for (Stat s : Stat.values()) {
+            if (v.value(s) <= 0) continue;
+
+            short[] col = stats[s.i];
+            for (int r = 0; r < ret.length; ++r)
+                ret[r] &= col[r] > 0;
+        }
+        return ret;
+    }
+
+    /**
+     * Returns flags for the rows which are available at the specified planet.
+     * 
+     * @param planet a planet constant
+     * @return flags per row
+     * @throws NullPointerException if the argument is {@code null}
+     */
+    public boolean[] isAvailableAt(SWGPlanet planet) {
+        int bit = 1 << planet.ordinal();
+        boolean[] ret = new boolean[resources.length];
+        for (int r = 0; r < ret.length; ++r)
+            ret[r] = (planets[r] & bit) != 0;
+        return ret;
+    }
+
+    /**
+     * Returns flags for the rows which match the specified filter, compare
+     * {@link SWGResourceFilter#isBetter(SWGResource, boolean)}. The filter is
+     * applied one stat at a time over all rows.
+     * 
+     * @param filter the filter to match
+     * @param all {@code true} if to match all non-zero values of the filter
+     * @return flags per row
+     * @throws NullPointerException if the filter is {@code null}
+     */
+    public boolean[] isBetter(SWGResourceFilter filter, boolean all) {
+        boolean[] ret = new boolean[resources.length];
+        if (all) Arrays.fill(ret, true);
+
+        for (Stat s : Stat.values()) {
+            int tv = filter.value(s);
+            if (tv <= 0) continue; // does not contribute
+
+            short[] col = stats[s.i];
+            if (all)
+                for (int r = 0; r < ret.length; ++r)
+                    ret[r] &= col[r] >= tv;
+            else
+                for (int r = 0; r < ret.length; ++r)
+                    ret[r] |= col[r] >= tv;
+        }
+        return ret;
+    }
+
+    /**
+     * Returns flags for the rows which resource class is the same as or a
+     * sub-class of the specified resource class.
+     * 
+     * @param type a resource class constant
+     * @return flags per row
+     * @throws NullPointerException if the argument is {@code null}
+     */
+    public boolean[] isSub(SWGResourceClass type) {
+        int id = type.rcID();
+        boolean[] ret = new boolean[resources.length];
+        for (int r = 0; r < ret.length; ++r)
+            ret[r] = SWGResourceClass.isSub(classes[r], id);
+        return ret;
+    }
+
+    /**
+     * Returns a set of the resources which rows are flagged, in the order of
+     * the rows. If no row is flagged {@link SWGResourceSet#EMPTY} is returned.
+     * 
+     * @param rows flags per row
+     * @return a set of resources, or {@link SWGResourceSet#EMPTY}
+     * @throws IndexOutOfBoundsException if the array is too short
+     */
+    public SWGResourceSet select(boolean[] rows) {
+        int n = 0;
+        for (int r = 0; r < resources.length; ++r)
+            if (rows[r]) ++n;
+        if (n == 0)
+            return SWGResourceSet.EMPTY;
+
+        SWGResourceSet ret = new SWGResourceSet(n);
+        for (int r = 0; r < resources.length; ++r)
+            if (rows[r]) ret.privateAdd(resources[r]);
+        return ret;
+    }
+
+    /**
+     * Returns the number of rows of this snapshot.
+     * 
+     * @return the number of resources
+     */
+    public int size() {
+        return resources.length;
+    }
+
+    @Override
+    public String toString() {
+        return "SWGResourceColumns[" + resources.length + ']';
+    }
+}
@@ -7,9 +7,11 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.Map;
 
 import swg.model.SWGCGalaxy;
 import swg.tools.ZString;
@@ -44,6 +46,13 @@ import swg.tools.ZString;
  * Only adder methods also checks the SWGCraft ID. However, see
  * {@link #indexOf(SWGResource, Comparator)}.
  * <P>
+ * The first time an element is looked up by ID, or by name and resource class,
+ * an index for the lookup is created, which is maintained by the adder methods
+ * and discarded by other modifying methods. Thus, these lookups are constant
+ * time operations for a list that is first populated and then queried, such as
+ * a download from SWGCraft.org. However, an index is not updated if the ID or
+ * the name of an element is changed after it is added to this list.
+ * <P>
  * As mentioned, this implementation provides a limited synchronization, there
  * is no guarantee against concurrent changes, between consecutive calls. This
  * should not cause a problem since this type is thought to be used in very
@@ -67,6 +76,19 @@ public final class SWGResourceList implements List<SWGResource> {
      */
     private List<SWGResource> storage;
 
+    /**
+     * An index of the elements in this list mapped to by their SWGCraft ID, or
+     * {@code null} if the index is not created. Only elements with a known ID
+     * are contained by this index.
+     */
+    private Map<Long, SWGResource> byID;
+
+    /**
+     * An index of the elements in this list mapped to by resource class and
+     * name, in that order, or {@code null} if the index is not created.
+     */
+    private Map<SWGResourceClass, Map<String, SWGResource>> byType;
+
     /**
      * Creates an empty list for resources, with an initial capacity of 10.
      */
@@ -126,8 +148,12 @@ public final class SWGResourceList implements List<SWGResource> {
             return false;
 
         synchronized (storage) {
-            if (!storage.contains(e))
-                return storage.add(e);
+            // an element with an ID that is not indexed is not contained
+            if (e.id() > 0 || !storage.contains(e)) {
+                storage.add(e);
+                index(e);
+                return true;
+            }
         }
         return false;
     }
@@ -167,6 +193,7 @@ public final class SWGResourceList implements List<SWGResource> {
     public void clear() {
         synchronized (storage) {
             storage.clear();
+            indexDiscard();
         }
     }
 
@@ -211,11 +238,12 @@ public final class SWGResourceList implements List<SWGResource> {
         if (swgcraftID <= 0)
             throw new IllegalArgumentException("Invalid ID: " + swgcraftID);
 
-        for (SWGResource r : storage)
-            if (r.id() == swgcraftID)
-                return r;
+        if (byID == null) indexCreate();
 
-        return null;
+        SWGResource r = byID.get(Long.valueOf(swgcraftID));
+        return r != null && r.id() == swgcraftID
+                ? r
+                : null;
     }
 
     /**
@@ -282,11 +310,59 @@ public final class SWGResourceList implements List<SWGResource> {
             throw new IllegalArgumentException("Not spawnable: " + type + ':'
                 + name);
 
-        for (SWGResource r : storage)
-            if (r.rc() == type && r.getName().equals(name))
-                return r;
+        if (byType == null) indexCreate();
 
-        return null;
+        Map<String, SWGResource> m = byType.get(type);
+        SWGResource r = m != null
+                ? m.get(name)
+                : null;
+        return r != null && r.rc() == type && r.getName().equals(name)
+                ? r
+                : null;
+    }
+
+    /**
+     * Helper method which adds the specified element to the indexes of this
+     * list, if they are created. An element that equals a previously indexed
+     * element is not indexed, in the same way as a scan of this list returns
+     * the first element that matches.
+     * 
+     * @param r the element to index
+     */
+    private void index(SWGResource r) {
+        if (byID != null && r.id() > 0) {
+            Long k = Long.valueOf(r.id());
+            if (!byID.containsKey(k)) byID.put(k, r);
+        }
+        if (byType != null) {
+            Map<String, SWGResource> m = byType.get(r.rc());
+            if (m == null) {
+                m = new HashMap<String, SWGResource>();
+                byType.put(r.rc(), m);
+            }
+            if (!m.containsKey(r.getName())) m.put(r.getName(), r);
+        }
+    }
+
+    /**
+     * Helper method which creates the indexes of this list from its elements.
+     */
+    private void indexCreate() {
+        synchronized (storage) {
+            byID = new HashMap<Long, SWGResource>(storage.size() * 2);
+            byType = new HashMap<SWGResourceClass, Map<String, SWGResource>>();
+            for (SWGResource r : storage)
+                index(r);
+        }
+    }
+
+    /**
+     * Helper method which discards the indexes of this list, they are created
+     * again when they are needed.
+     */
+    private void indexDiscard() {
+        byID = null;
+        byType = null;
     }
 
     /*
@@ -389,6 +465,7 @@ public final class SWGResourceList implements List<SWGResource> {
      */
     public SWGResource remove(int index) {
         synchronized (storage) {
+            indexDiscard();
             return storage.remove(index);
         }
     }
@@ -399,6 +476,7 @@ public final class SWGResourceList implements List<SWGResource> {
      */
     public boolean remove(Object o) {
         synchronized (storage) {
+            indexDiscard();
             return storage.remove(o);
         }
     }
@@ -409,6 +487,7 @@ public final class SWGResourceList implements List<SWGResource> {
      */
     public boolean removeAll(Collection<?> c) {
         synchronized (storage) {
+            indexDiscard();
             return storage.removeAll(c);
         }
     }
@@ -419,6 +498,7 @@ public final class SWGResourceList implements List<SWGResource> {
      */
     public boolean retainAll(Collection<?> c) {
         synchronized (storage) {
+            indexDiscard();
             return storage.retainAll(c);
         }
     }
@@ -432,6 +512,7 @@ public final class SWGResourceList implements List<SWGResource> {
             throw new NullPointerException("Null elements are not allowed");
 
         synchronized (storage) {
+            indexDiscard();
             return storage.set(index, element);
         }
     }
@@ -472,11 +553,10 @@ public final class SWGResourceList implements List<SWGResource> {
      */
     public SWGResourceList sublistByResourceClass(SWGResourceClass type) {
 
-        Class<? extends SWGResourceClass> typeCls = type.getClass();
         SWGResourceList result = new SWGResourceList(size());
 
         for (SWGResource r : storage) {
-            if (typeCls.isAssignableFrom(r.rc().getClass()))
+            if (r.rc().isSub(type))
                 result.storage.add(r); // surpass our checkpoints
         }
         if (result.storage.isEmpty())
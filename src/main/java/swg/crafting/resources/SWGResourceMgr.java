@@ -1,8 +1,12 @@
 package swg.crafting.resources;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import swg.SWGAide;
 import swg.gui.SWGFrame;
@@ -45,6 +49,15 @@ import swg.tools.SimplePrefsKeeper;
  * {@code swg.swgcraft} where it has access to services which have default
  * access modifiers, making the sub-type the richer type.
  * {@link SWGFrame#getResourceManager()} returns the sub-type.
+ * <p>
+ * The cache of known resources is guarded by a read-write lock. Lookups share
+ * the read lock and updates take the write lock. An update from a download
+ * takes the write lock per resource rather than for the whole download, and
+ * the set of spawning resources for a galaxy is a snapshot that is obtained
+ * without a lock while it is current; hence readers do not wait for a download
+ * to be applied. Creating a new instance is always done with the write lock
+ * held and after the cache is queried once more, which maintains the
+ * uniqueness property of {@link SWGKnownResource}.
  * 
  * @author <a href="mailto:simongronlund@gmail.com">Simon Gronlund</a> aka
  *         Chimaera.Zimoon
@@ -64,6 +77,21 @@ public class SWGResourceMgr {
      */
     private static SWGResourceCache cache;
 
+    /**
+     * The lock that guards {@link #cache} and {@link #generalMap}. Readers
+     * share the read lock, all methods which modify the cache, the general
+     * map, or the identifiers or depletion state of a known resource take the
+     * write lock.
+     */
+    private static final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * A lock which serializes updates from downloads. These updates take the
+     * write lock of {@link #lock} per resource, this lock ensures that just
+     * one download at a time is applied.
+     */
+    private static final Object downloadLock = new Object();
+
     /**
      * The standard size for a collection for all resources on a galaxy, with
      * some latitude for depleted resources which are retained for some days.
@@ -133,7 +161,7 @@ public class SWGResourceMgr {
      * loading a backup file, if one exists.
      */
     public final void clear() {
-        cache.clear();
+        clearcache();
     }
     
     /**
@@ -142,7 +170,12 @@ public class SWGResourceMgr {
      * loading a backup file, if one exists.
      */
     public static void clearcache() {
-    	cache.clear();
+        lock.writeLock().lock();
+        try {
+            cache.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
     }
 
     /**
@@ -227,7 +260,7 @@ public class SWGResourceMgr {
      * Helper method which returns a resource with the specified ID, or {@code
      * null} if none is found.
      * <p>
-     * This method is thread safe and locks on {@link #cache}.
+     * This method is thread safe and takes the read lock.
      * 
      * @param swgcraftID
      *            a unique SWGCraft ID
@@ -236,8 +269,11 @@ public class SWGResourceMgr {
      *             if the ID is invalid
      */
     protected static final SWGKnownResource cachedInstance(long swgcraftID) {
-        synchronized (cache) {
+        lock.readLock().lock();
+        try {
             return cache.getInstance(swgcraftID);
+        } finally {
+            lock.readLock().unlock();
         }
     }
 
@@ -245,7 +281,7 @@ public class SWGResourceMgr {
      * Helper method which returns a resource with {@code name} from {@code
      * galaxy}, or {@code null} if none is found.
      * <p>
-     * This method is thread safe and locks on {@link #cache}.
+     * This method is thread safe and takes the read lock.
      * 
      * @param name
      *            the proper name of the resource
@@ -258,17 +294,65 @@ public class SWGResourceMgr {
     protected static final SWGKnownResource cachedInstance(
         String name, SWGCGalaxy galaxy) {
         
-        synchronized (cache) {
+        lock.readLock().lock();
+        try {
             return cache.getInstance(name, galaxy);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Helper method which returns a list of resources from {@code galaxy} which
+     * names begin with the specified letters, ignoring case, or an empty list
+     * if none is found. The list is sorted alphabetically by name.
+     * <p>
+     * This method is thread safe and takes the read lock.
+     * 
+     * @param prefix
+     *            the first letters of a resource name, or its full name
+     * @param galaxy
+     *            a galaxy constant denoting where the resource has spawned
+     * @return a list of resources, or an empty list
+     * @throws NullPointerException
+     *             if an argument is {@code null}
+     */
+    protected static final List<SWGKnownResource> cachedPrefix(
+        String prefix, SWGCGalaxy galaxy) {
+
+        lock.readLock().lock();
+        try {
+            return cache.getPrefix(prefix, galaxy);
+        } finally {
+            lock.readLock().unlock();
         }
     }
 
+    /**
+     * Helper method which returns a columnar snapshot of the resources which
+     * are currently spawning at {@code galaxy}. The snapshot is retained by
+     * the shared set of spawning resources, see
+     * {@link #cachedSpawning(SWGCGalaxy)}, and thus it is created once per
+     * update of the resources at the galaxy.
+     * <p>
+     * This method is thread safe, see {@link #cachedSpawning(SWGCGalaxy)}.
+     * 
+     * @param galaxy
+     *            a galaxy constant denoting where the resource has spawned
+     * @return a columnar snapshot of spawning resources
+     * @throws NullPointerException
+     *             if the galaxy is {@code null}
+     */
+    public static final SWGResourceColumns cachedColumns(SWGCGalaxy galaxy) {
+        return cachedSpawning(galaxy).columns();
+    }
+
     /**
      * Helper method which returns a set of resources which are spawning or have
      * spawned at {@code galaxy}, or {@link SWGResourceSet#EMPTY} if none is
      * found.
      * <p>
-     * This method is thread safe and locks on {@link #cache}.
+     * This method is thread safe and takes the read lock.
      * 
      * @param galaxy
      *            a galaxy constant denoting where the resource has spawned
@@ -277,17 +361,23 @@ public class SWGResourceMgr {
      *             if the galaxy is {@code null}
      */
     protected static final SWGResourceSet cachedSet(SWGCGalaxy galaxy) {
-        synchronized (cache) {
+        lock.readLock().lock();
+        try {
             return cache.getSet(galaxy);
+        } finally {
+            lock.readLock().unlock();
         }
     }
 
     /**
      * Helper method which returns a set of resources which are currently
      * spawning at {@code galaxy}, or {@link SWGResourceSet#EMPTY} if none is
-     * found.
+     * found. The returned set is a read-only snapshot that is shared until the
+     * resources at the galaxy are updated, a client that must sort or modify
+     * the set must create a copy.
      * <p>
-     * This method is thread safe and locks on {@link #cache}.
+     * This method is thread safe. It takes the read lock only if the snapshot
+     * must be rebuilt.
      * 
      * @param galaxy
      *            a galaxy constant denoting where the resource has spawned
@@ -296,8 +386,15 @@ public class SWGResourceMgr {
      *             if the galaxy is {@code null}
      */
     public static final SWGResourceSet cachedSpawning(SWGCGalaxy galaxy) {
-        synchronized (cache) {
+        SWGResourceSet rs = cache.peekSpawning(galaxy);
+        if (rs != null)
+            return rs; // current snapshot, no lock
+
+        lock.readLock().lock();
+        try {
             return cache.getSpawning(galaxy);
+        } finally {
+            lock.readLock().unlock();
         }
     }
 
@@ -307,7 +404,7 @@ public class SWGResourceMgr {
      * resources' classes are equal to or inherit from the specified resource
      * class. {@link SWGResourceSet#EMPTY} is returned if none was found.
      * <p>
-     * This method is thread safe and locks on {@link #cache}.
+     * This method is thread safe and takes the read lock.
      * 
      * @param type
      *            the resource class to filter for
@@ -319,8 +416,11 @@ public class SWGResourceMgr {
      */
     protected static final SWGResourceSet cachedType(
         SWGResourceClass type, SWGCGalaxy galaxy) {
-        synchronized (cache) {
+        lock.readLock().lock();
+        try {
             return cache.getType(type, galaxy);
+        } finally {
+            lock.readLock().unlock();
         }
     }
 
@@ -351,7 +451,8 @@ public class SWGResourceMgr {
      * there is no gain in implementing a more complex logic than what this is.
      */
     private static final void generalExitMap() {
-        synchronized (cache) {
+        lock.writeLock().lock();
+        try {
             Iterator<SWGResourceSet> iter = generalMap.values().iterator();
 
             while (iter.hasNext()) {
@@ -360,6 +461,8 @@ public class SWGResourceMgr {
                 if (rs.isEmpty())
                     iter.remove();
             }
+        } finally {
+            lock.writeLock().unlock();
         }
     }
     
@@ -423,7 +526,9 @@ public class SWGResourceMgr {
      * values which are more complete than the local instance, they are not
      * updated. Such an operation must be handled by updater methods.
      * <p>
-     * This method is thread-safe and synchronizes on {@link #cache}.
+     * This method is thread-safe, it queries the cache with the read lock held
+     * and if no instance is found it takes the write lock and queries the
+     * cache once more before a new instance is created.
      * 
      * @param res
      *            the resource to find or to create the new instance from
@@ -435,12 +540,25 @@ public class SWGResourceMgr {
      */
     protected static SWGKnownResource getKnown(SWGMutableResource res) {
         SWGKnownResource knownInstance;
-        synchronized (cache) {
+        lock.readLock().lock();
+        try {
+            knownInstance = cache.getInstance(res);
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (knownInstance != null)
+            return knownInstance;
+
+        lock.writeLock().lock();
+        try {
+            // another thread may have created the instance meanwhile
             knownInstance = cache.getInstance(res);
             if (knownInstance == null) {
                 // create a new instance, cache it and add to the general map
                 knownInstance = getKnownTrusted(res);
             }
+        } finally {
+            lock.writeLock().unlock();
         }
         return knownInstance;
     }
@@ -454,7 +572,7 @@ public class SWGResourceMgr {
      * instance which did not match the argument to 100%, see comment on galaxy
      * vs. resource class in the main getter method.
      * <p>
-     * This method is thread-safe and synchronizes on {@link #cache}.
+     * This method is thread-safe and takes the write lock.
      * 
      * @param res the resource to find or to create the new instance from
      * @return a known resource
@@ -463,7 +581,8 @@ public class SWGResourceMgr {
      * @throws NullPointerException if the argument is {@code null}
      */
     protected static SWGKnownResource getKnownTrusted(SWGMutableResource res) {
-        synchronized (cache) {
+        lock.writeLock().lock();
+        try {
             if (res.rc().isSpaceOrRecycled())
                 return res.rc().spaceOrRecycled();
 
@@ -471,6 +590,8 @@ public class SWGResourceMgr {
             cacheAdd(knownInstance);
             generalAdd(knownInstance);
             return knownInstance;
+        } finally {
+            lock.writeLock().unlock();
         }
     }
 
@@ -493,17 +614,19 @@ public class SWGResourceMgr {
      *            the instance to withdraw
      */
     protected static void remove(SWGKnownResource kr) {
-        synchronized (cache) {
-            // synchronize on cache as it is the general lock
+        lock.writeLock().lock();
+        try {
             generalGet(kr.galaxy()).remove(kr);
+        } finally {
+            lock.writeLock().unlock();
         }
     }
 
     /**
      * Simple helper method which just supplements the specified argument with
-     * the unique SWGCraft ID. No other actions is performed by this method.
-     * This method must only be called from the resource manager and its
-     * sub-type.
+     * the unique SWGCraft ID. No other actions is performed by this method but
+     * updating the index of the cache. This method must only be called from
+     * the resource manager and its sub-type.
      * 
      * @param res
      *            the resource to update
@@ -515,7 +638,15 @@ public class SWGResourceMgr {
      *             if the resource is {@code null}
      */
     protected static void supplyID(SWGKnownResource res, long swgcraftID) {
-        res.id(swgcraftID);
+        lock.writeLock().lock();
+        try {
+            long oid = res.id();
+            res.id(swgcraftID);
+            if (oid != res.id())
+                cache.reindex(res, oid, res.getName(), res.galaxy(), res.rc());
+        } finally {
+            lock.writeLock().unlock();
+        }
     }
 
     /**
@@ -532,7 +663,13 @@ public class SWGResourceMgr {
      *             if the resource is {@code null}
      */
     protected static final void updateDepleted(SWGKnownResource res, long date) {
-        res.depleted(date);
+        lock.writeLock().lock();
+        try {
+            res.depleted(date);
+            cache.touch(res.galaxy());
+        } finally {
+            lock.writeLock().unlock();
+        }
     }
 
     /**
@@ -541,13 +678,29 @@ public class SWGResourceMgr {
      * local set, if is not contained in the specified list it is marked as
      * depleted, but every other instance is verified so its state is
      * not-depleted.
+     * <p>
+     * This is a hash join: the download is indexed by ID and by name and
+     * resource class once, then each local instance is probed against the
+     * index, so the cost is linear in the sizes of the two collections. The
+     * probing is made on a copy of the local set without a lock, and the
+     * changes are applied with the write lock held.
      * 
      * @param newDownload
      *            a recently downloaded list of resources
      */
     private static final void updateDepleted(SWGResourceList newDownload) {
 
-        SWGResourceSet generalSet = generalGet(newDownload.get(0).galaxy());
+        SWGKnownResource[] generalSet;
+        lock.readLock().lock();
+        try {
+            SWGResourceSet rs = generalMap.get(
+                    newDownload.get(0).galaxy().getName());
+            generalSet = rs == null
+                    ? new SWGKnownResource[0]
+                    : rs.toArray(new SWGKnownResource[rs.size()]);
+        } finally {
+            lock.readLock().unlock();
+        }
 
         // current time minus 45 minutes:
         // if an instance is not present in the download and if SWGAide is
@@ -556,6 +709,8 @@ public class SWGResourceMgr {
         long fortyFiveMinutes =
             (System.currentTimeMillis() / 1000L) - (45 * 60);
 
+        List<SWGKnownResource> revived = new ArrayList<SWGKnownResource>();
+        List<SWGKnownResource> depleted = new ArrayList<SWGKnownResource>();
         for (SWGKnownResource kr : generalSet) {
             SWGResource nr;
             if (kr.id() > 0)
@@ -567,16 +722,31 @@ public class SWGResourceMgr {
                 if (nr != null) {
                     // revert its state, it is contained in the new download
                     // maybe resurrected at SWGCraft.org
-                    kr.depleted(false);
+                    revived.add(kr);
                 }
             } else if (nr == null) {
                 SWGPlanetAvailabilityInfo pai = kr.availableFirst();
                 long fa = pai.availableDate;
 
                 if (fa < fortyFiveMinutes)
-                    updateDepleted(kr, fortyFiveMinutes); // max 45 mins off ;)
+                    depleted.add(kr);
             }
         }
+
+        if (revived.isEmpty() && depleted.isEmpty())
+            return;
+
+        lock.writeLock().lock();
+        try {
+            for (SWGKnownResource kr : revived) {
+                kr.depleted(false);
+                cache.touch(kr.galaxy());
+            }
+            for (SWGKnownResource kr : depleted)
+                updateDepleted(kr, fortyFiveMinutes); // max 45 mins off ;)
+        } finally {
+            lock.writeLock().unlock();
+        }
     }
 
     /**
@@ -591,7 +761,9 @@ public class SWGResourceMgr {
      * map of current resources</li>
      * </ol>
      * <p>
-     * This method is thread safe and locks on {@link #cache}.
+     * This method is thread safe, just one download at a time is applied and
+     * the write lock is taken per resource; the snapshot of spawning resources
+     * for the galaxy is updated when the download is applied.
      * 
      * @param newDownload
      *            a list of recently downloaded resources
@@ -600,12 +772,46 @@ public class SWGResourceMgr {
      *             important data which is {@code null}
      */
     protected static final void updateFromDownload(SWGResourceList newDownload) {
+        updateFromDownload(newDownload, newDownload);
+    }
+
+    /**
+     * Updates the local cache of resources from an incremental download. This
+     * method is similar to {@link #updateFromDownload(SWGResourceList)} but
+     * just the resources in {@code changed} are compared with their local
+     * instances, these are the resources which are new or which are edited
+     * since the previous download. The complete download is still needed to
+     * determine which local resources are depleted, but that step is a hash
+     * join which takes the write lock just for the resources that change.
+     * <p>
+     * The client must make sure that every resource in the download which is
+     * not in {@code changed} already is known in the local cache with equal
+     * data, otherwise it must be included in {@code changed}.
+     * 
+     * @param newDownload
+     *            a list of recently downloaded resources
+     * @param changed
+     *            the new and edited resources of the download
+     * @throws NullPointerException
+     *             if an argument is {@code null}, or if an element has
+     *             important data which is {@code null}
+     */
+    protected static final void updateFromDownload(
+            SWGResourceList newDownload, SWGResourceList changed) {
+
         if (newDownload.isEmpty())
             return; // safety, shouldn't happen
 
-        synchronized (cache) {            
+        synchronized (downloadLock) {
             updateDepleted(newDownload);
-            updateSpawning(newDownload);
+            updateSpawning(changed);
+
+            lock.writeLock().lock();
+            try {
+                cache.touch(newDownload.get(0).galaxy());
+            } finally {
+                lock.writeLock().unlock();
+            }
         }
     }
 
@@ -637,6 +843,36 @@ public class SWGResourceMgr {
     protected static void updateInstance(
             SWGKnownResource known, SWGMutableResource other, boolean isTrusted) {
 
+        lock.writeLock().lock();
+        long oid = known.id();
+        String on = known.getName();
+        SWGCGalaxy og = known.galaxy();
+        SWGResourceClass orc = known.rc();
+        try {
+            updateInstanceHelper(known, other, isTrusted);
+        } finally {
+            if (oid != known.id() || !on.equals(known.getName())
+                    || og != known.galaxy() || orc != known.rc())
+                cache.reindex(known, oid, on, og, orc);
+            cache.touch(known.galaxy()); // stats or planets may be updated
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Helper method which updates the known instance relative the other
+     * resource; see {@link #updateInstance(SWGKnownResource,
+     * SWGMutableResource, boolean)}, which updates the index of the cache.
+     * 
+     * @param known a known resource
+     * @param other another resource, assumed to be "better"
+     * @param isTrusted {@code true} if {@code other} is trusted
+     * @throws IllegalArgumentException if {@code other} has invalid data
+     * @throws NullPointerException if an argument is {@code null}
+     */
+    private static void updateInstanceHelper(
+            SWGKnownResource known, SWGMutableResource other, boolean isTrusted) {
+
         // galaxy
         if (other.galaxy() != null && known.id() <= 0) {
             known.galaxy(other.galaxy());
@@ -756,7 +992,13 @@ public class SWGResourceMgr {
      */
     protected static final void updatePlanet(
         SWGKnownResource res, SWGPlanetAvailabilityInfo pai) {
-        res.availability(pai); // trust the caller, will be fixed next download
+        lock.writeLock().lock();
+        try {
+            res.availability(pai); // trust the caller, fixed next download
+            cache.touch(res.galaxy());
+        } finally {
+            lock.writeLock().unlock();
+        }
     }
 
     /**
@@ -765,7 +1007,8 @@ public class SWGResourceMgr {
      * downloaded list, if it is not contained in the local cache a new
      * {@link SWGKnownResource} is created and added to the local cache;
      * otherwise it is compared with its corresponding local instance and if
-     * there are updated data fields the local instance is updated.
+     * there are updated data fields the local instance is updated. The write
+     * lock is held per resource.
      * 
      * @param download a list of recently downloaded resources
      */
@@ -778,11 +1021,16 @@ public class SWGResourceMgr {
             // case 2: not new, examine the local and update if necessary
 
             // scan cache in the case it is missing in general set
-            SWGKnownResource kr = cache.getInstance(mr);
-            if (kr == null) 
-                getKnownTrusted(mr);// case 1
-            else
-                updateInstance(kr, mr, true);                // case 2
+            lock.writeLock().lock();
+            try {
+                SWGKnownResource kr = cache.getInstance(mr);
+                if (kr == null)
+                    getKnownTrusted(mr);// case 1
+                else
+                    updateInstance(kr, mr, true);                // case 2
+            } finally {
+                lock.writeLock().unlock();
+            }
         }
     }
 }
@@ -8,9 +8,12 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
-import java.util.ListIterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
 
 import swg.crafting.SWGWeights;
@@ -29,7 +32,10 @@ import swg.tools.ZString;
  * depends on the resource manager for the uniqueness property.
  * <P>
  * Unlike {@link Set} elements are ordered similar to {@link List}. This type
- * disallows {@code null} elements. Utility methods are provided that allow for
+ * disallows {@code null} elements. Membership is determined by identity, which
+ * is valid since known resources are unique, thus {@link #add(SWGKnownResource)},
+ * {@link #contains(Object)}, and {@link #remove(Object)} are constant time
+ * operations. Utility methods are provided that allow for
  * manipulation of the set, making it simpler to locate the desired resource(s),
  * etc. For reference, see {@link SWGResourceManager} for similar methods that
  * operate at the complete cache of known resources in SWGAide.
@@ -43,6 +49,12 @@ import swg.tools.ZString;
  * Some methods return a set of known resources, if the set is empty an
  * immutable {@link Collections#emptySet()} is returned.
  * <P>
+ * A read-only set, such as the shared set of spawning resources from the
+ * resource manager, lazily creates and retains a columnar snapshot of its
+ * elements, see {@link #columns()}. The methods which filter or rate a
+ * read-only set use the snapshot rather than reading each element, unless the
+ * system property {@code swgaide.columns} is {@code false}.
+ * <P>
  * <B>Persistent Storage</B>
  * <P>
  * <B>NOTE: </B>Clients <B><U>must never store</U></B> instances of known
@@ -77,21 +89,47 @@ public final class SWGResourceSet implements Set<SWGKnownResource>,
     private static final long serialVersionUID = 5352665685156808330L;
 
     static {
-        EMPTY.storage = Collections.emptyList();
+        EMPTY.readOnly = true;
     }
 
     /**
-     * The internal storage for resources.
+     * A columnar snapshot of the elements of this set, or {@code null}. Only a
+     * read-only set retains its snapshot, see {@link #columns()}.
+     */
+    private transient volatile SWGResourceColumns columns;
+
+    /**
+     * The number of removed elements which are not yet purged from
+     * {@link #storage}.
+     */
+    private transient int holes;
+
+    /**
+     * A map of the indexes in {@link #storage} mapped to by the elements of
+     * this set, compared by identity. This map determines membership in
+     * constant time.
+     */
+    private transient Map<SWGKnownResource, Integer> members;
+
+    /**
+     * A flag which denotes if this set is read-only. Methods which modify a
+     * read-only set throw {@link UnsupportedOperationException}.
+     */
+    private transient boolean readOnly;
+
+    /**
+     * The internal storage for resources, in insertion order or in the order
+     * determined by the most recent sort.
      * <P>
-     * This implementation uses a {@link List} for simplicity and its decent
-     * performance. That is since resource objects will be searched for in
-     * several fashions and that it usually exists just a moderate number of
-     * elements to marshal.
+     * This implementation uses an {@link ArrayList} which can be indexed, and
+     * {@link #members} for membership. A removed element is replaced by {@code
+     * null} so that removal is a constant time operation, the holes are purged
+     * by {@link #elements()} before the list is read.
      * <P>
      * This class manages serialization and deserialization, thus the
      * implementation can be replaced at any time.
      */
-    private transient List<SWGKnownResource> storage;
+    private transient ArrayList<SWGKnownResource> storage;
 
     /**
      * Creates an empty set for known resources, with an initial capacity of 10.
@@ -130,6 +168,8 @@ public final class SWGResourceSet implements Set<SWGKnownResource>,
      */
     public SWGResourceSet(int initialCapacity) {
         storage = new ArrayList<SWGKnownResource>(initialCapacity);
+        members = new IdentityHashMap<SWGKnownResource, Integer>(
+                initialCapacity);
     }
 
     public boolean add(SWGKnownResource e) {
@@ -141,10 +181,13 @@ public final class SWGResourceSet implements Set<SWGKnownResource>,
         // can assume that the equals operator == works for contains(e)
 
         synchronized (storage) {
-            if (!storage.contains(e))
-                return storage.add(e);
+            checkWritable();
+            if (members.containsKey(e))
+                return false;
+
+            members.put(e, Integer.valueOf(storage.size()));
+            return storage.add(e);
         }
-        return false;
     }
 
     public boolean addAll(Collection<? extends SWGKnownResource> c) {
@@ -161,18 +204,76 @@ public final class SWGResourceSet implements Set<SWGKnownResource>,
         }
     }
 
+    /**
+     * Helper method which throws an exception if this set is read-only.
+     * 
+     * @throws UnsupportedOperationException if this set is read-only
+     */
+    private void checkWritable() {
+        if (readOnly)
+            throw new UnsupportedOperationException("Read-only set");
+    }
+
     public void clear() {
         synchronized (storage) {
+            checkWritable();
             storage.clear();
+            members.clear();
+            holes = 0;
         }
     }
 
+    /**
+     * Returns a columnar snapshot of the elements of this set, in the order
+     * of this set. A read-only set creates the snapshot once and retains it,
+     * otherwise a new snapshot is created per call.
+     * 
+     * @return a columnar snapshot of this set
+     */
+    public SWGResourceColumns columns() {
+        if (!readOnly)
+            return new SWGResourceColumns(elements());
+
+        SWGResourceColumns c = columns;
+        if (c == null)
+            columns = c = new SWGResourceColumns(elements());
+        return c;
+    }
+
     public boolean contains(Object o) {
-        return storage.contains(o);
+        return members.containsKey(o);
     }
 
     public boolean containsAll(Collection<?> c) {
-        return storage.containsAll(c);
+        for (Object o : c)
+            if (!members.containsKey(o)) return false;
+
+        return true;
+    }
+
+    /**
+     * Helper method which returns {@link #storage} after any holes from
+     * removed elements are purged. The order of the remaining elements is
+     * retained.
+     * 
+     * @return the internal storage without holes
+     */
+    private List<SWGKnownResource> elements() {
+        if (holes > 0) {
+            synchronized (storage) {
+                if (holes > 0) {
+                    int j = 0;
+                    for (int i = 0; i < storage.size(); ++i) {
+                        SWGKnownResource kr = storage.get(i);
+                        if (kr != null) storage.set(j++, kr);
+                    }
+                    storage.subList(j, storage.size()).clear();
+                    holes = 0;
+                    reindex();
+                }
+            }
+        }
+        return storage;
     }
 
     /**
@@ -197,7 +298,7 @@ public final class SWGResourceSet implements Set<SWGKnownResource>,
      *             if the index is out of range (index < 0 || index >= size())
      */
     public SWGKnownResource get(int index) {
-        return storage.get(index);
+        return elements().get(index);
     }
 
     /**
@@ -227,7 +328,7 @@ public final class SWGResourceSet implements Set<SWGKnownResource>,
             throw new IllegalArgumentException("Invalid name: " + name + ':'
                 + galaxy);
 
-        for (SWGKnownResource kr : storage)
+        for (SWGKnownResource kr : elements())
             if (kr.galaxy().equals(galaxy) && kr.getName().equals(name))
                 return kr;
 
@@ -264,7 +365,7 @@ public final class SWGResourceSet implements Set<SWGKnownResource>,
             throw new IllegalArgumentException("Not spawnable: " + type + ':'
                 + name);
 
-        for (SWGKnownResource kr : storage)
+        for (SWGKnownResource kr : elements())
             if (kr.rc() == type && kr.getName().equals(name))
                 return kr;
 
@@ -286,7 +387,7 @@ public final class SWGResourceSet implements Set<SWGKnownResource>,
         if (swgcraftID <= 0)
             throw new IllegalArgumentException("Invalid ID: " + swgcraftID);
 
-        for (SWGKnownResource kr : storage)
+        for (SWGKnownResource kr : elements())
             if (kr.id() == swgcraftID)
                 return kr;
 
@@ -294,18 +395,52 @@ public final class SWGResourceSet implements Set<SWGKnownResource>,
     }
 
     public boolean isEmpty() {
-        return storage.isEmpty();
+        return members.isEmpty();
     }
 
     /**
      * Returns an iterator over the elements in this set in proper sequence.
-     * This implementation returns a {@link ListIterator}.
+     * The iterator supports {@link Iterator#remove()} unless this set is
+     * read-only.
      * 
-     * @return an iterator over the elements in this set in proper sequence, a
-     *         {@link ListIterator}
+     * @return an iterator over the elements in this set in proper sequence
      */
     public Iterator<SWGKnownResource> iterator() {
-        return storage.iterator();
+        final List<SWGKnownResource> lst = elements();
+        return new Iterator<SWGKnownResource>() {
+            private int cursor = 0;
+            private int last = -1;
+            private final int expected = lst.size();
+
+            public boolean hasNext() {
+                return cursor < expected;
+            }
+
+            public SWGKnownResource next() {
+                if (cursor >= expected)
+                    throw new NoSuchElementException();
+                if (lst.size() != expected)
+                    throw new ConcurrentModificationException();
+
+                last = cursor++;
+                SWGKnownResource kr = lst.get(last);
+                if (kr == null) // removed by another thread or iterator
+                    throw new ConcurrentModificationException();
+                return kr;
+            }
+
+            public void remove() {
+                if (last < 0)
+                    throw new IllegalStateException();
+
+                synchronized (storage) {
+                    checkWritable();
+                    SWGKnownResource kr = lst.get(last);
+                    if (kr != null) SWGResourceSet.this.remove(kr);
+                }
+                last = -1;
+            }
+        };
     }
 
     /**
@@ -319,7 +454,26 @@ public final class SWGResourceSet implements Set<SWGKnownResource>,
      */
     void privateAdd(SWGKnownResource res) {
         // this stealth adder is just for performance
-        storage.add(res);
+        if (!members.containsKey(res)) {
+            members.put(res, Integer.valueOf(storage.size()));
+            storage.add(res);
+        }
+    }
+
+    /**
+     * Helper method for {@code SWGResourceCache} which returns a read-only set
+     * with the elements of this instance. Methods that modify the returned set
+     * throw {@link UnsupportedOperationException}, also
+     * {@link #sort(Comparator)}.
+     * 
+     * @return a read-only copy of this set
+     */
+    SWGResourceSet readOnly() {
+        SWGResourceSet ret = new SWGResourceSet(size());
+        for (SWGKnownResource kr : elements())
+            ret.privateAdd(kr);
+        ret.readOnly = true;
+        return ret;
     }
 
     /**
@@ -341,32 +495,63 @@ public final class SWGResourceSet implements Set<SWGKnownResource>,
         @SuppressWarnings("unchecked")
         List<SWGKnownResource> lst = (List<SWGKnownResource>) ois.readObject();
 
-        // in the future, create the appropriate type of storage is changed
-        // e.g. storage = new ArrayList<SWGKnownResource>(lst);
-
-        storage = lst;
+        // the stream contains a list, which is possible to be immutable
+        storage = new ArrayList<SWGKnownResource>(lst.size());
+        members = new IdentityHashMap<SWGKnownResource, Integer>(lst.size());
+        for (SWGKnownResource kr : lst)
+            if (kr != null) privateAdd(kr);
     }
 
     public boolean remove(Object o) {
         synchronized (storage) {
-            return storage.remove(o);
+            checkWritable();
+            Integer i = members.remove(o);
+            if (i == null)
+                return false;
+
+            // replace by a hole, purged by elements()
+            storage.set(i.intValue(), null);
+            ++holes;
+            return true;
         }
     }
 
+    /**
+     * Helper method which updates the indexes in {@link #members} for all
+     * elements in {@link #storage}. This method is invoked after the order of
+     * the elements is changed.
+     */
+    private void reindex() {
+        for (int i = 0; i < storage.size(); ++i)
+            members.put(storage.get(i), Integer.valueOf(i));
+    }
+
     public boolean removeAll(Collection<?> c) {
         synchronized (storage) {
-            return storage.removeAll(c);
+            boolean ret = false;
+            for (Object o : c)
+                ret |= remove(o);
+            return ret;
         }
     }
 
     public boolean retainAll(Collection<?> c) {
         synchronized (storage) {
-            return storage.retainAll(c);
+            checkWritable();
+            boolean ret = false;
+            Iterator<SWGKnownResource> iter = iterator();
+            while (iter.hasNext()) {
+                if (!c.contains(iter.next())) {
+                    iter.remove();
+                    ret = true;
+                }
+            }
+            return ret;
         }
     }
 
     public int size() {
-        return storage.size();
+        return members.size();
     }
 
     /**
@@ -374,18 +559,54 @@ public final class SWGResourceSet implements Set<SWGKnownResource>,
      * implementation is thread safe and locks on the internal collection.
      * However, non-modifying methods can query this instance.
      * <P>
+     * If the comparator is a {@link SWGWeightComparator} each element is rated
+     * once and the elements are reordered by their rates, rather than rating
+     * two elements per comparison. The order is the same.
+     * <P>
      * <B>Note: </B>This method mutates the content of this instance. If this is
      * not acceptable a copy or an array from this instance should be used.
      * 
      * @param comparator
      *            the comparator object to sort this instance by
+     * @throws UnsupportedOperationException
+     *             if this set is read-only and not empty
      */
     public void sort(Comparator<SWGKnownResource> comparator) {
         synchronized (storage) {
-            Collections.sort(storage, comparator);
+            if (members.isEmpty())
+                return; // nothing to sort, also for EMPTY
+
+            checkWritable();
+            if (comparator instanceof SWGWeightComparator)
+                sortByRate((SWGWeightComparator) comparator);
+            else
+                Collections.sort(elements(), comparator);
+            reindex();
         }
     }
 
+    /**
+     * Helper method which sorts the elements of this set by their rates,
+     * greatest rate first, see {@link SWGWeightComparator#order(double[])}.
+     * The caller must hold the lock on {@link #storage}.
+     * 
+     * @param comparator the comparator to rate the elements by
+     */
+    private void sortByRate(SWGWeightComparator comparator) {
+        List<SWGKnownResource> el = elements();
+        int n = el.size();
+        double[] rates = new double[n];
+        for (int i = 0; i < n; ++i)
+            rates[i] = comparator.rate(el.get(i));
+
+        int[] idx = SWGWeightComparator.order(rates);
+        SWGKnownResource[] sorted = new SWGKnownResource[n];
+        for (int i = 0; i < n; ++i)
+            sorted[i] = el.get(idx[i]);
+        for (int i = 0; i < n; ++i)
+            el.set(i, sorted[i]);
+    }
+
     /**
      * Returns from this set a subset of resources which all meets the
      * comparator. In particular, the specified object's method
@@ -405,11 +626,11 @@ public final class SWGResourceSet implements Set<SWGKnownResource>,
             throw new NullPointerException("Argument is null");
 
         SWGResourceSet result = new SWGResourceSet(size());
-        for (SWGKnownResource kr : storage)
+        for (SWGKnownResource kr : elements())
             if (comparable.compareTo(kr) == 0)
-                result.storage.add(kr);
+                result.privateAdd(kr);
 
-        if (result.storage.isEmpty())
+        if (result.isEmpty())
             return EMPTY;
         return result;
     }
@@ -431,17 +652,22 @@ public final class SWGResourceSet implements Set<SWGKnownResource>,
         if (planet == null)
             throw new NullPointerException("Argument is null");
 
+        if (readOnly && SWGResourceColumns.ENABLED) {
+            SWGResourceColumns c = columns();
+            return c.select(c.isAvailableAt(planet));
+        }
+
         SWGResourceSet result = new SWGResourceSet(size());
-        for (SWGKnownResource kr : storage) {
+        for (SWGKnownResource kr : elements()) {
             List<SWGPlanet> plist = kr.availability();
             for (SWGPlanet p : plist) {
                 if (p == planet) {
-                    result.storage.add(kr); // surpass our checkpoints
+                    result.privateAdd(kr); // surpass our checkpoints
                     break; // break inner loop, one instance of kr is enough
                 }
             }
         }
-        if (result.storage.isEmpty())
+        if (result.isEmpty())
             return EMPTY;
         return result;
     }
@@ -465,14 +691,18 @@ public final class SWGResourceSet implements Set<SWGKnownResource>,
      */
     public SWGResourceSet subsetBy(SWGResourceClass type) {
 
-        Class<? extends SWGResourceClass> typeCls = type.getClass();
+        if (readOnly && SWGResourceColumns.ENABLED) {
+            SWGResourceColumns c = columns();
+            return c.select(c.isSub(type));
+        }
+
         SWGResourceSet result = new SWGResourceSet(size());
 
-        for (SWGKnownResource kr : storage) {
-            if (typeCls.isAssignableFrom(kr.rc().getClass()))
-                result.storage.add(kr); // surpass our checkpoints
+        for (SWGKnownResource kr : elements()) {
+            if (kr.rc().isSub(type))
+                result.privateAdd(kr); // surpass our checkpoints
         }
-        if (result.storage.isEmpty())
+        if (result.isEmpty())
             return EMPTY;
         return result;
     }
@@ -493,12 +723,17 @@ public final class SWGResourceSet implements Set<SWGKnownResource>,
      *             if the argument is {@code null}
      */
     public SWGResourceSet subsetBy(SWGResourceFilter filter, boolean all) {
+        if (readOnly && SWGResourceColumns.ENABLED) {
+            SWGResourceColumns c = columns();
+            return c.select(c.isBetter(filter, all));
+        }
+
         SWGResourceSet result = new SWGResourceSet(size());
-        for (SWGKnownResource kr : storage) {
+        for (SWGKnownResource kr : elements()) {
             if (filter.isBetter(kr, all))
-                result.storage.add(kr); // surpass our checkpoints
+                result.privateAdd(kr); // surpass our checkpoints
         }
-        if (result.storage.isEmpty())
+        if (result.isEmpty())
             return EMPTY;
         return result;
     }
@@ -552,33 +787,230 @@ public final class SWGResourceSet implements Set<SWGKnownResource>,
             throw new IllegalArgumentException("Invalid threshold: "
                 + threshold);
 
-        Class<? extends SWGResourceClass> typeCls = capsFrom.getClass();
-        SWGResourceSet result = new SWGResourceSet(size());
+        SWGWeights.RatingPlan plan =
+            weights.plan(capsFrom, zeroIsMax, useJTLcap);
+
+        if (readOnly && SWGResourceColumns.ENABLED) {
+            // rows which are not of capsFrom are rated NaN
+            SWGResourceColumns c = columns();
+            double[] rates = plan.rate(c);
+            boolean[] rows = new boolean[rates.length];
+            for (int i = 0; i < rates.length; ++i)
+                rows[i] = rates[i] >= threshold;
+            return c.select(rows);
+        }
 
-        for (SWGKnownResource kr : storage) {
-            if (typeCls.isAssignableFrom(kr.rc().getClass())) {
-                double w = weights.rate(kr, capsFrom, zeroIsMax, useJTLcap);
+        SWGResourceSet result = new SWGResourceSet(size());
+        for (SWGKnownResource kr : elements()) {
+            if (kr.rc().isSub(capsFrom)) {
+                double w = plan.rate(kr);
                 if (w >= threshold)
-                    result.storage.add(kr); // surpass our checkpoints
+                    result.privateAdd(kr); // surpass our checkpoints
             }
         }
-        if (result.storage.isEmpty())
+        if (result.isEmpty())
             return EMPTY;
         return result;
     }
 
+    /**
+     * Returns from this set the best resources per the specified weights, at
+     * most {@code k} resources which rate is equal to or above the threshold,
+     * sorted by rate, best first. This is the same as
+     * {@link #subsetBy(SWGWeights, SWGResourceClass, boolean, boolean, double)}
+     * followed by a sort by {@link SWGWeightComparator} and truncation to
+     * {@code k} elements, resources with equal rates are in the order of this
+     * set. However, this implementation reads this set once and retains the
+     * best resources in a bounded heap; no subset is created nor sorted.
+     * Should no resource meet the requirements {@link #EMPTY} is returned.
+     * <P>
+     * The arguments are the same as for the said method, and the limit.
+     * 
+     * @param weights
+     *            the values to compute the weight of the resources from
+     * @param capsFrom
+     *            the resource class to derive caps from
+     * @param zeroIsMax
+     *            {@code true} if a zero-value should be treated as its capped
+     *            value, otherwise {@code false}
+     * @param useJTLcap
+     *            {@code true} if the resourceSet should adjust weights based on
+     *            JTL resource rules
+     * @param threshold
+     *            the minimum weight for elements in the returned set, in the
+     *            range [0.0 1000.0]
+     * @param k
+     *            the maximum number of elements in the returned set
+     * @return a sorted set of at most {@code k} resources, or {@link #EMPTY}
+     * @throws IllegalArgumentException
+     *             if an argument is invalid
+     * @throws NullPointerException
+     *             if any of the object arguments is {@code null}
+     */
+    public SWGResourceSet topBy(SWGWeights weights,
+        SWGResourceClass capsFrom, boolean zeroIsMax, boolean useJTLcap,
+        double threshold, int k) {
+
+        if (threshold > 1000)
+            threshold = 1000;
+
+        if (!weights.isValid())
+            throw new IllegalArgumentException("Invalid weights: " + weights);
+        if (threshold < 0 || threshold > 1000)
+            throw new IllegalArgumentException("Invalid threshold: "
+                + threshold);
+        if (k < 0)
+            throw new IllegalArgumentException("Invalid limit: " + k);
+
+        List<SWGKnownResource> el = elements();
+        int cap = Math.min(k, el.size());
+        if (cap == 0)
+            return EMPTY;
+
+        SWGWeights.RatingPlan plan =
+            weights.plan(capsFrom, zeroIsMax, useJTLcap);
+        double[] colRates = readOnly && SWGResourceColumns.ENABLED
+            ? plan.rate(columns())
+            : null;
+
+        // a min-heap of the best resources, the root is the worst of them;
+        // equal rates are ordered by index, a greater index is worse
+        double[] rates = new double[cap];
+        int[] indexes = new int[cap];
+        int n = 0;
+
+        for (int i = 0; i < el.size(); ++i) {
+            double w;
+            if (colRates != null)
+                w = colRates[i]; // NaN if not of capsFrom
+            else if (el.get(i).rc().isSub(capsFrom))
+                w = plan.rate(el.get(i));
+            else
+                continue;
+
+            if (!(w >= threshold))
+                continue;
+
+            if (n < cap) {
+                rates[n] = w;
+                indexes[n] = i;
+                heapUp(rates, indexes, n++);
+            } else if (Double.compare(w, rates[0]) > 0) {
+                // an equal rate has a greater index and is not better
+                rates[0] = w;
+                indexes[0] = i;
+                heapDown(rates, indexes, n);
+            }
+        }
+        if (n == 0)
+            return EMPTY;
+
+        // remove the worst from the heap, fill the array from the end
+        SWGKnownResource[] best = new SWGKnownResource[n];
+        for (int m = n; m > 0;) {
+            best[--m] = el.get(indexes[0]);
+            rates[0] = rates[m];
+            indexes[0] = indexes[m];
+            heapDown(rates, indexes, m);
+        }
+
+        SWGResourceSet result = new SWGResourceSet(n);
+        for (SWGKnownResource kr : best)
+            result.privateAdd(kr);
+        return result;
+    }
+
+    /**
+     * Helper method which moves the heap entry at the root down to its place,
+     * see {@link #heapWorse(double[], int[], int, int)}.
+     * 
+     * @param rates the rates of the heap
+     * @param indexes the indexes of the heap
+     * @param n the size of the heap
+     */
+    private static void heapDown(double[] rates, int[] indexes, int n) {
+        int i = 0;
+        while (true) {
+            int c = 2 * i + 1;
+            if (c >= n)
+                return;
+            if (c + 1 < n && heapWorse(rates, indexes, c + 1, c))
+                ++c;
+            if (!heapWorse(rates, indexes, c, i))
+                return;
+            heapSwap(rates, indexes, i, c);
+            i = c;
+        }
+    }
+
+    /**
+     * Helper method which swaps two heap entries.
+     * 
+     * @param rates the rates of the heap
+     * @param indexes the indexes of the heap
+     * @param a an entry
+     * @param b an entry
+     */
+    private static void heapSwap(double[] rates, int[] indexes, int a, int b) {
+        double r = rates[a];
+        rates[a] = rates[b];
+        rates[b] = r;
+        int x = indexes[a];
+        indexes[a] = indexes[b];
+        indexes[b] = x;
+    }
+
+    /**
+     * Helper method which moves the heap entry at the specified position up
+     * to its place, see {@link #heapWorse(double[], int[], int, int)}.
+     * 
+     * @param rates the rates of the heap
+     * @param indexes the indexes of the heap
+     * @param i the position of the entry
+     */
+    private static void heapUp(double[] rates, int[] indexes, int i) {
+        while (i > 0) {
+            int p = (i - 1) / 2;
+            if (!heapWorse(rates, indexes, i, p))
+                return;
+            heapSwap(rates, indexes, i, p);
+            i = p;
+        }
+    }
+
+    /**
+     * Helper method for {@link #topBy(SWGWeights, SWGResourceClass, boolean,
+     * boolean, double, int)} which determines if the heap entry at {@code a}
+     * is worse than the entry at {@code b}, that is a lower rate or an equal
+     * rate and a greater index.
+     * 
+     * @param rates the rates of the heap
+     * @param indexes the indexes of the heap
+     * @param a an entry
+     * @param b an entry
+     * @return {@code true} if entry {@code a} is worse than entry {@code b}
+     */
+    private static boolean heapWorse(double[] rates, int[] indexes,
+        int a, int b) {
+
+        int c = Double.compare(rates[a], rates[b]);
+        return c != 0
+            ? c < 0
+            : indexes[a] > indexes[b];
+    }
+
     public Object[] toArray() {
-        return storage.toArray();
+        return elements().toArray();
     }
 
     public <T> T[] toArray(T[] a) {
-        return storage.toArray(a);
+        return elements().toArray(a);
     }
 
     @Override
     public String toString() {
         ZString z = new ZString(getClass().getSimpleName());
-        return z.app(storage.toString()).toString();
+        return z.app(elements().toString()).toString();
     }
 
     /**
@@ -594,8 +1026,7 @@ public final class SWGResourceSet implements Set<SWGKnownResource>,
      *             emitted.
      */
     private void writeObject(ObjectOutputStream ous) throws IOException {
-        // in the future, create a list if type of storage is changed
-        List<SWGKnownResource> lst = storage;
+        List<SWGKnownResource> lst = elements();
 
         ous.defaultWriteObject();
         ous.writeObject(lst);
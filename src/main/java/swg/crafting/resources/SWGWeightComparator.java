@@ -7,6 +7,12 @@ import swg.crafting.SWGWeights;
 /**
  * A comparator for resource weights. The only method returns a value that sorts
  * in reverse order, greatest value first.
+ * <p>
+ * Each comparison rates both resources, thus a sort by this comparator rates
+ * each resource several times. {@link SWGResourceSet#sort(Comparator)} rather
+ * rates each element once by {@link #rate(SWGKnownResource)} and sorts the
+ * rates, see {@link #order(double[])}; the order is the same as that of a
+ * stable sort by this comparator.
  * 
  * @author <a href="mailto:simongronlund@gmail.com">Simon Gronlund</a> aka
  *         Chimaera.Zimoon
@@ -14,26 +20,10 @@ import swg.crafting.SWGWeights;
 public class SWGWeightComparator implements Comparator<SWGKnownResource> {
 
     /**
-     * A resource class to derive caps from, or {@code null} to use caps from
-     * the resources themselves.
+     * The rating plan for this comparator, compiled from the weights, the
+     * resource class for caps, and the options of this comparator.
      */
-    private final SWGResourceClass capsFrom;
-
-    /**
-     * The weight instance for this comparator.
-     */
-    private final SWGWeights weights;
-
-    /**
-     * {@code true} if zero-values of the resources which are in union with the
-     * specified weight should count as upper cap, {@code false} otherwise.
-     */
-    private final boolean zeroIsMax;
-
-    /**
-     * {@code true} if this object should adjust for JTL resource capping rules
-     */
-    private final boolean useJTLcap;
+    private final SWGWeights.RatingPlan plan;
 
     /**
      * Creates this instance.
@@ -45,15 +35,63 @@ public class SWGWeightComparator implements Comparator<SWGKnownResource> {
      *        specified weight should count as upper cap (zero-is-max)
      */
     public SWGWeightComparator(SWGWeights ws, SWGResourceClass rc, boolean zim, boolean useJTLcap) {
-        this.weights = ws;
-        this.capsFrom = rc;
-        this.zeroIsMax = zim;
-        this.useJTLcap = useJTLcap;
+        this.plan = ws.plan(rc, zim, useJTLcap);
     }
 
     public int compare(SWGKnownResource r1, SWGKnownResource r2) {
-        double d1 = weights.rate(r1, capsFrom, zeroIsMax, useJTLcap);
-        double d2 = weights.rate(r2, capsFrom, zeroIsMax, useJTLcap);
+        double d1 = plan.rate(r1);
+        double d2 = plan.rate(r2);
         return Double.compare(d2, d1);
     }
+
+    /**
+     * Returns the indexes of the specified rates in the order of this
+     * comparator, greatest rate first. Equal rates are ordered by their
+     * indexes, thus the order is the same as that of a stable sort. The rates
+     * are compared as by {@link Double#compare(double, double)}.
+     * 
+     * @param rates an array of rates
+     * @return an array of indexes to the rates, greatest rate first
+     */
+    static int[] order(double[] rates) {
+        int n = rates.length;
+        int[] idx = new int[n];
+        for (int i = 0; i < n; ++i)
+            idx[i] = i;
+
+        // bottom-up merge sort which is stable and compares primitives
+        int[] tmp = new int[n];
+        for (int w = 1; w < n; w <<= 1) {
+            for (int lo = 0; lo < n - w; lo += w << 1) {
+                int mid = lo + w;
+                int hi = Math.min(lo + (w << 1), n);
+                if (Double.compare(rates[idx[mid]], rates[idx[mid - 1]]) <= 0)
+                    continue; // already in order
+
+                System.arraycopy(idx, lo, tmp, lo, hi - lo);
+                int i = lo, j = mid, k = lo;
+                while (i < mid && j < hi)
+                    idx[k++] = Double.compare(rates[tmp[j]], rates[tmp[i]]) > 0
+                            ? tmp[j++]
+                            : tmp[i++];
+                while (i < mid)
+                    idx[k++] = tmp[i++];
+                while (j < hi)
+                    idx[k++] = tmp[j++];
+            }
+        }
+        return idx;
+    }
+
+    /**
+     * Returns the rate for the specified resource by the weights, caps, and
+     * options of this comparator.
+     * 
+     * @param kr a resource
+     * @return the resource rate in the range [0.0 1000.0]
+     * @throws NullPointerException if the argument is {@code null}
+     */
+    public double rate(SWGKnownResource kr) {
+        return plan.rate(kr);
+    }
 }
@@ -7,6 +7,7 @@ import swg.crafting.SWGWeights;
 import swg.crafting.resources.SWGKnownResource;
 import swg.crafting.resources.SWGResource;
 import swg.crafting.resources.SWGResourceClass;
+import swg.crafting.resources.SWGResourceColumns;
 import swg.crafting.resources.SWGResourceFilter;
 import swg.gui.SWGFrame;
 import swg.gui.common.SWGGui;
@@ -159,8 +160,7 @@ public final class SWGGuard implements
      * @return {@code true} if the resource matches this instance
      */
     boolean accept(SWGKnownResource r) {
-        if (!resourceClass.getClass().isAssignableFrom(
-                r.rc().getClass()))
+        if (!r.rc().isSub(resourceClass))
             return false;
         // XXX lets not alert on resources with zero stats mmkay
         /*if (r.stats().sum() <= 0)
@@ -172,6 +172,23 @@ public final class SWGGuard implements
                 : ret;
     }
 
+    /**
+     * Determines which resources of the specified snapshot match the criteria
+     * of this instance. This is the same as {@link #accept(SWGKnownResource)}
+     * for each resource, but the criteria are evaluated one at a time over all
+     * rows of the snapshot.
+     * 
+     * @param cols a columnar snapshot of resources
+     * @return flags per row, {@code true} if the resource matches
+     */
+    boolean[] accept(SWGResourceColumns cols) {
+        boolean[] ret = cols.isSub(resourceClass);
+        acceptHelper(cols, guardValues, ret);
+        if (guardValues2nd != null)
+            acceptHelper(cols, guardValues2nd, ret);
+        return ret;
+    }
+
     /**
      * Helper method which is used when this instance is a plain filter. This
      * method invokes {@link SWGResourceFilter#isBetter(SWGResource, boolean)}.
@@ -201,6 +218,38 @@ public final class SWGGuard implements
                 : acceptFilter(r, (SWGResourceFilter) g);
     }
 
+    /**
+     * Helper method for {@link #accept(SWGResourceColumns)} that operates on
+     * the specified guard; flags for rows which do not match are cleared.
+     * 
+     * @param cols a columnar snapshot of resources
+     * @param g a guard
+     * @param rows flags per row
+     */
+    private void acceptHelper(
+            SWGResourceColumns cols, SWGValues g, boolean[] rows) {
+
+        if (!acceptNoStats) {
+            boolean[] all = cols.hasAllValues(g);
+            for (int r = 0; r < rows.length; ++r)
+                rows[r] &= all[r];
+        }
+
+        if (isWeighted(g)) {
+            boolean useJTLCap = ((Boolean) SWGFrame.getPrefsKeeper().get(
+                    "optionUseJTLcaps", Boolean.FALSE)).booleanValue();
+
+            double[] rates = ((SWGWeights) g).plan(
+                    resourceClass, acceptNoStats, useJTLCap).rate(cols);
+            for (int r = 0; r < rows.length; ++r)
+                rows[r] &= rates[r] >= limit;
+        } else {
+            boolean[] b = cols.isBetter((SWGResourceFilter) g, true);
+            for (int r = 0; r < rows.length; ++r)
+                rows[r] &= b[r];
+        }
+    }
+
     /**
      * Helper method which is used when this instance is weighed. This method
      * invokes {@link SWGWeights#rate(SWGResource, SWGResourceClass, boolean)}
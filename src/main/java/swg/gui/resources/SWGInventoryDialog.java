@@ -212,7 +212,8 @@ final class SWGInventoryDialog extends SWGJDialog implements ActionListener {
         String act = e.getActionCommand();
         if (src == lookupButton) {
             if (wrap == null)
-                lookupResourceName();
+                lookupResourceName(
+                        (e.getModifiers() & ActionEvent.SHIFT_MASK) != 0);
             else
                 requestResourceInfo(getResourceName());
             return;
@@ -417,8 +418,10 @@ final class SWGInventoryDialog extends SWGJDialog implements ActionListener {
      * <ol>
      * <li>Validate the text from the resource name input field, possibly just
      * initial letters.</li>
-     * <li>Lookup the input at swgaide.com and obtain a list of possible
-     * resources.</li>
+     * <li>Lookup the input and obtain a list of possible resources. Resources
+     * which are known locally are listed promptly and swgaide.com is asked only
+     * if none is found, or if {@code remote} is {@code true}; the user selects
+     * the latter by holding Shift while clicking the lookup button.</li>
      * </ol>
      * <p>
      * <dl>
@@ -446,8 +449,10 @@ final class SWGInventoryDialog extends SWGJDialog implements ActionListener {
      * </dl>
      * Basically, this method either does nothing, calls {@code
      * obtainResourceInfo(String)}, or defers further actions to the user.
+     * 
+     * @param remote {@code true} to lookup the input at swgaide.com
      */
-    private void lookupResourceName() {
+    private void lookupResourceName(boolean remote) {
         String resName = getResourceName();
         if (resName == null)
             return;
@@ -471,7 +476,7 @@ final class SWGInventoryDialog extends SWGJDialog implements ActionListener {
         SWGCGalaxy gxy = getGalaxy();
 
         List<String> response = ((SWGInventoryTab) parent).
-                lookupResources(resName, gxy);
+                lookupResources(resName, gxy, remote);
 
         reset();
         galaxyList.setSelectedItem(gxy);
@@ -650,7 +655,8 @@ final class SWGInventoryDialog extends SWGJDialog implements ActionListener {
         box.add(Box.createHorizontalStrut(3));
 
         JButton lb = new JButton("Lookup");
-        lb.setToolTipText("Lookup resource name at swgaide.com");
+        lb.setToolTipText("Lookup resource name, "
+                + "Shift-click to lookup at swgaide.com");
         lb.setMnemonic('L');
         lb.addActionListener(this);
         travOrder.add(lb);
@@ -26,6 +26,7 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.StringTokenizer;
 import java.util.Vector;
@@ -788,16 +789,43 @@ public final class SWGInventoryTab extends JPanel {
         return dl;
     }
 
+    /**
+     * Helper method which parses the records of the specified parser and
+     * returns a list of inventory wrappers, or {@code null} if there is an
+     * error which is communicated to the user. The import is a pipeline:
+     * <ol>
+     * <li>all records are parsed and validated, without communication with
+     * SWGCraft.org</li>
+     * <li>the resource names are deduplicated and resolved in one batch, see
+     * {@link SWGResourceManager#getInstances(java.util.Collection, SWGCGalaxy)};
+     * locally known resources are resolved from the cache, the remaining ones
+     * with a bounded number of concurrent lookups</li>
+     * <li>the wrappers are created in the order of the records, a resource
+     * which is not known is created from the stats of its record</li>
+     * </ol>
+     * The caller adds all wrappers in one batch.
+     * 
+     * @param parser a CSV parser
+     * @param curAss the current assignee
+     * @param lAss the known assignees, or {@code null}
+     * @param curGxy the current galaxy
+     * @return a list of wrappers, or {@code null}
+     * @throws Throwable if there is an error
+     */
     private List<SWGInventoryWrapper> fileImportParse(CSVParser parser, String curAss, List<String> lAss,
 			SWGCGalaxy curGxy) throws Throwable {
     	importCounter = 0;
-        List<SWGInventoryWrapper> ret = new ArrayList<SWGInventoryWrapper>();
-    	
+        List<ImportRow> rows = new ArrayList<ImportRow>(importLines);
+        List<String> names = new ArrayList<String>(importLines);
+
     	SWGCGalaxy gxy;
     	for (CSVRecord record : parser) {
     		++importCounter;
-            frame.putToStatbar(null,null);
-            
+            if (importCounter % 100 == 0)
+                frame.putToStatbar(String.format("%s(%s) - Reading",
+                        Integer.toString(importCounter),
+                        Integer.toString(importLines)), null);
+
     		// first see if we even have a proper galaxy and if it's correct one before proceeding.
     		String g = record.get("galaxy");
     		if (SWGCGalaxy.isNameValid(g)) {
@@ -846,7 +874,6 @@ public final class SWGInventoryTab extends JPanel {
             }
 
             SWGResourceClass cls = null;
-            SWGKnownResource res = null;
             if (cln != null && SWGResourceClass.rcID(cln) >= 0)
                 cls = SWGResourceClass.rc(cln);
             if (cls == null && clt != null && SWGResourceClass.rcID(clt) >= 0)
@@ -869,25 +896,30 @@ public final class SWGInventoryTab extends JPanel {
                 }
             }
 
-            if (cls.isSpaceOrRecycled()) {
-                res = cls.spaceOrRecycled();
-                res.galaxy(gxy);
-            } else {
-            	// lookup by name
-            	if(res==null && name != null && name.length() >= 3) {
-            		frame.putToStatbar(String.format(
-            				"%s(%s) - Lookup %s @ %s",
-            				Integer.toString(importCounter),
-            				Integer.toString(importLines),
-            				name, gxy.getName()),null);
-            		res = SWGResourceManager.getInstance(name, gxy);
-            	}
-            	//}
-            }
+            ImportRow row = new ImportRow(record, ass, cls, name);
+            if (!cls.isSpaceOrRecycled() && name != null) names.add(name);
+            rows.add(row);
+    	}
+
+        // resolve all names in one batch, duplicates are resolved once
+        Map<String, SWGKnownResource> known =
+                SWGResourceManager.getInstances(names, curGxy);
+
+        List<SWGInventoryWrapper> ret =
+                new ArrayList<SWGInventoryWrapper>(rows.size());
+        for (ImportRow row : rows) {
+            CSVRecord record = row.record;
+            SWGKnownResource res = null;
+            if (row.cls.isSpaceOrRecycled()) {
+                res = row.cls.spaceOrRecycled();
+                res.galaxy(curGxy);
+            } else if (row.name != null)
+                res = known.get(row.name.toLowerCase(Locale.ENGLISH));
+
             // if res is still null then we will assume it's a local resource
             if (res == null) {
-                SWGMutableResource mr = new SWGMutableResource(name, cls);
-                mr.galaxy(gxy);
+                SWGMutableResource mr = new SWGMutableResource(row.name, row.cls);
+                mr.galaxy(curGxy);
                 SWGResourceStats stats = new SWGResourceStats();
                 for (Stat s : Stat.values()) {
                 	stats.set(s, ZNumber.intVal(record.get(s.getName().toUpperCase())));
@@ -906,7 +938,7 @@ public final class SWGInventoryTab extends JPanel {
             // finally, we have a resource
 
             // Create an inventory wrapper from the info
-            SWGInventoryWrapper wr = new SWGInventoryWrapper(res, ass);
+            SWGInventoryWrapper wr = new SWGInventoryWrapper(res, row.assignee);
             // get and set the amount
             long amt = Long.parseLong(record.get("amount"));
             if (amt >= 0) wr.setAmount(amt);
@@ -925,6 +957,9 @@ public final class SWGInventoryTab extends JPanel {
             
             ret.add(wr);
     	}
+        frame.putToStatbar(String.format("%s(%s) - Adding to inventory",
+                Integer.toString(ret.size()),
+                Integer.toString(importLines)), null);
 		return ret;
 	}
 
@@ -1363,8 +1398,28 @@ public final class SWGInventoryTab extends JPanel {
      * @throws NullPointerException if an argument is {@code null}
      */
     List<String> lookupResources(String string, SWGCGalaxy galaxy) {
+        return lookupResources(string, galaxy, false);
+    }
+
+    /**
+     * Helper method which return a list of strings which denote resources for
+     * the specified string and galaxy, see
+     * {@link #lookupResources(String, SWGCGalaxy)}. If {@code remote} is
+     * {@code false} resources which are known locally are listed and
+     * swgaide.com is asked only if none is found, otherwise swgaide.com is
+     * asked.
+     * 
+     * @param string the first letters of a resource name, or its full name
+     * @param galaxy the galaxy for the resource
+     * @param remote {@code true} to ask swgaide.com
+     * @return a list of resources, or one string which begins with "ERROR"
+     * @throws NullPointerException if an argument is {@code null}
+     */
+    List<String> lookupResources(String string, SWGCGalaxy galaxy,
+            boolean remote) {
+
         SWGSoapListResResponse resp =
-                SWGResourceManager.getResources(string, galaxy);
+                SWGResourceManager.getResources(string, galaxy, remote);
 
         ArrayList<String> retList = new ArrayList<String>();
         if (resp.getFaultMessage() != null)
@@ -2708,6 +2763,50 @@ public final class SWGInventoryTab extends JPanel {
     	}
     }
 
+    /**
+     * A helper type for the CSV import which holds a parsed and validated
+     * record until the resource names are resolved, see
+     * {@link SWGInventoryTab#fileImportParse(CSVParser, String, List, SWGCGalaxy)}.
+     */
+    private static final class ImportRow {
+
+        /**
+         * The assignee for the record.
+         */
+        final String assignee;
+
+        /**
+         * The resource class for the record.
+         */
+        final SWGResourceClass cls;
+
+        /**
+         * The resource name for the record, or {@code null}.
+         */
+        final String name;
+
+        /**
+         * The parsed record.
+         */
+        final CSVRecord record;
+
+        /**
+         * Creates an instance of this type.
+         * 
+         * @param record the parsed record
+         * @param assignee the assignee
+         * @param cls the resource class
+         * @param name the resource name, or {@code null}
+         */
+        ImportRow(CSVRecord record, String assignee, SWGResourceClass cls,
+                String name) {
+            this.record = record;
+            this.assignee = assignee;
+            this.cls = cls;
+            this.name = name;
+        }
+    }
+
     /**
      * The model for the main table of inventory entries.
      * 
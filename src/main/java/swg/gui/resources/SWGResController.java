@@ -35,6 +35,7 @@ import swg.crafting.resources.ResourceUpdate;
 import swg.crafting.resources.SWGKnownResource;
 import swg.crafting.resources.SWGPlanetAvailabilityInfo;
 import swg.crafting.resources.SWGResourceClass;
+import swg.crafting.resources.SWGResourceColumns;
 import swg.crafting.resources.SWGResourceFilter;
 import swg.crafting.resources.SWGResourceSet;
 import swg.crafting.resources.SWGWayPointInfo;
@@ -1013,6 +1014,12 @@ public final class SWGResController implements UpdateSubscriber {
         boolean alertOnce = ((Boolean) SWGFrame.getPrefsKeeper().get(
                 "resourceGuardAlertOnce", Boolean.FALSE)).booleanValue();
 
+        // the guards are matched over a columnar snapshot of the resources,
+        // unless snapshots are disabled
+        SWGResourceColumns cols = SWGResourceColumns.ENABLED
+                ? resources.columns()
+                : null;
+
         int ret = 0;
         for (SWGGuard g : guards(gxy)) {
             boolean wasAlarmed = g.resourceRecentSpawnDate > 0;
@@ -1022,21 +1029,28 @@ public final class SWGResController implements UpdateSubscriber {
             g.resourceRecentSpawnDate = 0;
             if (!g.useAlarm) continue; // reset but no reason to continue
 
+            boolean[] accepted = cols != null
+                    ? g.accept(cols)
+                    : null;
+            int i = 0;
             for (SWGKnownResource r : resources) {
+                // rows of the snapshot are in the order of the set
+                if (accepted != null
+                        ? !accepted[i++]
+                        : !g.accept(r)) continue;
                 if (harvesterActive(r, gxy)) continue;
-                if (g.accept(r)) {
-                    SWGPlanetAvailabilityInfo pai = r.availableFirst();
-                    long rt = pai.available();
-                    if (rt > ageLimit) {
-                        // for each triggered guard, find the most recent
-                        // resource and use its first-available date
-                        if (rt > g.resourceRecentSpawnDate)
-                            g.resourceRecentSpawnDate = rt;
-
-                        ret |= (rt > newSpawnLimit || allowSound)
-                                ? -1 // allow sound
-                                : 1; // alert but no sound
-                    }
+
+                SWGPlanetAvailabilityInfo pai = r.availableFirst();
+                long rt = pai.available();
+                if (rt > ageLimit) {
+                    // for each triggered guard, find the most recent
+                    // resource and use its first-available date
+                    if (rt > g.resourceRecentSpawnDate)
+                        g.resourceRecentSpawnDate = rt;
+
+                    ret |= (rt > newSpawnLimit || allowSound)
+                            ? -1 // allow sound
+                            : 1; // alert but no sound
                 }
             }
         }
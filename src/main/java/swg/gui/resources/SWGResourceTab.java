@@ -153,6 +153,13 @@ public final class SWGResourceTab extends JTabbedPane implements
      */
     private SWGResourceSet spawningResources;
 
+    /**
+     * The shared, read-only set of spawning resources that
+     * {@link #spawningResources} is sorted from. A new instance from the
+     * resource manager denotes that the resources are updated.
+     */
+    private SWGResourceSet spawningSource;
+
     /**
      * The GUI panel for manually submitting resources to swgaide.com.
      */
@@ -448,9 +455,7 @@ public final class SWGResourceTab extends JTabbedPane implements
      * @param gxy the galaxy constant for the updated galaxy
      */
     private void galaxyUpdated(SWGCGalaxy gxy) {
-        SWGResourceSet rs = SWGResourceManager.getSpawning(gxy);
-        rs.sort(ageComparator); // sort before visible for others
-        spawningResources = rs;
+        spawningSorted(SWGResourceManager.getSpawning(gxy));
         if (depletedTab != null)
             depletedTab.resetGUI();
     }
@@ -605,9 +610,8 @@ public final class SWGResourceTab extends JTabbedPane implements
         if (!isGuiFinished) {
             galaxyUpdated(SWGFrame.getSelectedGalaxy());
         } else {
-        	SWGResourceSet rs = SWGResourceManager.cachedSpawning(SWGFrame.getSelectedGalaxy());
-            rs.sort(ageComparator); // sort before visible for others
-            spawningResources = rs;
+            spawningSorted(SWGResourceManager.cachedSpawning(
+                    SWGFrame.getSelectedGalaxy()));
         }
    
         return spawningResources == null
@@ -615,6 +619,24 @@ public final class SWGResourceTab extends JTabbedPane implements
                 : spawningResources;
     }
 
+    /**
+     * Helper method which sets {@link #spawningResources} to a sorted copy of
+     * the specified set. The set from the resource manager is read-only and it
+     * is the same instance until its galaxy is updated, hence, if the argument
+     * is the same as the previous this method does nothing.
+     * 
+     * @param rs a set of spawning resources from the resource manager
+     */
+    private void spawningSorted(SWGResourceSet rs) {
+        if (rs == spawningSource && spawningResources != null)
+            return;
+
+        SWGResourceSet copy = new SWGResourceSet(rs);
+        copy.sort(ageComparator); // sort before visible for others
+        spawningResources = copy;
+        spawningSource = rs;
+    }
+
     /**
      * Helper method which parses the specified string array for names of stats
      * and sets their index respectively in the specified integer array.
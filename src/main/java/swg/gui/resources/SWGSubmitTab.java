@@ -14,8 +14,11 @@ import java.net.URL;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.regex.Matcher;
@@ -2109,6 +2112,13 @@ final class SWGSubmitTab extends JPanel {
      * submitNew(SWGMutableResource)}, or if it is a resource amended to {code
      * submitEdit(SWGMutableResource, SWGKnownResource)}, or if it is a
      * historical resource {@code submitOld(SWGMutableResource)}.
+     * <p>
+     * The elements are submitted by a few concurrent SOAP calls, see
+     * {@link SWGResourceManager#submitPipelined(List)}, and the GUI list is
+     * refreshed as each element completes. Elements with the same name are
+     * submitted in order by one task so that they never race each other.
+     * Error messages and similarly named resources are collected in the order
+     * of the list, just as if the elements were submitted one by one.
      * 
      * @param notes a list of objects containing mutable resources to submit,
      *        and string which are ignored
@@ -2118,36 +2128,89 @@ final class SWGSubmitTab extends JPanel {
      *        is about historical resources
      * @return the empty string if there is no error, otherwise an error message
      */
-    private String submitResources(
-            List<Object> notes, SWGResourceSet set, List<Wrapper> sim) {
+    private String submitResources(final List<Object> notes,
+            final SWGResourceSet set, final List<Wrapper> sim) {
 
-        ZString error = new ZString();
+        // group by name, the groups are ordered by their first element
+        Map<String, List<Integer>> groups =
+                new LinkedHashMap<String, List<Integer>>();
         for (int i = 0; i < notes.size(); ++i) {
             Object o = notes.get(i);
             if (o instanceof SWGMutableResource) {
-                SWGMutableResource mr = (SWGMutableResource) o;
-
-                if (sim == null) {
-                    error.app(submitOld(mr));
-                } else if (mr.id() <= 0) {
-                    Object r = submitNew(mr);
-
-                    if (r instanceof String)
-                        error.app(r);
-                    else {
-                        SWGSoapNOResResponse k = (SWGSoapNOResResponse) r;
-                        Wrapper w = SWGSimilarNameDialog.wrapperInstance(k, mr);
-                        sim.add(w);
+                String n = ((SWGMutableResource) o).getName();
+                n = n == null
+                        ? ""
+                        : n.toLowerCase(Locale.ENGLISH);
+                List<Integer> g = groups.get(n);
+                if (g == null) {
+                    g = new ArrayList<Integer>(1);
+                    groups.put(n, g);
+                }
+                g.add(Integer.valueOf(i));
+            }
+        }
+
+        // results[i] is written by exactly one task, it is safely read once
+        // the pipeline returns
+        final Object[] results = new Object[notes.size()];
+        List<Callable<Void>> tasks =
+                new ArrayList<Callable<Void>>(groups.size());
+        for (final List<Integer> g : groups.values()) {
+            tasks.add(new Callable<Void>() {
+
+                @Override
+                public Void call() {
+                    for (Integer i : g) {
+                        SWGMutableResource mr =
+                                (SWGMutableResource) notes.get(i.intValue());
+                        results[i.intValue()] = submitResource(mr, set, sim);
+                        updateMultiList();
                     }
-                } else {
-                    error.app(submitEdit(mr, set.getByID(mr.id())));
+                    return null;
                 }
-                updateMultiList();
+            });
+        }
+        SWGResourceManager.submitPipelined(tasks);
+
+        ZString error = new ZString();
+        for (int i = 0; i < results.length; ++i) {
+            Object r = results[i];
+            if (r == null)
+                continue;
+            else if (r instanceof String)
+                error.app(r);
+            else {
+                SWGSoapNOResResponse k = (SWGSoapNOResResponse) r;
+                SWGMutableResource mr = (SWGMutableResource) notes.get(i);
+                sim.add(SWGSimilarNameDialog.wrapperInstance(k, mr));
             }
         }
         return error.toString();
     }
 
+    /**
+     * Helper method to {@link #submitResources(List, SWGResourceSet, List)}
+     * which submits one resource. This method executes on a worker thread of
+     * the submission pipeline.
+     * 
+     * @param mr the resource to submit
+     * @param set a set of <I>all&nbsp;</I> locally known, cached resource for
+     *        the galaxy
+     * @param sim {@code null} if the resource is historical
+     * @return a {@link SWGSoapNOResResponse}, an empty string, or an error
+     *         message
+     */
+    private Object submitResource(
+            SWGMutableResource mr, SWGResourceSet set, List<Wrapper> sim) {
+        if (sim == null) return submitOld(mr);
+        if (mr.id() <= 0) return submitNew(mr);
+        try {
+            return submitEdit(mr, set.getByID(mr.id()));
+        } catch (RuntimeException e) {
+            return e.getMessage() + '\n';
+        }
+    }
+
     /**
      * Helper method which triggers a refresh of the main list of resources.
      */
@@ -1,23 +1,29 @@
 package swg.swgcraft;
 
 import java.io.File;
-import java.io.FileOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.net.ConnectException;
+import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
+import java.net.SocketTimeoutException;
 import java.net.URL;
+import java.net.URLConnection;
 import java.net.UnknownHostException;
 import java.util.zip.GZIPInputStream;
 
 import javax.crypto.SealedObject;
-import javax.net.ssl.HttpsURLConnection;
 import javax.swing.JOptionPane;
 
 import swg.SWGAide;
 import swg.gui.SWGFrame;
 import swg.tools.SimplePrefsKeeper;
 import swg.tools.ZCrypto;
+import swg.tools.ZReader;
+import swg.tools.ZString;
+import swg.tools.ZWriter;
 
 /**
  * This class together with {@link SWGSoapManager} are the only communication
@@ -77,38 +83,58 @@ public final class SWGCraft {
     /**
      * The path and file name to the schematics XML file at SWGCraft.org.
      */
-    private static final String categoriesXmlPath =
+    static final String categoriesXmlPath =
             "/pub/exports/categories_unity.xml";
 
     /**
      * The first part of the path to the file with current resources, the galaxy
      * name and file suffix must be supplemented.
      */
-    private static final String currentResourcesPath =
+    static final String currentResourcesPath =
             "/pub/exports/currentresources_";
 
     /**
      * The path and file name to the profession levels XML file at SWGCraft.org.
      */
-    private static final String profLevelsXmlPath =
+    static final String profLevelsXmlPath =
             "/pub/exports/professions_unity.xml";
 
     /**
      * The path and file name to the schematics XML file at SWGCraft.org.
      */
-    private static final String schematicsXmlPath =
+    static final String schematicsXmlPath =
             "/pub/exports/schematics_unity.xml.gz";
 			
 	/**
      * The path and file name to the servers XML file at SWGCraft.org.
      */
-    private static final String serversXmlPath =
+    static final String serversXmlPath =
             "/pub/exports/servers.xml";
 
     /**
      * The path to the SOAP server.
      */
-    private static final String soapServerPath = "/soap/server.php";
+    static final String soapServerPath = "/soap/server.php";
+
+    /**
+     * The timeout in milliseconds for establishing a connection to
+     * SWGCraft.org, see {@link #connect(URL)}.
+     */
+    static final int CONNECT_TIMEOUT = 15000;
+
+    /**
+     * The deadline in milliseconds for a complete download. If a transfer is
+     * not complete within this time it is aborted and the local file is left
+     * untouched. Currently 10 minutes.
+     */
+    static final long DOWNLOAD_DEADLINE = 10 * 60 * 1000L;
+
+    /**
+     * The timeout in milliseconds for a read from a connection to
+     * SWGCraft.org, a stalled transfer is aborted after this time, see
+     * {@link #connect(URL)}.
+     */
+    static final int READ_TIMEOUT = 60000;
 
     /**
      * The minimum delay between obtaining the resource status file at
@@ -121,12 +147,19 @@ public final class SWGCraft {
     /**
      * The path and file name to the text status file at SWGCraft.org.
      */
-    private static final String statusTxtPath = "/resources/res_status.php";
+    static final String statusTxtPath = "/resources/res_status.php";
 
     /**
      * The path and file name to the XML status file at SWGCraft.org.
      */
-    private static final String statusXmlPath = "/pub/exports/status.xml";
+    static final String statusXmlPath = "/pub/exports/status.xml";
+
+    /**
+     * The limiter which paces all traffic to SWGCraft.org, both the HTTP
+     * requests which are created by {@link #connect(URL)} and the SOAP calls
+     * by {@link SWGSoapManager}.
+     */
+    static final SWGRateLimiter traffic = new SWGRateLimiter();
 
     /**
      * Do not create an instance of this class, all fields and methods are
@@ -137,85 +170,251 @@ public final class SWGCraft {
     }
 
     /**
-     * Downloads the content from the identified URL to the identified file.
-     * This implementation optionally unzips the content; SWGCraft.org is using
-     * the GZIP format for file compression. If the download is successful
-     * {@code true} is returned, otherwise the error is handled and {@code
-     * false} is returned or an exception is thrown.
+     * Returns a connection for the identified URL which is configured for
+     * communication with SWGCraft.org. This is the one place where connections
+     * are created, all downloads must use this method. The connection has
+     * timeouts for connecting and for reads so that a stalled transfer does
+     * not hang a worker thread, and it is not connected.
+     * <p>
+     * Connections are kept alive and reused by the platform for consecutive
+     * requests to the same host, given that the client reads the content to
+     * the end and closes the stream rather than invoking disconnect.
+     * <p>
+     * This method is paced by {@link #traffic}, it blocks until the limiter
+     * admits another request.
      * 
-     * @param source the URL to download from
-     * @param target the file to store data at
-     * @param isZipped <code>true</code> if the content is compressed
-     * @return {@code false} if an error but no exception is thrown
-     * @throws ConnectException if there is a connection error
+     * @param source the URL to connect to
+     * @return a connection which is not connected
+     * @throws InterruptedIOException if the thread is interrupted while it
+     *         waits for the limiter
      * @throws IOException if there is an I/O error
      * @throws NullPointerException if the argument is {@code null}
      */
+    static URLConnection connect(URL source) throws IOException {
+        try {
+            traffic.acquire(false);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted at rate limiter");
+        }
+        URLConnection uc = source.openConnection();
+        uc.setConnectTimeout(CONNECT_TIMEOUT);
+        uc.setReadTimeout(READ_TIMEOUT);
+        uc.setUseCaches(false);
+        return uc;
+    }
 
-    static boolean downloadURLToDisk(URL source, File target, boolean isZipped)
-            throws ConnectException, IOException {
+    /**
+     * Helper method which returns the content stream for the specified
+     * connection, decompressed if the content is GZIP compressed. The content
+     * is compressed if the file is compressed at SWGCraft.org or if the server
+     * applied compression for the transfer, but never both since compression
+     * is not negotiated for files which are already compressed.
+     * 
+     * @param in the raw stream of the connection
+     * @param isZipped {@code true} if the file is compressed
+     * @param encoding the content encoding of the response, or {@code null}
+     * @return a decompressed stream
+     * @throws IOException if there is an I/O error
+     */
+    private static InputStream decoded(
+            InputStream in, boolean isZipped, String encoding)
+            throws IOException {
 
-        InputStream from = null;
-        FileOutputStream to = null;
-        HttpsURLConnection uc = (HttpsURLConnection) source.openConnection();
+        return isZipped || "gzip".equalsIgnoreCase(encoding)
+                ? new GZIPInputStream(in, 1 << 16)
+                : in;
+    }
 
+    /**
+     * Helper method which returns the HTTP status code for the specified
+     * connection, connecting it if necessary, and which reports the outcome
+     * to {@link #traffic}. An I/O error, a timeout, or a status which denotes
+     * that the server is overloaded is reported as a failure so that the
+     * limiter backs off.
+     * 
+     * @param uc a connection
+     * @return the HTTP status code
+     * @throws IOException if there is an I/O error
+     */
+    private static int responseCode(HttpURLConnection uc) throws IOException {
         try {
-        	
-            from = uc.getInputStream();
-
-            if (isZipped)
-                from = new GZIPInputStream(from);
+            int code = uc.getResponseCode();
+            traffic.report(code != 429 && code < 500);
+            return code;
+        } catch (IOException e) {
+            traffic.report(false);
+            throw e;
+        }
+    }
 
-            to = new FileOutputStream(target);
+    /**
+     * Opens a connection to the identified URL and returns it once the server
+     * has responded. If the identified file of validators exists, its ETag and
+     * Last-Modified values from a previous download are sent as a conditional
+     * request so the server can respond with "304 Not Modified" rather than
+     * with the content; see {@link #isNotModified(URLConnection)} and
+     * {@link #validatorsWrite(URLConnection, File)}. Unless the file is
+     * compressed at SWGCraft.org, GZIP compression is requested for the
+     * transfer, see {@link #openURLToDisk(URLConnection, File, boolean)}. If
+     * the host is unknown the error is handled and {@code null} is returned,
+     * otherwise an exception is thrown.
+     * 
+     * @param source the URL to download from
+     * @param validators a file with validators, or {@code null}
+     * @param isZipped {@code true} if the file is compressed
+     * @return a connection which is connected, or {@code null}
+     * @throws ConnectException if there is a connection error
+     * @throws IOException if there is an I/O error
+     * @throws NullPointerException if the URL is {@code null}
+     */
+    static URLConnection openConditional(
+            URL source, File validators, boolean isZipped)
+            throws ConnectException, IOException {
 
-            byte[] buffer = new byte[4096];
-            int len;
-            while ((len = from.read(buffer)) >= 0) {
-                to.write(buffer, 0, len);
+        URLConnection uc = connect(source);
+        if (!isZipped)
+            uc.setRequestProperty("Accept-Encoding", "gzip");
+        if (validators != null && validators.exists()) {
+            String v = ZReader.read(validators);
+            for (String line : v == null
+                    ? new String[0]
+                    : v.split("\n")) {
+                if (line.startsWith("ETag: "))
+                    uc.setRequestProperty("If-None-Match", line.substring(6));
+                else if (line.startsWith("Last-Modified: "))
+                    uc.setRequestProperty(
+                            "If-Modified-Since", line.substring(15));
             }
-            return true;
+        }
+
+        try {
+            if (uc instanceof HttpURLConnection)
+                responseCode((HttpURLConnection) uc); // connects
+            else
+                uc.connect();
+            return uc;
         } catch (ConnectException e) {
             SWGAide.printDebug("crft", 1,
                     "SWGCraft: connection error: ", e.getMessage());
             throw e;
         } catch (UnknownHostException e) {
             showUnknownHostDialog(source, e);
+        }
+        return null;
+    }
+
+    /**
+     * Determines if the server responded "304 Not Modified" to a conditional
+     * request from {@link #openConditional(URL, File, boolean)}. In that case
+     * the local copy is current and the connection is disconnected.
+     * 
+     * @param uc a connection which is connected
+     * @return {@code true} if the content is not modified
+     * @throws IOException if there is an I/O error
+     */
+    static boolean isNotModified(URLConnection uc) throws IOException {
+        if (uc instanceof HttpURLConnection
+                && ((HttpURLConnection) uc).getResponseCode()
+                    == HttpURLConnection.HTTP_NOT_MODIFIED) {
+            ((HttpURLConnection) uc).disconnect();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Opens a stream for the content of the specified connection which at the
+     * same time is copied to the identified file. This implementation
+     * optionally unzips the content; SWGCraft.org is using the GZIP format for
+     * file compression, and a transfer which the server compressed is unzipped
+     * as well. The target file is written just when the client invokes
+     * {@link SWGTeeInputStream#commit()}, if the stream is closed before that
+     * the target is left untouched. If the server announced a Content-Length
+     * and the transfer ends short of it, reading the stream to its end throws
+     * an exception.
+     * <p>
+     * This method makes it possible to consume a download once, rather than
+     * downloading it to a file and reading the file back from disk. The client
+     * must always close the returned stream.
+     * 
+     * @param uc a connection from {@link #openConditional(URL, File, boolean)}
+     * @param target the file to store data at
+     * @param isZipped <code>true</code> if the content is compressed
+     * @return a stream for the content
+     * @throws IOException if there is an I/O error
+     * @throws NullPointerException if the argument is {@code null}
+     */
+    static SWGTeeInputStream openURLToDisk(
+            URLConnection uc, File target, boolean isZipped)
+            throws IOException {
+
+        InputStream from = null;
+        try {
+            from = uc.getInputStream();
+            from = decoded(new DeadlineInputStream(
+                    from, uc.getContentLengthLong()),
+                    isZipped, uc.getContentEncoding());
+
+            return new SWGTeeInputStream(from, target);
         } catch (IOException e) {
-            if (e.getMessage().equals("Not in GZIP format")) {
-                SWGAide.printDebug("crft", 1,
-                        "SWGCraft: temporary download error:",
-                        e.getClass().toString(), ":", e.getMessage());
-            } else {
-                SWGAide.printDebug("crft", 1,
-                        "SWGCraft:downloadURLToDisk:I/O:",
-                        e.getClass().toString(), ":", e.getMessage());
-            }
+            SWGAide.printDebug("crft", 1, "SWGCraft:openURLToDisk:I/O:",
+                    e.getClass().toString(), ":", e.getMessage());
+            close(from);
             throw e;
-        } catch (Exception e) {
-            SWGAide.printError("SWGCraft:downloadURLToDisk", e);
-        } finally {
-            try {
-                from.close();
-                uc.disconnect();
-            } catch (Exception e) { /* ignore exception */
-            }
+        }
+    }
+
+    /**
+     * Writes the ETag and Last-Modified values of the specified connection to
+     * the identified file, for the next call to
+     * {@link #openConditional(URL, File, boolean)}. If the server provides
+     * neither value the file is deleted. This method must only be invoked once
+     * the content of the connection is processed without error. If there is
+     * an error it is logged.
+     * 
+     * @param uc a connection from {@link #openConditional(URL, File, boolean)}
+     * @param validators the file to write to
+     */
+    static void validatorsWrite(URLConnection uc, File validators) {
+        String etag = uc.getHeaderField("ETag");
+        String lm = uc.getHeaderField("Last-Modified");
+        if (etag == null && lm == null) {
+            validators.delete();
+            return;
+        }
+        ZString z = new ZString();
+        if (etag != null) z.app("ETag: ").appnl(etag);
+        if (lm != null) z.app("Last-Modified: ").appnl(lm);
+        ZWriter.write(z.toString(), validators, false);
+    }
+
+    /**
+     * Helper method which closes the specified stream and ignores errors.
+     * 
+     * @param in a stream, or {@code null}
+     */
+    private static void close(InputStream in) {
+        if (in != null) {
             try {
-                to.close();
+                in.close();
             } catch (Exception e) { /* ignore exception */
             }
         }
-        return false;
     }
 
     /**
      * Returns the base URL to SWGCraft.org. This is the default value
      * {@link #baseURL}, or it a value which optionally is set by the user and
-     * is contained in SWGAide's preference keeper.
+     * is contained in SWGAide's preference keeper. The system property
+     * "swgaide.baseURL" takes precedence over both, it is used to point
+     * SWGAide at a test server such as SWGCraftStandIn in the test sources.
      * 
      * @return the base URL to SWGCraft.org
      */
     static String getBaseURL() {
-        String s = (String) getPrefs("optionBaseURL");
+        String s = System.getProperty("swgaide.baseURL");
+        if (s == null) s = (String) getPrefs("optionBaseURL");
         return s == null
                 ? baseURL
                 : s;
@@ -315,12 +514,14 @@ public final class SWGCraft {
     /**
      * Returns the path to the SOAP server. This is the default value
      * {@link #soapServerPath}, or it a value which optionally is set by the
-     * user and is contained in SWGAide's preference keeper.
+     * user and is contained in SWGAide's preference keeper. The system
+     * property "swgaide.soapPath" takes precedence over both.
      * 
      * @return the path to the SOAP server
      */
     static String getSOAPServerPath() {
-        String s = (String) getPrefs("optionSOAPpath");
+        String s = System.getProperty("swgaide.soapPath");
+        if (s == null) s = (String) getPrefs("optionSOAPpath");
         return s == null
                 ? soapServerPath
                 : s;
@@ -400,6 +601,18 @@ public final class SWGCraft {
                 : "";
     }
 
+    /**
+     * Returns a line of text with the counters of the limiter which paces all
+     * traffic to SWGCraft.org: the number of requests and failures, the total
+     * time requests have waited, and the current rate and concurrency. This
+     * is for diagnostics and logging.
+     * 
+     * @return the traffic counters
+     */
+    public static String getTrafficStatus() {
+        return traffic.toString();
+    }
+
     /**
      * Returns the user's password for SWGCraft.org in plain text. The password
      * is set at {@link SWGCraftOptionsPanel} and is stored in SWGAide's
@@ -453,4 +666,83 @@ public final class SWGCraft {
         SWGAide.printDebug("crft", 1, "SWGCraft connection:",
                 e.getClass().toString(), ":", e.getMessage());
     }
+
+    /**
+     * A stream which aborts a transfer that is not complete within
+     * {@link SWGCraft#DOWNLOAD_DEADLINE}; the read timeout of the connection
+     * covers a stalled transfer but not one which trickles. This stream also
+     * verifies that a transfer which ends is as long as the server announced.
+     */
+    private static final class DeadlineInputStream extends FilterInputStream {
+
+        /**
+         * The number of bytes read so far.
+         */
+        private long count;
+
+        /**
+         * The time in milliseconds when the transfer must be complete.
+         */
+        private final long deadline =
+                System.currentTimeMillis() + DOWNLOAD_DEADLINE;
+
+        /**
+         * The announced length of the transfer, or -1 if it is unknown.
+         */
+        private final long length;
+
+        /**
+         * Creates a stream which reads from the specified stream.
+         * 
+         * @param in the stream to read from
+         * @param length the announced length, or -1 if it is unknown
+         */
+        DeadlineInputStream(InputStream in, long length) {
+            super(in);
+            this.length = length;
+        }
+
+        /**
+         * Helper method which throws an exception if the deadline is exceeded.
+         * 
+         * @throws SocketTimeoutException if the deadline is exceeded
+         */
+        private void check() throws SocketTimeoutException {
+            if (System.currentTimeMillis() > deadline)
+                throw new SocketTimeoutException("Download deadline exceeded");
+        }
+
+        /**
+         * Helper method which counts the specified number of bytes, or which
+         * verifies the length of the transfer at its end.
+         * 
+         * @param n the number of bytes read, or -1 at the end of the stream
+         * @return the argument
+         * @throws IOException if the transfer ended prematurely
+         */
+        private int count(int n) throws IOException {
+            if (n >= 0)
+                count += n;
+            else if (length >= 0 && count != length)
+                throw new IOException("Premature end of transfer, " + count
+                        + " of " + length + " bytes");
+            return n;
+        }
+
+        @Override
+        public int read() throws IOException {
+            check();
+            int b = super.read();
+            count(b < 0
+                    ? -1
+                    : 1);
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            check();
+            return count(super.read(b, off, len));
+        }
+    }
 }
@@ -1,22 +1,38 @@
 package swg.swgcraft;
 
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.net.URLConnection;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.time.Instant;
 import java.time.LocalDateTime;
-import java.time.ZoneId;
-import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.TimeZone;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
-import javax.net.ssl.HttpsURLConnection;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 import org.w3c.dom.Document;
 
@@ -229,34 +245,39 @@ public final class SWGCraftCache {
     }
 
     /**
-     * Helper method which returns the most recent modification date for the
-     * specified URL; the returned string is on the form YYYY-MM-DD. This method
-     * invokes {@link HttpsURLConnection#getLastModified()}; if the service provider
-     * does not return the true modification date the return value is undefined,
-     * or "1970-01-01", or "0". If there is an error it is caught, a message is
-     * logged, and this method returns "0".
+     * Helper method which determines if the specified file is a well-formed
+     * XML document. The file is read with a pull parser which is much cheaper
+     * than to create a DOM document. If there is an I/O error it is thrown.
      * 
-     * @param url
-     *            the URL to return a modification date for
-     * @return a date at the form YYYY-MM-DD, or "0"
+     * @param file
+     *            the file to validate
+     * @return {@code false} if the file is not well-formed XML
+     * @throws IOException
+     *             if there is an I/O error
      */
-    private static LocalDateTime lastModified(URL url) {
+    private static boolean isWellFormed(File file) throws IOException {
+        InputStream in = new BufferedInputStream(new FileInputStream(file));
         try {
-        	LocalDateTime ld = null;
-            HttpsURLConnection conn = (HttpsURLConnection) url.openConnection();
-            conn.setRequestMethod("HEAD");
-            ld = LocalDateTime.ofInstant(Instant.ofEpochMilli(conn.getLastModified()), ZoneId.of("UTC") );
-            conn.disconnect();
-            ld = ld.truncatedTo(ChronoUnit.HOURS);
-            /*if(SWGConstants.DEV_DEBUG) {
-            	SWGAide.printDebug("debug", 9, "SWGCraftCache:lastModified " + url.toString() + " Remote Date: " + ld.toEpochSecond(ZoneOffset.UTC));
-            }*/
-            return ld;
-        } catch (Exception e) {
+            XMLInputFactory xf = XMLInputFactory.newInstance();
+            xf.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+            XMLStreamReader xr = xf.createXMLStreamReader(in);
+            try {
+                boolean root = false;
+                while (xr.hasNext())
+                    if (xr.next() == XMLStreamConstants.START_ELEMENT)
+                        root = true;
+                return root;
+            } finally {
+                xr.close();
+            }
+        } catch (XMLStreamException e) {
             SWGAide.printDebug("cach", 1,
-                "SWGCraftCache:lastModified: " + e.getMessage());
+                "SWGCraftCache:isWellFormed: " + file.getName() + ": "
+                    + e.getMessage());
+            return false;
+        } finally {
+            in.close();
         }
-        return null;
     }
 
     /**
@@ -311,34 +332,30 @@ public final class SWGCraftCache {
 
     /**
      * Helper method which notifies listeners that have subscribed for updates
-     * of the specified type. This method is thread-safe.
+     * of the specified types. Each subscriber is notified once, also if it
+     * subscribes for several of the types, and only once all of the updated
+     * files are in place; the notification denotes the first of the updated
+     * types the subscriber subscribes for and it also contains all of the
+     * updated types, see {@link CacheUpdate#contains(UpdateType)}. This method
+     * is thread-safe.
      * 
-     * @param type
-     *            the type of notification
+     * @param types
+     *            the types of the updated files
      */
-    private static void notifySubscribers(UpdateType type) {
-        CacheUpdate up = new CacheUpdate(type);
-        if (type == UpdateType.SCHEMATICS) {
-            synchronized (schemSubscribers) {
-                for (UpdateSubscriber s : schemSubscribers)
-                    s.handleUpdate(up);
-            }
-        } else if (type == UpdateType.CATEGORIES) {
-            synchronized (categorySubscribers) {
-                for (UpdateSubscriber s : categorySubscribers)
-                    s.handleUpdate(up);
-            }
-        } else if (type == UpdateType.PROF_LEVELS) {
-            synchronized (profLevelSubscribers) {
-                for (UpdateSubscriber s : profLevelSubscribers)
-                    s.handleUpdate(up);
-            }
-		} else if (type == UpdateType.SERVERS) {
-            synchronized (serversSubscribers) {
-                for (UpdateSubscriber s : serversSubscribers)
-                    s.handleUpdate(up);
+    private static void notifySubscribers(Set<UpdateType> types) {
+        if (types.isEmpty()) return;
+
+        Map<UpdateSubscriber, UpdateType> subs =
+            new LinkedHashMap<UpdateSubscriber, UpdateType>();
+        for (UpdateType t : types) {
+            List<UpdateSubscriber> l = subscribers(t);
+            synchronized (l) {
+                for (UpdateSubscriber s : l)
+                    if (!subs.containsKey(s)) subs.put(s, t);
             }
         }
+        for (Map.Entry<UpdateSubscriber, UpdateType> e : subs.entrySet())
+            e.getKey().handleUpdate(new CacheUpdate(e.getValue(), types));
     }
 
     /**
@@ -373,9 +390,33 @@ public final class SWGCraftCache {
     }
 
     /**
-     * Helper method which updates the specified local file. If there is an
-     * error it is caught, a message is written to the appropriate log file, and
-     * this method returns {@code false}.
+     * Helper method which returns the list of subscribers for the specified
+     * type of notifications. The caller must synchronize on the list.
+     * 
+     * @param type
+     *            a type of notification
+     * @return a list of subscribers
+     */
+    private static List<UpdateSubscriber> subscribers(UpdateType type) {
+        switch (type) {
+        case CATEGORIES: return categorySubscribers;
+        case PROF_LEVELS: return profLevelSubscribers;
+        case SCHEMATICS: return schemSubscribers;
+        default: return serversSubscribers;
+        }
+    }
+
+    /**
+     * Helper method which updates the specified local file. This method sends
+     * a conditional request with the validators from the previous download,
+     * see {@link SWGCraft#openConditional(URL, File, boolean)}; if the remote
+     * file is not modified the server responds without content and this
+     * method returns {@code false}. Otherwise the content is downloaded to a
+     * temporary file next to the local file, it is validated to be well-formed
+     * XML, and it replaces the local file, see
+     * {@link #updateLocally(File, File)}. If there is an error it is caught, a
+     * message is written to the appropriate log file, and this method returns
+     * {@code false}.
      * 
      * @param local
      *            the locally cached file
@@ -386,15 +427,34 @@ public final class SWGCraftCache {
      * @return {@code true} if the local file is updated
      */
     private static boolean update(File local, URL url, boolean zipped) {
+        File vf = validators(local);
+        File tmp = new File(local.getPath() + ".new");
         try {
-            if (updateExists(local, url)) {
-                File tmp = new File(
-                    SWGConstants.getCacheDirectory(), local.getName());
-                if (SWGCraft.downloadURLToDisk(url, tmp, zipped)) {
-                    return updateLocally(local, tmp);
-                }
+            URLConnection uc = SWGCraft.openConditional(url, local.exists()
+                ? vf
+                : null, zipped);
+            if (uc == null || SWGCraft.isNotModified(uc))
+                return false;
+
+            SWGTeeInputStream in = SWGCraft.openURLToDisk(uc, tmp, zipped);
+            try {
+                in.commit();
+            } finally {
+                in.close();
+            }
+
+            if (!isWellFormed(tmp)) {
                 SWGAide.printDebug("cach", 1,
-                    "SWGCraftCache:update:download failed: " + local.getName());
+                    "SWGCraftCache:update:malformed: " + local.getName());
+                return false;
+            }
+            if (SWGConstants.DEV_DEBUG)
+                SWGAide.printDebug("debug", 9,
+                    "SWGCraftCache:update: new file " + local.getName());
+
+            if (updateLocally(local, tmp)) {
+                SWGCraft.validatorsWrite(uc, vf);
+                return true;
             }
         } catch (IOException e) {
             // probably network error, not a SWGAide error, hence plain log
@@ -402,55 +462,79 @@ public final class SWGCraftCache {
                 "SWGCraftCache:update: " + e.getMessage());
         } catch (Throwable e) {
             SWGAide.printError("SWGCraftCache:update", e);
+        } finally {
+            tmp.delete();
         }
         return false;
     }
-    
+
+    /**
+     * Helper method which checks and updates all files maintained by this
+     * type. The files are checked and downloaded concurrently, each by its own
+     * thread. Once all files are processed the subscribers for the updated
+     * files are notified, see {@link #notifySubscribers(Set)}. As before, an
+     * update of the categories is notified as an update of the schematics.
+     */
+    private static void updateAll() {
+        final Object[][] files = {
+            { profXML, UpdateType.PROF_LEVELS, Boolean.FALSE },
+            { catXML, UpdateType.CATEGORIES, Boolean.FALSE },
+            { serversXML, UpdateType.SERVERS, Boolean.FALSE },
+            { schemXML, UpdateType.SCHEMATICS, Boolean.TRUE } };
+
+        ExecutorService exec = Executors.newFixedThreadPool(files.length);
+        try {
+            List<Future<Boolean>> fs = new ArrayList<Future<Boolean>>();
+            for (final Object[] f : files) {
+                fs.add(exec.submit(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() throws Exception {
+                        URL u = url((UpdateType) f[1]);
+                        return Boolean.valueOf(update((File) f[0], u,
+                            ((Boolean) f[2]).booleanValue()));
+                    }
+                }));
+            }
+
+            Set<UpdateType> updated = EnumSet.noneOf(UpdateType.class);
+            for (int i = 0; i < files.length; ++i) {
+                try {
+                    if (fs.get(i).get().booleanValue())
+                        updated.add((UpdateType) files[i][1]);
+                } catch (ExecutionException e) {
+                    SWGAide.printError("SWGCraftCache:updateAll:"
+                        + ((File) files[i][0]).getName(), e.getCause());
+                }
+            }
+
+            if (updated.remove(UpdateType.CATEGORIES)) // XXX: maybe remove later
+                updated.add(UpdateType.SCHEMATICS);
+            notifySubscribers(updated);
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            exec.shutdownNow();
+        }
+    }
+
     /**
      * Exact same thing as updateCache but this one does not run in background.
      * This is necessary for startup when files do not exist, we don't want things clashing
      * until these files are retrieved.
      */
-    
     public static void updateCacheBlocking() {
-    	try {
-            if (update(profXML, urlProfLevels(), false))
-                notifySubscribers(UpdateType.PROF_LEVELS);
-        } catch (MalformedURLException e) {
-            SWGAide.printError("SWGCraftCache:updatCache:prof", e);
-        }
-        boolean catUpdated = false;// XXX: maybe remove later
-        try {
-            if (update(catXML, urlCategories(), false))
-                catUpdated = true; // notifyCatSubscribers();
-        } catch (MalformedURLException e) {
-            SWGAide.printError("SWGCraftCache:updatCache:cat", e);
-        }
-        try {
-			if(update(serversXML, urlServers(), false))
-            {
-            	notifySubscribers(UpdateType.SERVERS);
-            }
-        } catch (MalformedURLException e) {
-            SWGAide.printError("SWGCraftCache:updatCache:servers", e);
-        }
-        try {
-            if (update(schemXML, urlSchematics(), true)
-                || catUpdated)
-                notifySubscribers(UpdateType.SCHEMATICS);
-        } catch (MalformedURLException e) {
-            SWGAide.printError("SWGCraftCache:updatCache:schem", e);
-        }
+        updateAll();
     }
     
     /**
      * Updates the local cache of files maintained by this type. More
-     * specifically, this method invokes several helper methods and for one by
-     * one of the maintained files it is determined if no local file exists or
-     * if the remote file is more recent, downloads the file, makes a backup of
-     * the local file, replaces it with the new file, and notifies possible
-     * subscribers. If a local file is up-to-date this method does nothing but
-     * continues with the next file.
+     * specifically, this method invokes several helper methods and for each
+     * of the maintained files, concurrently, it sends a conditional request
+     * which downloads the file only if it is modified, validates the file,
+     * makes a backup of the local file, replaces it with the new file, and
+     * finally notifies possible subscribers once all files are processed. If
+     * a local file is up-to-date nothing is downloaded for it.
      * <p>
      * If there is an update available, notified subscribers decides whether to
      * obtain an updated data blob or not. This method does not guarantee the
@@ -469,78 +553,19 @@ public final class SWGCraftCache {
             exec.execute(new Runnable() {
 
                 public void run() {
-                    try {
-                        if (update(profXML, urlProfLevels(), false))
-                            notifySubscribers(UpdateType.PROF_LEVELS);
-                    } catch (MalformedURLException e) {
-                        SWGAide.printError("SWGCraftCache:updatCache:prof", e);
-                    }
-                    boolean catUpdated = false;// XXX: maybe remove later
-                    try {
-                        if (update(catXML, urlCategories(), false))
-                            catUpdated = true; // notifyCatSubscribers();
-                    } catch (MalformedURLException e) {
-                        SWGAide.printError("SWGCraftCache:updatCache:cat", e);
-                    }
-                    try {
-						if(update(serversXML, urlServers(), false))
-                        {
-                        	notifySubscribers(UpdateType.SERVERS);
-                        }
-                    } catch (MalformedURLException e) {
-                        SWGAide.printError("SWGCraftCache:updatCache:servers", e);
-                    }
-                    try {
-                        if (update(schemXML, urlSchematics(), true)
-                            || catUpdated)
-                            notifySubscribers(UpdateType.SCHEMATICS);
-                    } catch (MalformedURLException e) {
-                        SWGAide.printError("SWGCraftCache:updatCache:schem", e);
-                    }
+                    updateAll();
                     exec.shutdown();
                 }
             });
         }
     }
 
-    /**
-     * Helper method which determines if the specified file is updated as
-     * compared to the specified URL. This method returns {@code true} if no
-     * local copy exists, or if the remote resource is more recent than the
-     * local file, the granularity is by calendar date. If there is an error it
-     * is caught and a message is logged, and this method returns {@code false}.
-     * 
-     * @param file
-     *            the file to check for
-     * @param url
-     *            the URL to compare with
-     * @return {@code true} if an update exists
-     */
-    private static boolean updateExists(File file, URL url) {
-        if (!file.exists()) {
-        	if(SWGConstants.DEV_DEBUG) {
-        		SWGAide.printDebug("debug", 9, "SWGCraftCache:filenotexists : getting new file " + file.toString() );
-        	}
-            return true;
-        }
-
-        Boolean result = false;
-        LocalDateTime ld = localDate(file);
-        LocalDateTime rd = lastModified(url);
-        if (ld.compareTo(rd) != 0) {
-        	result = true;
-        	if(SWGConstants.DEV_DEBUG) {
-        		SWGAide.printDebug("debug", 9, "SWGCraftCache:updateExists : getting new file " + file.toString() + " LD: " + ld.toEpochSecond(ZoneOffset.UTC) + " RD: " + rd.toEpochSecond(ZoneOffset.UTC) );
-        	}
-        }
-        return result;
-    }
-
     /**
      * Helper method which backups the specified local file and replaces it with
-     * the specified temporary file. If there is an error it is caught, a
-     * message is logged, and {@code false} is returned, otherwise {@code true}
-     * is returned.
+     * the specified temporary file. The file is replaced with an atomic move
+     * if the file system supports it, hence a reader never sees a missing or a
+     * partial file. If there is an error it is caught, a message is logged,
+     * and {@code false} is returned, otherwise {@code true} is returned.
      * 
      * @param local
      *            the local file, may not exist yet
@@ -550,20 +575,24 @@ public final class SWGCraftCache {
      */
     private static boolean updateLocally(File local, File tmp) {
         synchronized (local) {
-            if (local.exists()) {
-                if (ZWriter.backup(local, "", 3) < 0)
-                    SWGAide.printError(
-                        "SWGCraftCache:updateLocally: backup failed: "
-                        + local.getName(), null);
-
-                if (!local.delete())
-                    SWGAide.printError(
-                        "SWGCraftCache:updateLocally: delete failed: "
-                        + local.getName(), null);
-            }
+            if (local.exists() && ZWriter.backup(local, "", 3) < 0)
+                SWGAide.printError(
+                    "SWGCraftCache:updateLocally: backup failed: "
+                    + local.getName(), null);
 
-            if (tmp.renameTo(local))
+            try {
+                try {
+                    Files.move(tmp.toPath(), local.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(tmp.toPath(), local.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING);
+                }
                 return true;
+            } catch (IOException e) {
+                // fall through
+            }
 
             // else
             /*SWGAide.printError("SWGCraftCache:updateLocally: replace failed: "
@@ -573,6 +602,25 @@ public final class SWGCraftCache {
         }
     }
 
+    /**
+     * Helper method which returns an URL for the file of the specified type at
+     * SWGCraft.org.
+     * 
+     * @param type
+     *            the type of file
+     * @return an URL
+     * @throws MalformedURLException
+     *             if there is an error
+     */
+    private static URL url(UpdateType type) throws MalformedURLException {
+        switch (type) {
+        case CATEGORIES: return urlCategories();
+        case PROF_LEVELS: return urlProfLevels();
+        case SCHEMATICS: return urlSchematics();
+        default: return urlServers();
+        }
+    }
+
     /**
      * Helper method which returns an URL for the categories XML file at
      * SWGCraft.org.
@@ -621,6 +669,24 @@ public final class SWGCraftCache {
         return new URL(SWGCraft.getBaseURL() + SWGCraft.getSchematicsPath());
     }
 
+    /**
+     * Helper method which returns the file for the validators of the most
+     * recent download of the specified file, see
+     * {@link SWGCraft#validatorsWrite(java.net.URLConnection, File)}. The file
+     * may not yet exist.
+     * 
+     * @param local
+     *            the locally cached file
+     * @return an abstract file for the validators
+     */
+    private static File validators(File local) {
+        String n = local.getName();
+        int i = n.lastIndexOf('.');
+        return new File(local.getParentFile(), (i > 0
+            ? n.substring(0, i)
+            : n) + "-validators.txt");
+    }
+
     /**
      * This type denotes an update to the local cache. The field {@link #type}
      * denotes the updated file.
@@ -635,6 +701,12 @@ public final class SWGCraftCache {
          */
         public final UpdateType type;
 
+        /**
+         * The types of all files which are updated together with
+         * {@link #type}, including {@link #type}.
+         */
+        private final Set<UpdateType> types;
+
         /**
          * Creates an instance of this type for the specified type of update.
          * 
@@ -644,10 +716,41 @@ public final class SWGCraftCache {
          *             if the argument is {@code null}
          */
         public CacheUpdate(UpdateType type) {
-            if (type == null)
+            this(type, EnumSet.of(type));
+        }
+
+        /**
+         * Creates an instance of this type for the specified type of update
+         * which is part of a combined update of the specified types.
+         * 
+         * @param type
+         *            the type of update this notification pertains to
+         * @param types
+         *            all types of the combined update
+         * @throws NullPointerException
+         *             if an argument is {@code null}
+         */
+        CacheUpdate(UpdateType type, Set<UpdateType> types) {
+            if (type == null || types == null)
                 throw new NullPointerException("Argument is null");
 
             this.type = type;
+            EnumSet<UpdateType> ts = EnumSet.copyOf(types);
+            ts.add(type);
+            this.types = Collections.unmodifiableSet(ts);
+        }
+
+        /**
+         * Determines if the specified type is updated by the combined update
+         * this notification is part of. This is {@code true} for
+         * {@link #type}.
+         * 
+         * @param t
+         *            a type of update
+         * @return {@code true} if files of the type are updated
+         */
+        public boolean contains(UpdateType t) {
+            return types.contains(t);
         }
 
         /**
@@ -9,6 +9,7 @@ import java.awt.event.ActionListener;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
 import java.net.URL;
+import java.util.List;
 import java.util.Vector;
 
 import javax.crypto.SealedObject;
@@ -21,9 +22,11 @@ import javax.swing.JCheckBox;
 import javax.swing.JComboBox;
 import javax.swing.JDialog;
 import javax.swing.JLabel;
+import javax.swing.JList;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JPasswordField;
+import javax.swing.JScrollPane;
 import javax.swing.JTextField;
 import javax.swing.KeyStroke;
 
@@ -75,6 +78,12 @@ public class SWGCraftOptionsPanel extends JDialog {
      */
    private boolean isOpen = false;
 
+    /**
+     * A GUI label for the number of write operations which are pending for
+     * swgaide.com.
+     */
+    private JLabel outboxCount;
+
     /**
      * A GUI text field for the user's password for communication with
      * swgaide.com.
@@ -123,6 +132,7 @@ public class SWGCraftOptionsPanel extends JDialog {
         contentPane.add(first);
 
         contentPane.add(makeUserInfoPanel());
+        contentPane.add(makeOutboxPanel());
 
         contentPane.getInputMap().put(KeyStroke.getKeyStroke("F1"), "showHelp");
         contentPane.getActionMap().put("showHelp", new AbstractAction() {
@@ -282,11 +292,32 @@ public class SWGCraftOptionsPanel extends JDialog {
         handler.resetUserData(); // reset just in case
     }
 
+    /**
+     * Called when the user clicks the Show button for pending uploads. This
+     * method displays a list of the write operations which are pending for
+     * swgaide.com.
+     */
+    private void actionShowOutbox() {
+        List<String> pending = SWGResourceManager.outboxPending();
+        updateOutboxCount(pending.size());
+        if (pending.isEmpty()) {
+            JOptionPane.showMessageDialog(this, "No pending uploads",
+                "Pending uploads", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+        JList<String> list = new JList<String>(new Vector<String>(pending));
+        JScrollPane jsp = new JScrollPane(list);
+        jsp.setPreferredSize(new Dimension(400, 200));
+        JOptionPane.showMessageDialog(this, jsp, "Pending uploads",
+            JOptionPane.PLAIN_MESSAGE);
+    }
+
     /**
      * This method is called when this GUI dialog gains focus.
      */
     private void focusGained() {
         isOpen = true;
+        updateOutboxCount();
         SWGHelp.push(helpUrl);
     }
 
@@ -415,6 +446,40 @@ public class SWGCraftOptionsPanel extends JDialog {
         return glxPanel;
     }
 
+    /**
+     * Returns a GUI component for the write operations which are pending for
+     * swgaide.com.
+     * 
+     * @return a GUI component for pending uploads
+     */
+    private Component makeOutboxPanel() {
+        JPanel oPanel = new JPanel();
+        oPanel.setLayout(new FlowLayout(FlowLayout.LEFT));
+        oPanel.setBorder(BorderFactory
+            .createTitledBorder("Pending uploads to SWGAide.com"));
+
+        outboxCount = new JLabel();
+        outboxCount.setToolTipText(
+            "Resource updates not yet delivered, they are sent in the background");
+        oPanel.add(outboxCount);
+
+        oPanel.add(Box.createRigidArea(new Dimension(10, 10)));
+
+        JButton show = new JButton("Show...");
+        show.setMnemonic('H');
+        show.setToolTipText("List the pending uploads");
+        show.addActionListener(new ActionListener() {
+
+            public void actionPerformed(ActionEvent e) {
+                actionShowOutbox();
+            }
+        });
+        oPanel.add(show);
+
+        updateOutboxCount();
+        return oPanel;
+    }
+
     /**
      * Returns a GUI component for the time zones.
      * 
@@ -514,6 +579,27 @@ public class SWGCraftOptionsPanel extends JDialog {
         return uPanel;
     }
 
+    /**
+     * Helper method which updates the label for the number of pending uploads.
+     */
+    private void updateOutboxCount() {
+        updateOutboxCount(SWGResourceManager.outboxPending().size());
+    }
+
+    /**
+     * Helper method which updates the label for the number of pending uploads
+     * to the specified number.
+     * 
+     * @param n the number of pending uploads
+     */
+    private void updateOutboxCount(int n) {
+        outboxCount.setText(n == 0
+            ? "No pending uploads"
+            : String.format("%d pending upload%s", Integer.valueOf(n), n == 1
+                ? ""
+                : "s"));
+    }
+
     /**
      * Opens the help page for this object.
      */
@@ -0,0 +1,252 @@
+package swg.swgcraft;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import swg.SWGAide;
+import swg.gui.SWGFrame;
+import swg.model.SWGCGalaxy;
+
+/**
+ * This type schedules downloads of current resources for galaxies. It owns a
+ * small and bounded pool of worker threads which process a priority queue of
+ * download jobs, one job per galaxy. The job for the user's main galaxy, the
+ * galaxy which is selected at the SWGCraft options panel, is processed before
+ * jobs for other galaxies; otherwise jobs are processed in the order they were
+ * scheduled.
+ * <p>
+ * Repeated requests for a galaxy are coalesced: while a job for a galaxy is
+ * queued or running a new request for the same galaxy is ignored, just as
+ * consecutive calls were aborted by the former list of locks. If a request for
+ * the main galaxy finds a queued background job for it, the job is moved ahead
+ * in the queue.
+ * <p>
+ * For diagnostics this type provides the depth of the queue and the duration
+ * of the most recent job per galaxy.
+ * <p>
+ * This type is thread safe. The worker threads are daemon threads which
+ * terminate when they have been idle for a while.
+ */
+final class SWGDownloadScheduler {
+
+    /**
+     * The priority for the main galaxy.
+     */
+    private static final int MAIN = 0;
+
+    /**
+     * The priority for all other galaxies.
+     */
+    private static final int BACKGROUND = 1;
+
+    /**
+     * A map of galaxy names to the duration in milliseconds of their most
+     * recent download job.
+     */
+    private final Map<String, Long> durations =
+            new ConcurrentHashMap<String, Long>();
+
+    /**
+     * The executor with a bounded pool of worker threads.
+     */
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * A map of galaxy names to jobs which are queued or running, this map is
+     * also the lock for the coalescing logic.
+     */
+    private final Map<String, Job> pending = new HashMap<String, Job>();
+
+    /**
+     * A sequence number which orders jobs of equal priority.
+     */
+    private final AtomicLong sequence = new AtomicLong();
+
+    /**
+     * The worker which is invoked for each job.
+     */
+    private final Worker worker;
+
+    /**
+     * Creates an instance of this type with the specified number of threads.
+     *
+     * @param threads the maximum number of concurrent downloads
+     * @param worker the worker which is invoked for each job
+     */
+    SWGDownloadScheduler(int threads, Worker worker) {
+        this.worker = worker;
+
+        final AtomicInteger count = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads,
+                60L, TimeUnit.SECONDS, new PriorityBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread t = new Thread(r,
+                                "SWGAide-download-" + count.incrementAndGet());
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Returns the duration in milliseconds of the most recent download job for
+     * the specified galaxy, or -1 if no job is completed for it.
+     *
+     * @param galaxy a galaxy constant
+     * @return the most recent duration, or -1
+     */
+    long duration(SWGCGalaxy galaxy) {
+        Long d = durations.get(galaxy.getName());
+        return d == null
+                ? -1
+                : d.longValue();
+    }
+
+    /**
+     * Helper method which determines if the specified galaxy is the main
+     * galaxy that is selected at the SWGCraft options panel.
+     *
+     * @param galaxy a galaxy constant
+     * @return {@code true} if the galaxy is the main galaxy
+     */
+    private static boolean isMain(SWGCGalaxy galaxy) {
+        Integer gid =
+                (Integer) SWGFrame.getPrefsKeeper().get("optionMainGalaxy");
+        return gid != null && gid.intValue() == galaxy.id();
+    }
+
+    /**
+     * Returns the number of jobs which are waiting for a worker thread, jobs
+     * that are running are not included.
+     *
+     * @return the depth of the queue
+     */
+    int queueDepth() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * Schedules a download job for the specified galaxy. If a job for the
+     * galaxy is already queued or running this method does nothing, but a job
+     * for the main galaxy that is queued with background priority is moved
+     * ahead.
+     *
+     * @param galaxy a galaxy constant
+     * @return {@code false} if the request was coalesced with another job
+     * @throws NullPointerException if galaxy is {@code null}
+     */
+    boolean schedule(SWGCGalaxy galaxy) {
+        int prio = isMain(galaxy)
+                ? MAIN
+                : BACKGROUND;
+
+        Job job;
+        synchronized (pending) {
+            Job p = pending.get(galaxy.getName());
+            if (p != null) {
+                // coalesce, but promote a queued job for the main galaxy
+                if (prio < p.priority && executor.remove(p)) {
+                    p = new Job(galaxy, prio, sequence.getAndIncrement());
+                    pending.put(galaxy.getName(), p);
+                    executor.execute(p);
+                }
+                return false;
+            }
+            job = new Job(galaxy, prio, sequence.getAndIncrement());
+            pending.put(galaxy.getName(), job);
+        }
+        executor.execute(job);
+        return true;
+    }
+
+    /**
+     * A download job for one galaxy. Jobs are ordered by priority and then by
+     * the order they were scheduled.
+     */
+    private final class Job implements Runnable, Comparable<Job> {
+
+        /**
+         * The galaxy to download resources for.
+         */
+        final SWGCGalaxy galaxy;
+
+        /**
+         * The priority of this job, a lower value is processed first.
+         */
+        final int priority;
+
+        /**
+         * The sequence number of this job.
+         */
+        final long seq;
+
+        /**
+         * Creates a job for the specified galaxy.
+         *
+         * @param galaxy a galaxy constant
+         * @param priority the priority for the job
+         * @param seq a sequence number
+         */
+        Job(SWGCGalaxy galaxy, int priority, long seq) {
+            this.galaxy = galaxy;
+            this.priority = priority;
+            this.seq = seq;
+        }
+
+        @Override
+        public int compareTo(Job o) {
+            if (priority != o.priority)
+                return priority < o.priority
+                        ? -1
+                        : 1;
+            return seq < o.seq
+                    ? -1
+                    : seq == o.seq
+                            ? 0
+                            : 1;
+        }
+
+        @Override
+        public void run() {
+            long start = System.currentTimeMillis();
+            try {
+                worker.download(galaxy);
+            } catch (Throwable e) {
+                SWGAide.printError("SWGDownloadScheduler:" + galaxy, e);
+            } finally {
+                long d = System.currentTimeMillis() - start;
+                durations.put(galaxy.getName(), Long.valueOf(d));
+                synchronized (pending) {
+                    if (pending.get(galaxy.getName()) == this)
+                        pending.remove(galaxy.getName());
+                }
+                SWGAide.printDebug("cmgr", 3, "SWGDownloadScheduler: ",
+                        galaxy.getName(), " in ", Long.toString(d), " ms");
+            }
+        }
+    }
+
+    /**
+     * The worker which carries out the download for a galaxy.
+     */
+    interface Worker {
+
+        /**
+         * Downloads and processes current resources for the specified galaxy.
+         * This method is invoked on a worker thread.
+         *
+         * @param galaxy a galaxy constant
+         */
+        void download(SWGCGalaxy galaxy);
+    }
+}
@@ -76,7 +76,7 @@ public final class SWGPets {
      * @throws IOException if there us an error
      */
     private static List<String> content(URL u) throws IOException {
-        HttpURLConnection uc = (HttpURLConnection) u.openConnection();
+        HttpURLConnection uc = (HttpURLConnection) SWGCraft.connect(u);
         ZReader sr = ZReader.newTextReader(uc.getInputStream());
 
         List<String> ret = new ArrayList<String>(128);
@@ -84,7 +84,6 @@ public final class SWGPets {
             ret.add(line);
         
         sr.close();
-        uc.disconnect();
         return ret;
     }
 
@@ -0,0 +1,167 @@
+package swg.swgcraft;
+
+/**
+ * This type paces the network traffic to SWGCraft.org. Bulk operations such as
+ * inventory imports, ISDroid submissions, multi-submissions, and downloads for
+ * several galaxies otherwise fire requests as fast as they can and without
+ * coordination; all SOAP calls and HTTP requests pass through one instance of
+ * this type, see {@link SWGCraft#connect(java.net.URL)} and
+ * {@link SWGSoapManager}.
+ * <p>
+ * The pace is controlled by a token bucket: a request takes a token and tokens
+ * are refilled at the current rate, up to a small burst. SOAP calls also take
+ * a slot of a concurrency limit. Both the rate and the limit are adaptive: each
+ * successful request increases them slowly toward their maximum and each
+ * failure, a connection error, a timeout, or a response that denotes the
+ * server is busy, halves them. Thus the throughput settles at what the server
+ * sustains without tripping its throttling.
+ * <p>
+ * This type maintains counters for diagnostics, see {@link #toString()}.
+ * <p>
+ * This type is thread safe.
+ */
+final class SWGRateLimiter {
+
+    /**
+     * The maximum number of tokens which can accumulate.
+     */
+    private static final double BURST = 4.0;
+
+    /**
+     * The maximum number of concurrent SOAP calls.
+     */
+    private static final double LIMIT_MAX = 6.0;
+
+    /**
+     * The maximum rate, requests per second.
+     */
+    private static final double RATE_MAX = 8.0;
+
+    /**
+     * The minimum rate, requests per second.
+     */
+    private static final double RATE_MIN = 0.25;
+
+    /**
+     * The number of failed requests.
+     */
+    private long failures;
+
+    /**
+     * The number of SOAP calls in flight.
+     */
+    private int inFlight;
+
+    /**
+     * The current concurrency limit for SOAP calls, at least 1.
+     */
+    private double limit = 2.0;
+
+    /**
+     * The time in nanoseconds when {@link #tokens} was last refilled.
+     */
+    private long refilled = System.nanoTime();
+
+    /**
+     * The current rate, requests per second.
+     */
+    private double rate = RATE_MAX / 2;
+
+    /**
+     * The number of requests which passed this limiter.
+     */
+    private long requests;
+
+    /**
+     * The number of available tokens.
+     */
+    private double tokens = BURST;
+
+    /**
+     * The total time in milliseconds requests have waited at this limiter.
+     */
+    private long waited;
+
+    /**
+     * Waits until a token is available and, if {@code slot} is {@code true},
+     * until a SOAP call is allowed by the concurrency limit. A caller which
+     * obtains a slot must invoke {@link #release(boolean)} once its call is
+     * done.
+     *
+     * @param slot {@code true} to also obtain a concurrency slot
+     * @throws InterruptedException if the current thread is interrupted
+     */
+    synchronized void acquire(boolean slot) throws InterruptedException {
+        long start = System.currentTimeMillis();
+        while (true) {
+            refill();
+            boolean free = !slot || inFlight < (int) limit;
+            if (free && tokens >= 1.0) break;
+
+            long w = free
+                    ? (long) Math.ceil((1.0 - tokens) * 1000.0 / rate)
+                    : 1000L; // woken up by release
+            wait(Math.max(1L, w));
+        }
+        tokens -= 1.0;
+        if (slot) ++inFlight;
+        ++requests;
+        waited += System.currentTimeMillis() - start;
+    }
+
+    /**
+     * Reports the outcome of a request which did not obtain a slot. A failure
+     * halves the rate and the concurrency limit, a success increases them
+     * slightly.
+     *
+     * @param success {@code false} if the request failed or if the server
+     *        denoted it is busy
+     */
+    synchronized void report(boolean success) {
+        if (success) {
+            rate = Math.min(RATE_MAX, rate + 0.1);
+            limit = Math.min(LIMIT_MAX, limit + 1.0 / limit);
+        } else {
+            ++failures;
+            rate = Math.max(RATE_MIN, rate / 2);
+            limit = Math.max(1.0, limit / 2);
+            tokens = Math.min(tokens, 0.0);
+        }
+        notifyAll();
+    }
+
+    /**
+     * Helper method which refills the bucket for the elapsed time. The caller
+     * must hold the lock.
+     */
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(BURST, tokens + (now - refilled) * rate / 1e9);
+        refilled = now;
+    }
+
+    /**
+     * Releases a slot which was obtained by {@link #acquire(boolean)} and
+     * reports the outcome of the call, see {@link #report(boolean)}.
+     *
+     * @param success {@code false} if the call failed
+     */
+    synchronized void release(boolean success) {
+        --inFlight;
+        report(success);
+    }
+
+    /**
+     * Returns the counters and the current state of this limiter: the number
+     * of requests and failures, the total wait time, the current rate, and
+     * the concurrency limit.
+     */
+    @Override
+    public synchronized String toString() {
+        return String.format("requests=%d, failures=%d, waited=%d ms, "
+                + "rate=%.2f/s, concurrency=%d/%d", Long.valueOf(requests),
+                Long.valueOf(failures), Long.valueOf(waited),
+                Double.valueOf(rate), Integer.valueOf(inFlight),
+                Integer.valueOf((int) limit));
+    }
+}
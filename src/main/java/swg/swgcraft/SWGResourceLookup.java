@@ -0,0 +1,257 @@
+package swg.swgcraft;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import swg.crafting.resources.SWGMutableResource;
+import swg.crafting.resources.SWGResource;
+import swg.model.SWGCGalaxy;
+
+/**
+ * This type coalesces and caches requests for single resources at
+ * SWGCraft.org, by SWGCraft ID or by name and galaxy. Inventory imports,
+ * ISDroid reports, and other flows may ask for the same resource many times
+ * within seconds; with this type concurrent callers share one SOAP call and
+ * later callers are answered from a short-lived cache.
+ * <p>
+ * Both outcomes are cached: a resource which is found is cached for
+ * {@link #TTL_FOUND}, a resource which is unknown at SWGCraft.org is cached
+ * for the shorter {@link #TTL_UNKNOWN}. A request which fails because the
+ * server could not be reached is not cached. Callers always obtain a copy of
+ * a cached resource, never a shared instance.
+ * <p>
+ * This type is thread safe.
+ */
+final class SWGResourceLookup {
+
+    /**
+     * The time in milliseconds a found resource is cached.
+     */
+    private static final long TTL_FOUND = 5 * 60 * 1000L;
+
+    /**
+     * The time in milliseconds an unknown resource is cached.
+     */
+    private static final long TTL_UNKNOWN = 60 * 1000L;
+
+    /**
+     * A map of keys to cached results.
+     */
+    private final ConcurrentHashMap<String, Result> cache =
+            new ConcurrentHashMap<String, Result>();
+
+    /**
+     * A map of keys to requests which are in flight.
+     */
+    private final ConcurrentHashMap<String, FutureTask<Result>> inFlight =
+            new ConcurrentHashMap<String, FutureTask<Result>>();
+
+    /**
+     * Returns a copy of the resource with the specified SWGCraft ID, or
+     * {@code null} if the ID is unknown at SWGCraft.org or if the server could
+     * not be reached.
+     *
+     * @param id a SWGCraft ID
+     * @return a resource, or {@code null}
+     * @throws IOException if there is an error
+     */
+    SWGMutableResource byID(final long id) throws IOException {
+        return lookup(key(id), new Callable<SWGSoapResourceResponse>() {
+            @Override
+            public SWGSoapResourceResponse call() {
+                return SWGSoapManager.getSOAPHandler().requestResource(id);
+            }
+        });
+    }
+
+    /**
+     * Returns a copy of the resource with the specified name at the specified
+     * galaxy, or {@code null} if it is unknown at SWGCraft.org or if the
+     * server could not be reached.
+     *
+     * @param name a resource name
+     * @param galaxy a galaxy constant
+     * @return a resource, or {@code null}
+     * @throws IOException if there is an error
+     * @throws NullPointerException if an argument is {@code null}
+     */
+    SWGMutableResource byName(final String name, final SWGCGalaxy galaxy)
+            throws IOException {
+
+        return lookup(key(name, galaxy),
+                new Callable<SWGSoapResourceResponse>() {
+                    @Override
+                    public SWGSoapResourceResponse call() {
+                        return SWGSoapManager.getSOAPHandler().
+                                requestResource(name, galaxy);
+                    }
+                });
+    }
+
+    /**
+     * Helper method which returns a copy of the specified resource, or
+     * {@code null} if the argument is {@code null}.
+     *
+     * @param r a resource, or {@code null}
+     * @return a copy, or {@code null}
+     */
+    private static SWGMutableResource copy(SWGMutableResource r) {
+        if (r == null) return null;
+
+        SWGMutableResource c = new SWGMutableResource(r.getName(), r.rc());
+        c.galaxy(r.galaxy());
+        if (r.id() > 0) c.id(r.id());
+        c.stats(r.stats(), false);
+        return c;
+    }
+
+    /**
+     * Removes cached results for the specified resource, both by its ID and by
+     * its name. This method is invoked when the resource is submitted or
+     * edited so that a subsequent lookup reads the current data.
+     *
+     * @param r a resource
+     */
+    void forget(SWGResource r) {
+        if (r.id() > 0) cache.remove(key(r.id()));
+        if (r.getName() != null && r.galaxy() != null)
+            cache.remove(key(r.getName(), r.galaxy()));
+    }
+
+    /**
+     * Helper method which returns a key for the specified ID.
+     *
+     * @param id a SWGCraft ID
+     * @return a key
+     */
+    private static String key(long id) {
+        return "id:" + id;
+    }
+
+    /**
+     * Helper method which returns a key for the specified name and galaxy.
+     *
+     * @param name a resource name
+     * @param galaxy a galaxy constant
+     * @return a key
+     */
+    private static String key(String name, SWGCGalaxy galaxy) {
+        return "n:" + galaxy.id() + ':' + name.toLowerCase(Locale.ENGLISH);
+    }
+
+    /**
+     * Helper method which returns a copy of the resource for the specified
+     * key. If a result is cached and not expired it is used, otherwise if a
+     * request for the key is in flight this method waits for it, otherwise the
+     * specified request is executed by the current thread.
+     *
+     * @param key the key for the request
+     * @param request the request to execute
+     * @return a resource, or {@code null}
+     * @throws IOException if there is an error
+     */
+    private SWGMutableResource lookup(final String key,
+            final Callable<SWGSoapResourceResponse> request)
+            throws IOException {
+
+        long now = System.currentTimeMillis();
+        Result r = cache.get(key);
+        if (r != null) {
+            if (r.expires > now) return copy(r.resource);
+            cache.remove(key);
+        }
+
+        FutureTask<Result> task = new FutureTask<Result>(new Callable<Result>() {
+            @Override
+            public Result call() throws Exception {
+                return request(key, request);
+            }
+        });
+        FutureTask<Result> f = inFlight.putIfAbsent(key, task);
+        if (f == null) {
+            f = task;
+            try {
+                task.run();
+            } finally {
+                inFlight.remove(key);
+            }
+        }
+
+        try {
+            return copy(f.get().resource);
+        } catch (ExecutionException e) {
+            Throwable c = e.getCause();
+            if (c instanceof IOException) throw (IOException) c;
+            throw new IOException(c);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Helper method which executes the specified request and caches its
+     * result, unless the server could not be reached.
+     *
+     * @param key the key for the request
+     * @param request the request to execute
+     * @return the result
+     * @throws Exception if there is an error
+     */
+    private Result request(String key,
+            Callable<SWGSoapResourceResponse> request) throws Exception {
+
+        SWGSoapResourceResponse resp = request.call();
+        long now = System.currentTimeMillis();
+
+        // prune expired results once in a while
+        if (cache.size() > 256) {
+            for (Iterator<Result> it = cache.values().iterator(); it.hasNext();)
+                if (it.next().expires <= now) it.remove();
+        }
+
+        if (resp.isFaultless()) {
+            Result r = new Result(resp.getResource(), now + TTL_FOUND);
+            cache.put(key, r);
+            if (r.resource != null && r.resource.id() > 0)
+                cache.put(key(r.resource.id()), r);
+            return r;
+        }
+
+        Result r = new Result(null, now + TTL_UNKNOWN);
+        if (!resp.isUnreachable()) cache.put(key, r);
+        return r;
+    }
+
+    /**
+     * A cached result, a resource or {@code null} for an unknown resource.
+     */
+    private static final class Result {
+
+        /**
+         * The time in milliseconds when this result expires.
+         */
+        final long expires;
+
+        /**
+         * The resource, or {@code null} if it is unknown.
+         */
+        final SWGMutableResource resource;
+
+        /**
+         * Creates a result.
+         *
+         * @param resource a resource, or {@code null}
+         * @param expires the time this result expires
+         */
+        Result(SWGMutableResource resource, long expires) {
+            this.resource = resource;
+            this.expires = expires;
+        }
+    }
+}
@@ -3,30 +3,38 @@ package swg.swgcraft;
 import java.awt.Color;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.net.URLConnection;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.swing.JOptionPane;
 import javax.swing.Timer;
-import javax.xml.parsers.ParserConfigurationException;
-
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.NodeList;
-import org.xml.sax.SAXException;
 
 import swg.SWGAide;
 import swg.SWGConstants;
-import swg.crafting.Stat;
+import swg.crafting.SWGWeights;
 import swg.crafting.UpdateSubscriber;
 import swg.crafting.resources.ResourceUpdate;
 import swg.crafting.resources.ResourceUpdate.UpdateType;
@@ -38,7 +46,6 @@ import swg.crafting.resources.SWGResourceClass;
 import swg.crafting.resources.SWGResourceList;
 import swg.crafting.resources.SWGResourceMgr;
 import swg.crafting.resources.SWGResourceSet;
-import swg.crafting.resources.SWGResourceStats;
 import swg.crafting.resources.SWGWayPointInfo;
 import swg.crafting.resources.types.SWGFiberplast;
 import swg.crafting.resources.types.SWGOrganic;
@@ -50,7 +57,6 @@ import swg.tools.ZReader;
 import swg.tools.ZString;
 import swg.tools.ZStuff;
 import swg.tools.ZWriter;
-import swg.tools.ZXml;
 
 /**
  * This type is a sub-type to {@link SWGResourceMgr} and together they form an
@@ -120,12 +126,44 @@ public final class SWGResourceManager extends SWGResourceMgr {
     private static final int LEVENSHTEIN_MIN = 4;
 
     /**
-     * A list of locks denoting galaxies which are currently being updated. If a
-     * galaxy is contained in this list it is being processed. Any consecutive
-     * attempt to update such a galaxy should be aborted rather than being
-     * queued on the lock only to initiate an unnecessary download.
+     * The default number of SOAP calls which are in flight concurrently while
+     * several resources are submitted, see {@link #submitPipelined(List)}.
+     */
+    private static final int SUBMIT_THREADS = 3;
+
+    /**
+     * The durable outbox for write operations to SWGCraft.org for resources
+     * which have a SWGCraft ID, they are sent in the background and retried
+     * until they are delivered.
      */
-    static final List<SWGCGalaxy> locker = new ArrayList<SWGCGalaxy>();
+    private static final SWGResourceOutbox outbox = new SWGResourceOutbox(
+            new File(SWGConstants.repositoryPath, "swgcraft_outbox.txt"),
+            new SWGResourceOutbox.Sender() {
+                @Override
+                public boolean send(SWGResourceOutbox.Entry e) {
+                    return outboxSend(e);
+                }
+            });
+
+    /**
+     * The coalescing and caching front for requests for single resources at
+     * SWGCraft.org, see {@link #getMutable(long)}.
+     */
+    private static final SWGResourceLookup lookups = new SWGResourceLookup();
+
+    /**
+     * The scheduler for downloads of current resources. At most two galaxies
+     * are downloaded at the same time, the main galaxy goes first, and any
+     * consecutive attempt to update a galaxy which is queued or being
+     * processed is coalesced rather than initiating an unnecessary download.
+     */
+    private static final SWGDownloadScheduler downloads =
+            new SWGDownloadScheduler(2, new SWGDownloadScheduler.Worker() {
+                @Override
+                public void download(SWGCGalaxy galaxy) {
+                    downloadHelper(galaxy);
+                }
+            });
 
     /**
      * The most recent time in Unix time when the status text file at
@@ -265,8 +303,8 @@ public final class SWGResourceManager extends SWGResourceMgr {
     /**
      * An implementation which initiates a background job which for the
      * specified galaxy downloads current resources from SWGCraft.org. Once the
-     * job is started this method returns. If there is an ongoing download for
-     * the specified galaxy this method does nothing.
+     * job is scheduled this method returns. If there is a queued or ongoing
+     * download for the specified galaxy this method does nothing.
      * <P>
      * <B>Note: </B>This is the entry point for downloading a set of current
      * resources from SWGCraft.org. See {@link #downloadHelper(SWGCGalaxy)} for
@@ -277,29 +315,35 @@ public final class SWGResourceManager extends SWGResourceMgr {
      * @throws NullPointerException
      *             if galaxy is {@code null}
      */
-    private static void downloadCurrent(final SWGCGalaxy galaxy) {
+    private static void downloadCurrent(SWGCGalaxy galaxy) {
         if (galaxy == null)
             throw new NullPointerException("Galaxy is null");
 
-        synchronized (locker) {
-            // abort consecutive calls for the same galaxy while being processed
-            if (locker.contains(galaxy))
-                return;
-            locker.add(galaxy);
-        }
+        downloads.schedule(galaxy);
+    }
 
-        final ExecutorService executor = Executors.newSingleThreadExecutor();
-        executor.execute(new Runnable() {
+    /**
+     * Returns the duration in milliseconds of the most recent download job for
+     * the specified galaxy, or -1 if no download is completed for it during
+     * this session. This method is meant for diagnostics.
+     * 
+     * @param galaxy a galaxy constant
+     * @return the most recent duration, or -1
+     * @throws NullPointerException if galaxy is {@code null}
+     */
+    public static long downloadDuration(SWGCGalaxy galaxy) {
+        return downloads.duration(galaxy);
+    }
 
-            
-            public void run() {
-                downloadHelper(galaxy);
-                synchronized (locker) {
-                    locker.remove(galaxy);
-                }
-                executor.shutdown();
-            }
-        });
+    /**
+     * Returns the number of galaxy downloads which are waiting to be processed,
+     * ongoing downloads are not included. This method is meant for
+     * diagnostics.
+     * 
+     * @return the number of queued downloads
+     */
+    public static int downloadQueueDepth() {
+        return downloads.queueDepth();
     }
 
     /**
@@ -312,17 +356,31 @@ public final class SWGResourceManager extends SWGResourceMgr {
      * <ol>
      * <li>determines if there is a download available, aborts if there is no
      * update &mdash; {@link #isGalaxyUpdated(SWGCGalaxy)}</li>
-     * <li>downloads the available update, aborts if there is an error &mdash;
-     * {@link SWGCraft#downloadURLToDisk(URL, File, boolean)}</li>
-     * <li>updates the local status file &mdash;
-     * {@link #statusLocalWrite(SWGCGalaxy, Long)}</li>
-     * <li>creates a list of current resource objects &mdash;
-     * {@link #localXmlParse(File, SWGCGalaxy)}</li>
+     * <li>requests the export with the validators from the previous download
+     * and exits if the server responds that it is not modified &mdash;
+     * {@link SWGCraft#openConditional(URL, File, boolean)}</li>
+     * <li>downloads the available update and, in the same pass, creates a
+     * list of current resource objects while the raw content is copied to the
+     * local cache file, aborts if there is an error &mdash;
+     * {@link SWGCraft#openURLToDisk(URLConnection, File, boolean)} and
+     * {@link SWGResourceXmlParser}</li>
+     * <li>determines which resources differ from the local cache &mdash;
+     * {@link #downloadDelta(SWGResourceList)}</li>
      * <li>calls the super-type which updates its cache &mdash;
-     * {@link SWGResourceMgr#updateFromDownload(SWGResourceList)}</li>
+     * {@link SWGResourceMgr#updateFromDownload(SWGResourceList, SWGResourceList)}
+     * </li>
+     * <li>updates the local status file &mdash;
+     * {@link #statusLocalWrite(SWGCGalaxy, Long)} &mdash; and writes a binary
+     * snapshot of the parsed list &mdash; {@link SWGResourceSnapshot}</li>
      * <li>notifies update subscribers &mdash;
      * {@link SWGResourceManager#notifySubscribers(ResourceUpdate)}</li>
      * </ol>
+     * <p>
+     * If there is no update, or if the server responds that the export is not
+     * modified, but the local cache has no spawning resources for the galaxy,
+     * for example if SWGAide's object storage was not loaded, the resources are
+     * restored from the local copy of the most recent download &mdash;
+     * {@link #localRestore(SWGCGalaxy, File)}.
      * 
      * @param galaxy a galaxy constant
      * @throws NullPointerException if the argument is {@code null}
@@ -331,7 +389,9 @@ public final class SWGResourceManager extends SWGResourceMgr {
         File cf = localXML(galaxy);
         long prevChk = previousStatusCheck; // 0 the first time ever
         if (cf.exists() && !isGalaxyUpdated(galaxy)) {
-            if (prevChk == 0) // notify anyway, to trigger checks and whatever
+            boolean restored = cachedSpawning(galaxy).isEmpty()
+                    && localRestore(galaxy, cf);
+            if (prevChk == 0 || restored) // notify anyway, to trigger checks
                 SWGResourceManager.notifySubscribers(new ResourceUpdate(
                         UpdateType.NEW_DOWNLOAD, galaxy));
             return;
@@ -342,17 +402,48 @@ public final class SWGResourceManager extends SWGResourceMgr {
         try {
             Long statusTime = statusSWGCraftTime();
 
+            long localTime = getStatusLocalTime(galaxy).longValue();
+            File vf = localValidators(galaxy);
+
             URL u = swgcraftUrlXml(galaxy);
-            if (!SWGCraft.downloadURLToDisk(u, cf, true)) {
+            URLConnection uc = SWGCraft.openConditional(u, cf.exists()
+                    ? vf
+                    : null, true);
+            if (uc == null) {
                 downloadStatusAbort(galaxy);
                 return;
             }
+            if (SWGCraft.isNotModified(uc)) {
+                // the export for this galaxy is not changed, just the status
+                SWGResourceSnapshot.touch(localSnapshot(galaxy), galaxy,
+                        localTime, statusTime.longValue());
+                statusLocalWrite(galaxy, statusTime);
+                boolean restored = cachedSpawning(galaxy).isEmpty()
+                        && localRestore(galaxy, cf);
+                if (prevChk == 0 || restored)
+                    SWGResourceManager.notifySubscribers(new ResourceUpdate(
+                            UpdateType.NEW_DOWNLOAD, galaxy));
+                return;
+            }
+
+            SWGTeeInputStream in = SWGCraft.openURLToDisk(uc, cf, true);
 
-            //SWGAide.printDebug(Thread.currentThread().getName(), 9, "SWGResourceManager:downloadHelper update reslist");
-            SWGResourceList resList = localXmlParse(cf, galaxy);
+            // parse while downloading, the cache file is replaced only if
+            // the complete document was parsed without error
+            SWGResourceList resList;
+            try {
+                resList = SWGResourceXmlParser.parse(
+                        in, galaxy, COLLECTION_SIZE);
+                in.commit();
+            } finally {
+                in.close();
+            }
             //SWGAide.printDebug(Thread.currentThread().getName(), 9, "SWGResourceManager:downloadHelper2 update reslist:" + resList);
-            updateFromDownload(resList);
+            updateFromDownload(resList, downloadDelta(resList));
             statusLocalWrite(galaxy, statusTime);
+            SWGResourceSnapshot.write(resList, galaxy,
+                    statusTime.longValue(), localSnapshot(galaxy));
+            SWGCraft.validatorsWrite(uc, vf);
 
         } catch (IOException e) {
             if (e.getMessage().equals("Not in GZIP format")) {
@@ -389,6 +480,63 @@ public final class SWGResourceManager extends SWGResourceMgr {
         
     }
 
+    /**
+     * Helper method which returns the resources in the download which differ
+     * from the local cache of known resources. A resource is included unless
+     * its cached instance has equal data, see
+     * {@link #downloadEquals(SWGResource, SWGResource)}. Thus also local
+     * changes which are not confirmed by SWGCraft.org, such as untrusted
+     * edits, planet records, or submissions which later were rejected, are
+     * corrected by the download.
+     * 
+     * @param now the current download
+     * @return the resources of the download which differ from the cache
+     */
+    private static SWGResourceList downloadDelta(SWGResourceList now) {
+        SWGResourceList ret = new SWGResourceList();
+        for (SWGResource r : now) {
+            SWGKnownResource kr = cachedInstance(r.id());
+            if (kr == null || !downloadEquals(kr, r))
+                ret.add(r);
+        }
+        return ret;
+    }
+
+    /**
+     * Helper method which determines if the two downloaded resources have
+     * equal data: name, resource class, stats, planet records, and waypoints.
+     * 
+     * @param a a resource
+     * @param b a resource
+     * @return {@code true} if the data is equal
+     */
+    private static boolean downloadEquals(SWGResource a, SWGResource b) {
+        if (!a.getName().equals(b.getName()) || a.rc() != b.rc()
+                || !a.stats().equals(b.stats()))
+            return false;
+
+        List<SWGPlanet> pl = a.availability();
+        if (pl.size() != b.availability().size()) return false;
+        for (SWGPlanet p : pl) {
+            SWGPlanetAvailabilityInfo pa = a.availabilityFor(p);
+            SWGPlanetAvailabilityInfo pb = b.availabilityFor(p);
+            if (pb == null || pa.available() != pb.available()
+                    || !String.valueOf(pa.availableBy()).equals(
+                            String.valueOf(pb.availableBy())))
+                return false;
+        }
+
+        List<SWGWayPointInfo> wl = a.waypoints();
+        if (wl.size() != b.waypoints().size()) return false;
+        for (SWGWayPointInfo w : wl) {
+            SWGWayPointInfo wb = b.waypoint(Integer.valueOf(w.wid()));
+            if (wb == null || !String.valueOf(w.wptext()).equals(
+                    String.valueOf(wb.wptext())))
+                return false;
+        }
+        return true;
+    }
+
     /**
      * Helper method which updates SWGAide's status bar if there is an error.
      * 
@@ -559,10 +707,8 @@ public final class SWGResourceManager extends SWGResourceMgr {
         if (ret != null)
             return ret;
 
-        // TODO: optimize so that if the argument has been queried for within a
-        // very short time SWGCraft.org (within seconds) is left aside and a
-        // local instance is created right away
-
+        // a resource queried for recently, also if it is unknown at
+        // SWGCraft.org, is answered without a request, see getMutable
         SWGMutableResource remote;
         if (source.id() > 0)
             remote = getMutable(source.id());
@@ -575,6 +721,81 @@ public final class SWGResourceManager extends SWGResourceMgr {
             : getKnownTrusted(source);
     }
 
+    /**
+     * Returns a map of resources with the specified names from the specified
+     * galaxy; the keys are the names in lower case. This is the batch variant
+     * of {@link #getInstance(String, SWGCGalaxy)} for clients such as
+     * inventory imports which resolve many names at once.
+     * <P>
+     * Duplicate names are resolved once. Names which are cached locally are
+     * resolved in one pass without communication with SWGCraft.org; the
+     * remaining names are requested concurrently with a bounded number of
+     * requests in flight, see {@link #submitPipelined(List)}, and progress is
+     * displayed at the status bar. Names which are unknown at SWGCraft.org
+     * are not included in the returned map.
+     * <P>
+     * This method is blocking and does not return until communication with
+     * SWGCraft.org is complete.
+     * 
+     * @param names the proper resource names
+     * @param galaxy a galaxy constant
+     * @return a map of lower case names to resources, possibly empty
+     * @throws IOException if there is an I/O error with SWGCraft.org
+     * @throws NullPointerException if an argument is {@code null}
+     */
+    public static Map<String, SWGKnownResource> getInstances(
+            Collection<String> names, final SWGCGalaxy galaxy)
+            throws IOException {
+
+        Map<String, SWGKnownResource> ret =
+                new HashMap<String, SWGKnownResource>(names.size() * 2);
+        final List<String> remote = new ArrayList<String>();
+        List<String> keys = new ArrayList<String>();
+        Set<String> seen = new HashSet<String>();
+        for (String n : names) {
+            String k = n.toLowerCase(Locale.ENGLISH);
+            if (!seen.add(k)) continue;
+
+            SWGKnownResource kr = cachedInstance(n, galaxy);
+            if (kr != null
+                    && SWGResourceClass.validate(kr.stats(), kr.rc()) == null)
+                ret.put(k, kr);
+            else {
+                remote.add(n);
+                keys.add(k);
+            }
+        }
+        if (remote.isEmpty()) return ret;
+
+        final AtomicInteger done = new AtomicInteger();
+        List<Callable<SWGKnownResource>> tasks =
+                new ArrayList<Callable<SWGKnownResource>>(remote.size());
+        for (final String n : remote)
+            tasks.add(new Callable<SWGKnownResource>() {
+                @Override
+                public SWGKnownResource call() throws Exception {
+                    frame.putToStatbar(String.format("Lookup %s of %s: %s @ %s",
+                            Integer.toString(done.incrementAndGet()),
+                            Integer.toString(remote.size()), n,
+                            galaxy.getName()), null);
+                    return getInstance(n, galaxy);
+                }
+            });
+
+        List<SWGKnownResource> found;
+        try {
+            found = submitPipelined(tasks);
+        } catch (RuntimeException e) {
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            throw e;
+        }
+        for (int i = 0; i < found.size(); ++i)
+            if (found.get(i) != null) ret.put(keys.get(i), found.get(i));
+
+        return ret;
+    }
+
     /**
      * Returns a resource of type {@link SWGMutableResource} with the specified
      * ID. This implementation requests the resource from SWGCraft.org and
@@ -586,6 +807,10 @@ public final class SWGResourceManager extends SWGResourceMgr {
      * SWGCraft.org is complete. If the ID is known at SWGCraft.org this
      * implementation is guaranteed to return an instance.
      * <P>
+     * Concurrent requests for the same ID share one request, and the outcome
+     * is cached for a short while, also if the ID is unknown. If the server
+     * cannot be reached {@code null} is returned and nothing is cached.
+     * <P>
      * The purpose of this method is to supersede {@link #getInstance(long)} and
      * to obtain non-spawning resources from SWGCraft to for example update
      * locally known instances. See
@@ -604,18 +829,12 @@ public final class SWGResourceManager extends SWGResourceMgr {
      */
     public static SWGMutableResource getMutable(long id) throws IOException {
         try {
-            SWGSoapResourceResponse resp =
-                SWGSoapManager.getSOAPHandler().requestResource(id);
-
-            if (resp.isFaultless())
-                return resp.getResource();
-
+            return lookups.byID(id);
         } catch (Exception e) {
             SWGAide.printDebug("cmgr", 1, "SWGResourceManager:getMutable(id): "
                 + e.toString());
             throw new IOException(e);
         }
-        return null;
     }
 
     /**
@@ -629,6 +848,9 @@ public final class SWGResourceManager extends SWGResourceMgr {
      * with SWGCraft.org is complete. If the identifiers are known at
      * SWGCraft.org this implementation is guaranteed to return an instance.
      * <P>
+     * Concurrent requests for the same identifiers share one request, and the
+     * outcome is cached for a short while, see {@link #getMutable(long)}.
+     * <P>
      * The purpose of this method is to supersede {@link #getInstance(long)} and
      * to obtain non-spawning resources from SWGCraft to for example update
      * locally known instances. See
@@ -651,28 +873,49 @@ public final class SWGResourceManager extends SWGResourceMgr {
         SWGCGalaxy galaxy) throws IOException {
 
         try {
-            SWGSoapResourceResponse resp =
-                SWGSoapManager.getSOAPHandler().requestResource(resourceName,
-                    galaxy);
-
-            if (resp.isFaultless())
-                return resp.getResource();
-
+            return lookups.byName(resourceName, galaxy);
         } catch (Exception e) {
             SWGAide.printDebug("cmgr", 1,
                 "SWGResourceManager:getMutable(n,g): " + e.toString());
             throw new IOException(e);
         }
-        return null;
     }
 
     /**
-     * Requests from SWGCraft.org and returns a list of resources for the
-     * identified galaxy. The response contains a list with none, one, or
-     * several elements of type {@link SWGResourceTuple}. Each tuple represents
-     * a resource which has spawned at the identified galaxy, a resource which
-     * name begins with the specified first letters. If there is an error a
-     * message is added as a fault message to the response.
+     * Returns a list of resources for the identified galaxy. This is the same
+     * as {@code getResources(firstLetters, galaxy, false)}, that is, resources
+     * are first found in the local cache and SWGCraft.org is requested only if
+     * no cached resource name begins with the specified letters.
+     * 
+     * @param firstLetters
+     *            the first letters of a resource name, or its full name
+     * @param galaxy
+     *            a galaxy constant
+     * @return a response with a list of resource tuples
+     * @throws NullPointerException
+     *             if an argument is {@code null}
+     */
+    public static SWGSoapListResResponse getResources(String firstLetters,
+        SWGCGalaxy galaxy) {
+        return getResources(firstLetters, galaxy, false);
+    }
+
+    /**
+     * Returns a list of resources for the identified galaxy. The response
+     * contains a list with none, one, or several elements of type
+     * {@link SWGResourceTuple}. Each tuple represents a resource which has
+     * spawned at the identified galaxy, a resource which name begins with the
+     * specified first letters. If there is an error a message is added as a
+     * fault message to the response.
+     * <P>
+     * Unless {@code remote} is {@code true} this implementation first reads
+     * the local cache, which is indexed by name for each galaxy and answers
+     * promptly. Only if no cached resource name begins with the specified
+     * letters, or if {@code remote} is {@code true}, the list is requested
+     * from SWGCraft.org. Hence a client which is invoked while the user types
+     * does not hit SWGCraft.org for resources which are known locally, but
+     * the local list may lack resources which are not yet cached; a client
+     * should provide a means to search SWGCraft.org explicitly.
      * <P>
      * Even if the complete name for a resource is provided this implementation
      * may return a response with a list which size is greater than one. Then
@@ -683,12 +926,30 @@ public final class SWGResourceManager extends SWGResourceMgr {
      *            the first letters of a resource name, or its full name
      * @param galaxy
      *            a galaxy constant
+     * @param remote
+     *            {@code true} to request SWGCraft.org also if the local cache
+     *            has candidates
      * @return a response with a list of resource tuples
      * @throws NullPointerException
      *             if an argument is {@code null}
      */
     public static SWGSoapListResResponse getResources(String firstLetters,
-        SWGCGalaxy galaxy) {
+        SWGCGalaxy galaxy, boolean remote) {
+
+        if (firstLetters == null || galaxy == null)
+            throw new NullPointerException("An argument is null");
+
+        if (!remote) {
+            SWGSoapListResResponse resp = new SWGSoapListResResponse(galaxy);
+            boolean found = false;
+            for (SWGKnownResource kr : cachedPrefix(firstLetters, galaxy)) {
+                if (kr.rc().isSpaceOrRecycled()) continue;
+
+                resp.add(new SWGResourceTuple(kr.getName(), kr.rc()));
+                found = true;
+            }
+            if (found) return resp;
+        }
         return SWGSoapManager.getSOAPHandler().requestResources(firstLetters,
             galaxy);
     }
@@ -725,6 +986,10 @@ public final class SWGResourceManager extends SWGResourceMgr {
      * the returned set may be dated. If no resources are found
      * {@link SWGResourceSet#EMPTY} is returned.
      * <P>
+     * The returned set is read-only and it is shared by all clients until the
+     * resources at the galaxy are updated. A client that must sort or modify
+     * the set must create a copy of it.
+     * <P>
      * As a side effect from a call to this method a background job starts which
      * tries to download current resources for {@code galaxy} from SWGCraft.org.
      * Once a download is ready update notifications are sent to subscribers.
@@ -744,6 +1009,45 @@ public final class SWGResourceManager extends SWGResourceMgr {
         return cachedSpawning(galaxy);
     }
 
+    /**
+     * Returns the best resources which are currently spawning at the specified
+     * galaxy, rated by the specified weights. The returned set contains at
+     * most {@code k} resources which rate is equal to or above the threshold,
+     * sorted by rate, best first; see {@link SWGResourceSet#topBy(SWGWeights,
+     * SWGResourceClass, boolean, boolean, double, int)} for details. As for
+     * {@link #getSpawning(SWGCGalaxy)} this method is non-blocking and may
+     * start a background download of current resources.
+     * 
+     * @param galaxy
+     *            a galaxy constant
+     * @param weights
+     *            the values to compute the weight of the resources from
+     * @param capsFrom
+     *            the resource class to derive caps from
+     * @param zeroIsMax
+     *            {@code true} if a zero-value should be treated as its capped
+     *            value
+     * @param useJTLcap
+     *            {@code true} to adjust for JTL resource rules
+     * @param threshold
+     *            the minimum rate, in the range [0.0 1000.0]
+     * @param k
+     *            the maximum number of resources
+     * @return a sorted set of at most {@code k} resources, or
+     *         {@link SWGResourceSet#EMPTY}
+     * @throws IllegalArgumentException
+     *             if an argument is invalid
+     * @throws NullPointerException
+     *             if an object argument is {@code null}
+     */
+    public static SWGResourceSet getSpawningTop(SWGCGalaxy galaxy,
+        SWGWeights weights, SWGResourceClass capsFrom, boolean zeroIsMax,
+        boolean useJTLcap, double threshold, int k) {
+
+        return getSpawning(galaxy).topBy(
+            weights, capsFrom, zeroIsMax, useJTLcap, threshold, k);
+    }
+
     /**
      * Returns the timestamp for the locally cached resource export file for the
      * specified galaxy. If there is no local cache 0 is returned. The time is
@@ -918,85 +1222,93 @@ public final class SWGResourceManager extends SWGResourceMgr {
         return z.toString();
     }
 
+    /**
+     * Helper method which restores the resources for the specified galaxy from
+     * the local copy of the most recent download. This implementation reads
+     * the binary snapshot if it exists and is current for the local status
+     * time, otherwise it parses the specified XML file and writes a new
+     * snapshot. The list is handed to
+     * {@link SWGResourceMgr#updateFromDownload(SWGResourceList)}. If there is
+     * an error it is logged and {@code false} is returned.
+     * 
+     * @param galaxy a galaxy constant
+     * @param xmlFile the local XML file for the galaxy
+     * @return {@code true} if resources were restored
+     */
+    private static boolean localRestore(SWGCGalaxy galaxy, File xmlFile) {
+        long statusTime = getStatusLocalTime(galaxy).longValue();
+        File sf = localSnapshot(galaxy);
+        try {
+            SWGResourceList resList =
+                    SWGResourceSnapshot.read(sf, galaxy, statusTime);
+            if (resList == null) {
+                InputStream in = new BufferedInputStream(
+                        new FileInputStream(xmlFile));
+                try {
+                    resList = SWGResourceXmlParser.parse(
+                            in, galaxy, COLLECTION_SIZE);
+                } finally {
+                    in.close();
+                }
+                SWGResourceSnapshot.write(resList, galaxy, statusTime, sf);
+            }
+            if (resList.isEmpty()) return false;
+
+            updateFromDownload(resList);
+            return true;
+        } catch (Exception e) {
+            SWGAide.printDebug("cmgr", 1,
+                    "SWGResourceManager:localRestore: ", e.toString());
+        }
+        return false;
+    }
+
     /**
      * Helper method which returns an abstract file which denotes the location
-     * of the cached file of current resources. The file may not yet exist in
-     * the local file system but this is the file to read/write for the
-     * specified galaxy.
+     * of the validators for the most recent download of current resources, see
+     * {@link SWGCraft#openConditional(URL, File, boolean)}. The file may not
+     * yet exist in the local file system.
      * 
      * @param galaxy a galaxy constant
-     * @return an abstract file for the cache file
+     * @return an abstract file for the validators file
      * @throws NullPointerException if the argument is {@code null}
      */
-    private static File localXML(SWGCGalaxy galaxy) {
-        String gxy = String.format("swgcraft-%s-current.xml",
+    private static File localValidators(SWGCGalaxy galaxy) {
+        String gxy = String.format("swgcraft-%s-validators.txt",
                 galaxy.getName().toLowerCase(Locale.ENGLISH));
         return new File(SWGConstants.getCacheDirectory(), gxy);
     }
 
     /**
-     * Helper method which from the specified XML file returns a list of
-     * resources. The XML file is a resource export file which is already
-     * downloaded from SWGCraft.org for the specified galaxy. The returned list
-     * contains objects of type {@link SWGMutableResource}. If there is an error
-     * {@link SWGResourceList#EMPTY} is returned.
-     * <p>
-     * This implementation <i>does not </i> evaluate the elements in the
-     * returned list with the local cache of known resources.
+     * Helper method which returns an abstract file which denotes the location
+     * of the binary snapshot of current resources, see
+     * {@link SWGResourceSnapshot}. The file may not yet exist in the local file
+     * system.
      * 
-     * @param xmlFile the XML file to parse from
-     * @param gxy a galaxy constant
-     * @return a list of {@link SWGMutableResource}, or an empty list
-     * @throws IOException if there is an I/O error
-     * @throws NullPointerException if an argument is {@code null}
-     * @throws ParserConfigurationException if there is a document error
-     * @throws SAXException if there is an XML parse error
+     * @param galaxy a galaxy constant
+     * @return an abstract file for the snapshot file
+     * @throws NullPointerException if the argument is {@code null}
      */
-    private static SWGResourceList localXmlParse(File xmlFile, SWGCGalaxy gxy)
-            throws ParserConfigurationException, SAXException, IOException {
-
-        if (xmlFile == null || gxy == null) throw new NullPointerException(
-                "Argument is null, file=" + xmlFile + ", galaxy=" + gxy);
-
-        Document xml = ZXml.parse(xmlFile);
-
-        SWGResourceList resources = new SWGResourceList(COLLECTION_SIZE);
-
-        NodeList nList = xml.getElementsByTagName("resource");
-        int length = nList.getLength();
-        for (int i = 0; i < length; ++i) {
-            Element resElem = (Element) nList.item(i);
-
-            long id = ZXml.longFromAttr(resElem, "swgaide_id");
-
-            SWGMutableResource mr = (SWGMutableResource) resources.getByID(id);
+    private static File localSnapshot(SWGCGalaxy galaxy) {
+        String gxy = String.format("swgcraft-%s-current.bin",
+                galaxy.getName().toLowerCase(Locale.ENGLISH));
+        return new File(SWGConstants.getCacheDirectory(), gxy);
+    }
 
-            if (mr == null) { // this one is new
-                mr = resourceFromXML(resElem, id, gxy);
-                if (mr == null) continue; // may be a space resource, ignore
-                resources.add(mr);
-            }
-            resourceAddPlanet(mr, resElem);
-            // parse waypoints
-            // TODO finish this
-            NodeList waypoints = resElem.getElementsByTagName("waypoints");
-            Element wrapper = (Element) waypoints.item(0);
-            NodeList wList = wrapper.getElementsByTagName("waypoint");
-            int wlength = wList.getLength();
-            if(wlength>0) {
-            	for (int w = 0; w < wlength; ++w) {
-            		Element wp = (Element) wList.item(w);
-            		int wid = ZXml.intFromAttr(wp, "swgaide_id");
-            		String wptext = ZXml.stringFromElem(wp, "wptext");
-            		if(wid>0) {
-            			SWGWayPointInfo wInfo = new SWGWayPointInfo(wid, wptext);
-            			mr.waypointAdd(wInfo);
-            		}
-            		//SWGAide.printDebug(Thread.currentThread().getName(), 9, "SWGResourceManager: waypoint Data: " + wid + " " + wptext);
-            	}
-            }
-        }
-        return resources.toReturn();
+    /**
+     * Helper method which returns an abstract file which denotes the location
+     * of the cached file of current resources. The file may not yet exist in
+     * the local file system but this is the file to read/write for the
+     * specified galaxy.
+     * 
+     * @param galaxy a galaxy constant
+     * @return an abstract file for the cache file
+     * @throws NullPointerException if the argument is {@code null}
+     */
+    private static File localXML(SWGCGalaxy galaxy) {
+        String gxy = String.format("swgcraft-%s-current.xml",
+                galaxy.getName().toLowerCase(Locale.ENGLISH));
+        return new File(SWGConstants.getCacheDirectory(), gxy);
     }
 
     /**
@@ -1016,109 +1328,119 @@ public final class SWGResourceManager extends SWGResourceMgr {
     }
 
     /**
-     * Removes the specified subscriber from being notified by this resource
-     * manager when a download is ready.
+     * Helper method which adds a write operation to the outbox and amends the
+     * specified response to read success. The operation is sent by the
+     * outbox worker in the background, without delay, and it is retried until
+     * it is delivered; the local cache is updated by the caller as for a
+     * successful request. The resource must have a SWGCraft ID.
      * 
-     * @param subscriber
-     *            the subscriber to remove
+     * @param r a response to return to the caller
+     * @param op the operation
+     * @param kr the resource the operation is about
+     * @param planet the ID of the planet, or 0 if not applicable
+     * @param date the date for the operation, in seconds, or 0
+     * @return the amended response
      */
-    public static void removeSubscriber(UpdateSubscriber subscriber) {
-        subscribers.remove(subscriber);
+    private static <T extends SWGSoapResponse> T outboxEnqueue(T r,
+            SWGResourceOutbox.Op op, SWGKnownResource kr, int planet,
+            long date) {
+
+        outbox.enqueue(op, kr.galaxy().id(), kr.id(), planet, date,
+                kr.getName());
+        r.faultMessage = null;
+        r.faultMessageShort = null;
+        r.status = 1;
+        r.unreachable = false;
+
+        frame.putToStatbar(String.format("Queued for swgaide.com: %s (%s)",
+                kr.getName(), Integer.valueOf(outbox.size())), null);
+        return r;
     }
 
     /**
-     * Helper method which adds a planet availability record to the specified
-     * resource, see {@link SWGPlanetAvailabilityInfo}. The added record is
-     * based on the content of the soecified XML element.
-     * <p>
-     * Technical Note:<br/>
-     * The specified XML element is in fact contained within the element that
-     * reads the planetary data; see the footnote of {@link SWGResourceManager}
-     * for the layout of the XML file. This implementation traverses upwards to
-     * find the planet.
+     * Returns a list of descriptions for write operations which are queued for
+     * SWGCraft.org and not yet delivered. The operations are sent and retried
+     * in the background, the returned list is meant for a status view, see
+     * {@link SWGCraftOptionsPanel}.
      * 
-     * @param mr the resource to add a planet record to
-     * @param xml the XML element to start with
-     * @throws NullPointerException if an argument is {@code null}
+     * @return a list of descriptions, or an empty list
      */
-    private static void resourceAddPlanet(SWGMutableResource mr, Element xml) {
-        if (mr == null || xml == null)
-            throw new NullPointerException("An argument is null");
-
-       
-        NodeList planets = xml.getElementsByTagName("planets");
-        Element wrapper = (Element) planets.item(0);
-        NodeList pList = wrapper.getElementsByTagName("planet");
-        int length = pList.getLength();
-        for (int i = 0; i < length; ++i) {
-        	Element pElem = (Element) pList.item(i);
-
-            int pid = ZXml.intFromAttr(pElem, "swgaide_id");
-            if(pid>0) {
-	            SWGPlanetAvailabilityInfo pInfo = new SWGPlanetAvailabilityInfo(
-	                    SWGPlanet.fromID(pid),
-	                    ZXml.longFromElem(xml, "available_timestamp"),
-	                    ZXml.stringFromElem(xml, "available_by"));
-	
-	            mr.availability(pInfo);
-            }
-        }
+    public static List<String> outboxPending() {
+        return outbox.pending();
     }
 
     /**
-     * Helper method which creates and returns a {@link SWGMutableResource} from
-     * the XML element, or {@code null} if this is a space resource. It is not
-     * likely this method will throw an exception.
-     * <p>
-     * <b>Notice:</b> this implementation does not add planet availability. Only
-     * ID, galaxy, name, type, and stats are added to the resource. See the
-     * footnote of {@link SWGResourceManager} for the layout of the XML file.
+     * Helper method which sends the specified outbox entry to SWGCraft.org.
+     * This method returns {@code false} if the server could not be reached or
+     * if the user name and password do not match, then the entry is retried
+     * later. Otherwise this method returns {@code true}; if the server rejects
+     * the entry, or if the resource is no longer known, it is logged and
+     * discarded. This method executes on the outbox worker thread.
      * 
-     * @param xml the element that contains the SWGCraft-style resource data
-     * @param id the unique SWGCraft ID for the resource to parse
-     * @param galaxy a galaxy constant
-     * @return a new mutable resource object, or {@code null}
-     * @throws IllegalArgumentException if there is something invalid
-     * @throws NullPointerException if something is parsed to {@code null}
+     * @param e an outbox entry
+     * @return {@code false} if the entry should be retried
      */
-    private static SWGMutableResource resourceFromXML(
-            Element xml, long id, SWGCGalaxy galaxy) {
-
-        if (galaxy == null || id <= 0)
-            throw new IllegalArgumentException(
-                    "Invalid argument: " + galaxy + ' ' + id);
-
-        String tok = ZXml.stringFromElem(xml, "swgaide_type_id");
-        SWGResourceClass type = SWGResourceClass.rc(tok);
-        if (type.isSpaceOrRecycled()) return null;
-
-        String name = ZXml.stringFromElem(xml, "name");
+    private static boolean outboxSend(SWGResourceOutbox.Entry e) {
+        SWGKnownResource kr = cachedInstance(e.id);
+        if (kr == null) {
+            SWGAide.printDebug("outb", 1,
+                    "SWGResourceManager:outboxSend: unknown ", e.toString());
+            return true;
+        }
 
-        SWGMutableResource mr = new SWGMutableResource(name, type);
-        mr.galaxy(galaxy);
-        mr.id(id);
+        SWGSoapManager h = SWGSoapManager.getSOAPHandler();
+        if (h == null) return false;
+
+        SWGSoapResponse r;
+        switch (e.op) {
+        case AVAILABLE:
+            r = h.sendAvailable(kr, SWGPlanet.fromID(e.planet));
+            break;
+        case DEPLETE:
+            r = h.sendDespawn(e.id);
+            break;
+        case REVIVE:
+            r = h.sendRespawn(e.id);
+            break;
+        default:
+            r = h.sendEdit(kr, null);
+        }
 
-        // remember this, new instances are depleted by default, undeplete it
-        mr.depleted(false);
+        if (r.isUnreachable() || r.getStatus() == 999) return false;
 
-        int[] values = new int[Stat.COUNT];
-        for (Stat s : Stat.values()) {
-            values[s.i] = ZXml.intFromElem(xml, s.getName());
+        if (!r.isFaultless()) {
+            SWGAide.printDebug("outb", 1, "SWGResourceManager:outboxSend: ",
+                    e.toString(), ": ", r.getFaultMessage() != null
+                            ? r.getFaultMessage()
+                            : r.getStatusString());
+            frame.putToStatbar(String.format("Rejected by swgaide.com: %s",
+                    e.toString()), null);
         }
-        SWGResourceStats rs = new SWGResourceStats(values);
-        mr.stats(rs, false); // trust SWGCraft
+        return true;
+    }
 
-        return mr;
+    /**
+     * Removes the specified subscriber from being notified by this resource
+     * manager when a download is ready.
+     * 
+     * @param subscriber
+     *            the subscriber to remove
+     */
+    public static void removeSubscriber(UpdateSubscriber subscriber) {
+        subscribers.remove(subscriber);
     }
 
     /**
      * Sends an availability message for the specified planet to SWGCraft.org
      * and returns the SOAP response from the action.
      * <P>
-     * This method is blocking until communication is ready or if there is an
-     * error. If the action is successful the planet record is also added to the
-     * specified resource. If there is an error it is read in the respone's
-     * fault message.
+     * If the resource has a SWGCraft ID the message is added to the outbox and
+     * sent in the background, this method does not block and the returned
+     * response reads success; a message which the server later rejects is
+     * logged. Otherwise this method is blocking until communication is ready
+     * or if there is an error. If the action is successful the planet record
+     * is also added to the specified resource. If there is an error it is read
+     * in the respone's fault message.
      * 
      * @param resource
      *            the resource to augment
@@ -1133,9 +1455,12 @@ public final class SWGResourceManager extends SWGResourceMgr {
 
         frame.putToStatbar("Availability: " + resource.getName() + " @ " + pai.planet(),null);
 
-        SWGSoapAvailResResponse response =
-            SWGSoapManager.getSOAPHandler().sendAvailable(resource,
-            pai.planet());
+        SWGSoapAvailResResponse response = resource.id() > 0
+            ? outboxEnqueue(new SWGSoapAvailResResponse(resource,
+                    pai.planet()), SWGResourceOutbox.Op.AVAILABLE, resource,
+                    pai.planet().id(), pai.available())
+            : SWGSoapManager.getSOAPHandler().sendAvailable(resource,
+                    pai.planet());
 
         if (response.isFaultless())
             updatePlanet(resource, pai);
@@ -1147,10 +1472,12 @@ public final class SWGResourceManager extends SWGResourceMgr {
      * Sends a deplete message to SWGCraft.org and returns the SOAP response
      * from the action. The date is measured in seconds since January 1, 1970.
      * <P>
-     * This method is blocking until communication is ready or if there is an
-     * error. If the action is successful the argument is also set as depleted
-     * at the specified date. If there is an error it is read in the respone's
-     * fault message.
+     * As for {@link #sendAvailable(SWGKnownResource,
+     * SWGPlanetAvailabilityInfo)} the message is sent through the outbox if
+     * the resource has a SWGCraft ID, otherwise this method is blocking. If
+     * the action is successful the argument is also set as depleted at the
+     * specified date. If there is an error it is read in the respone's fault
+     * message.
      * 
      * @param resource
      *            the resource to mark as depleted
@@ -1168,10 +1495,11 @@ public final class SWGResourceManager extends SWGResourceMgr {
         frame.putToStatbar("Depleting: " + resource.getName() + " / " + resource.rc().rcName(),null);
 
         SWGSoapStatusResponse response;
-        if (resource.id() > 0)
-            response =
-                SWGSoapManager.getSOAPHandler().sendDespawn(resource.id());
-        else {
+        if (resource.id() > 0) {
+            response = outboxEnqueue(
+                    new SWGSoapStatusResponse(resource.id()),
+                    SWGResourceOutbox.Op.DEPLETE, resource, 0, date);
+        } else {
             // local resource, must return a response
             response = new SWGSoapStatusResponse(-1);
             response.status = 1;
@@ -1187,8 +1515,10 @@ public final class SWGResourceManager extends SWGResourceMgr {
      * Sends an edit-resource message to SWGCraft.org and returns the SOAP
      * response from the action.
      * <P>
-     * This method is blocking until communication is ready or if there is an
-     * error. If there is an error it is read in the respone's fault message.
+     * As for {@link #sendAvailable(SWGKnownResource,
+     * SWGPlanetAvailabilityInfo)} the message is sent through the outbox if
+     * the resource has a SWGCraft ID, otherwise this method is blocking. If
+     * there is an error it is read in the respone's fault message.
      * 
      * @param resource
      *            the resource to send an update for
@@ -1200,8 +1530,11 @@ public final class SWGResourceManager extends SWGResourceMgr {
         
         frame.putToStatbar("Updating: " + resource.getName() + " / " + resource.rc().rcName(),null);
         
-        SWGSoapEditResResponse response =
-            SWGSoapManager.getSOAPHandler().sendEdit(resource, null);
+        SWGSoapEditResResponse response = resource.id() > 0
+            ? outboxEnqueue(new SWGSoapEditResResponse(resource),
+                    SWGResourceOutbox.Op.EDIT, resource, 0, 0)
+            : SWGSoapManager.getSOAPHandler().sendEdit(resource, null);
+        lookups.forget(resource);
 
         return response;
     }
@@ -1301,6 +1634,7 @@ public final class SWGResourceManager extends SWGResourceMgr {
             }
 
             mr.id(response.getSWGCraftID());
+            lookups.forget(kr);
         }
 
         int i = response == null
@@ -1357,6 +1691,7 @@ public final class SWGResourceManager extends SWGResourceMgr {
         frame.putToStatbar("Submit old: " + r.getName() + " / " + r.rc().rcName(),null);
 
         SWGSoapNOResResponse resp = SWGSoapManager.getSOAPHandler().sendOld(r);
+        lookups.forget(r);
         /*if (!resp.isFaultless()) {
             // do not remove known, it is cached locally for some reason
             if (r != kr && resp.status != 1 && resp.status != 3) {
@@ -1376,10 +1711,12 @@ public final class SWGResourceManager extends SWGResourceMgr {
      * that is wrongly marked as depleted. If the argument is not depleted this
      * method does nothing but returns {@code null}.
      * <P>
-     * This method is blocking until communication is ready or if there is an
-     * error. If the action is successful the specified resource is set tagged
-     * as available again. If there is an error it is read in the respone's
-     * fault message.
+     * As for {@link #sendAvailable(SWGKnownResource,
+     * SWGPlanetAvailabilityInfo)} the message is sent through the outbox if
+     * the resource has a SWGCraft ID, otherwise this method is blocking. If
+     * the action is successful the specified resource is set tagged as
+     * available again. If there is an error it is read in the respone's fault
+     * message.
      * <p>
      * Finally this method nullifies SWGAide's stat-bar and initiates that a
      * notification is sent to resource update subscribers.
@@ -1395,10 +1732,11 @@ public final class SWGResourceManager extends SWGResourceMgr {
             frame.putToStatbar("Reviving: " + resource.getName() + " / " + resource.rc().rcName(),null);
 
             SWGSoapStatusResponse response;
-            if (resource.id() > 0)
-                response =
-                    SWGSoapManager.getSOAPHandler().sendRespawn(resource.id());
-            else {
+            if (resource.id() > 0) {
+                response = outboxEnqueue(
+                        new SWGSoapStatusResponse(resource.id()),
+                        SWGResourceOutbox.Op.REVIVE, resource, 0, 0);
+            } else {
                 // local resource, must return a response
                 response = new SWGSoapStatusResponse(-1);
                 response.status = 1;
@@ -1499,7 +1837,8 @@ public final class SWGResourceManager extends SWGResourceMgr {
                 if (current >= previousStatusCheck
                         + SWGCraft.STATUS_CHECK_DELAY) {
                     url = SWGCraft.getStatusTextURL();
-                    String statusTime = ZReader.read(url.openStream());
+                    String statusTime = ZReader.read(
+                            SWGCraft.connect(url).getInputStream());
                     previousStatusTime = Long.valueOf(statusTime);
                     previousStatusCheck = current;
 					lastSuccessful = true;
@@ -1521,6 +1860,90 @@ public final class SWGResourceManager extends SWGResourceMgr {
         return Long.valueOf(0);
     }
 
+    /**
+     * Executes the specified submission tasks with a small number of SOAP calls
+     * in flight concurrently and returns their results in the order of the
+     * tasks. This method blocks until all tasks are done. The tasks should
+     * invoke the send-methods of this type, such as {@link #sendNew(SWGResource,
+     * boolean)} and {@link #sendEdit(SWGKnownResource)}; each worker thread has
+     * a SOAP handler and a connection of its own so that calls are not
+     * serialized, see {@link SWGSoapManager#laneOpen()}.
+     * <p>
+     * The number of worker threads is read from SWGAide's preference keeper,
+     * the key "optionSubmitThreads", and it is bounded to 1 through 8; the
+     * default is {@link #SUBMIT_THREADS}. A value of 1 submits sequentially.
+     * <p>
+     * Tasks are started in order but they complete in any order, hence tasks
+     * which must not race each other, such as several submissions of the same
+     * resource, must be combined into one task by the caller. If a task throws
+     * an exception the remaining tasks complete and then the first exception
+     * is thrown, wrapped in a runtime exception unless it is one.
+     * 
+     * @param <V> the type of the results
+     * @param tasks a list of tasks to execute
+     * @return a list of results, in the order of the tasks
+     * @throws NullPointerException if an argument is {@code null}
+     * @throws IllegalStateException if the calling thread is interrupted
+     */
+    public static <V> List<V> submitPipelined(
+            List<? extends Callable<V>> tasks) {
+
+        if (tasks.isEmpty()) return Collections.emptyList();
+
+        Integer pref = (Integer) SWGFrame.getPrefsKeeper().get(
+                "optionSubmitThreads", Integer.valueOf(SUBMIT_THREADS));
+        int n = Math.min(tasks.size(), Math.max(1, Math.min(8, pref.intValue())));
+
+        final AtomicInteger count = new AtomicInteger();
+        ExecutorService exec = Executors.newFixedThreadPool(n,
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(final Runnable r) {
+                        Thread t = new Thread(new Runnable() {
+                            @Override
+                            public void run() {
+                                SWGSoapManager.laneOpen();
+                                try {
+                                    r.run();
+                                } finally {
+                                    SWGSoapManager.laneClose();
+                                }
+                            }
+                        }, "SWGAide-submit-" + count.incrementAndGet());
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+
+        try {
+            List<Future<V>> futures = new ArrayList<Future<V>>(tasks.size());
+            for (Callable<V> c : tasks)
+                futures.add(exec.submit(c));
+
+            List<V> ret = new ArrayList<V>(tasks.size());
+            RuntimeException first = null;
+            for (Future<V> f : futures) {
+                try {
+                    ret.add(f.get());
+                } catch (ExecutionException e) {
+                    ret.add(null);
+                    if (first == null)
+                        first = e.getCause() instanceof RuntimeException
+                                ? (RuntimeException) e.getCause()
+                                : new RuntimeException(e.getCause());
+                }
+            }
+            if (first != null) throw first;
+            return ret;
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Submission interrupted", e);
+        } finally {
+            exec.shutdownNow();
+        }
+    }
+
     /**
      * Helper method which just supplements the specified argument with the
      * unique SWGCraft ID. No other actions is performed by this method.
@@ -0,0 +1,581 @@
+package swg.swgcraft;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import swg.SWGAide;
+
+/**
+ * This type is a durable outbox for write operations to SWGCraft.org. Rather
+ * than blocking the GUI with a SOAP call, and losing the user's work if the
+ * server cannot be reached, an operation is stored in the outbox and it is
+ * sent by a background worker without delay, and retried until it is
+ * delivered.
+ * <p>
+ * The outbox is an append-only text file in SWGAide's "crafting" folder. Each
+ * line either adds an entry or marks an entry as done; when the outbox is
+ * loaded the file is replayed and compacted to just the pending entries.
+ * Entries are deduplicated per resource: a deplete and a revive for the same
+ * resource replace each other, as do repeated edits, and availability is
+ * keyed by resource and planet. The most recent operation wins.
+ * <p>
+ * The worker drains due entries in batches. If the server is still unreachable
+ * the entry is retried with exponential backoff, from {@link #BACKOFF_MIN} up
+ * to {@link #BACKOFF_MAX}, and the remainder of the batch waits for the next
+ * attempt. Entries are not retried forever, an entry which has failed
+ * {@link #ATTEMPTS_MAX} times is discarded and logged.
+ * <p>
+ * This type is thread safe.
+ */
+final class SWGResourceOutbox {
+
+    /**
+     * The maximum number of attempts for an entry before it is discarded.
+     */
+    private static final int ATTEMPTS_MAX = 20;
+
+    /**
+     * The maximum delay between attempts, in milliseconds.
+     */
+    private static final long BACKOFF_MAX = 60 * 60 * 1000L;
+
+    /**
+     * The initial delay between attempts, in milliseconds.
+     */
+    private static final long BACKOFF_MIN = 30 * 1000L;
+
+    /**
+     * The maximum number of entries which are sent per batch.
+     */
+    private static final int BATCH = 20;
+
+    /**
+     * The charset for the outbox file.
+     */
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * The pending entries, mapped by their deduplication keys. This map is
+     * also the lock for this instance.
+     */
+    private final Map<String, Entry> entries =
+            new LinkedHashMap<String, Entry>();
+
+    /**
+     * The executor for the background worker.
+     */
+    private final ScheduledExecutorService executor;
+
+    /**
+     * The outbox file.
+     */
+    private final File file;
+
+    /**
+     * The scheduled drain, or {@code null} if none is scheduled.
+     */
+    private ScheduledFuture<?> next;
+
+    /**
+     * The sender which delivers entries to SWGCraft.org.
+     */
+    private final Sender sender;
+
+    /**
+     * A sequence number which identifies entries in the outbox file.
+     */
+    private long sequence;
+
+    /**
+     * Creates an instance of this type for the specified file. Pending entries
+     * from the file are loaded and a drain is scheduled for them.
+     *
+     * @param file the outbox file
+     * @param sender the sender which delivers entries
+     */
+    SWGResourceOutbox(File file, Sender sender) {
+        this.file = file;
+        this.sender = sender;
+
+        ScheduledThreadPoolExecutor ex = new ScheduledThreadPoolExecutor(1,
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread t = new Thread(r, "SWGAide-outbox");
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+        ex.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        executor = ex;
+
+        synchronized (entries) {
+            load();
+            if (!entries.isEmpty()) schedule(BACKOFF_MIN);
+        }
+    }
+
+    /**
+     * Helper method which appends the specified line to the outbox file. If
+     * there is an error it is logged.
+     *
+     * @param line the line to append, without line terminator
+     */
+    private void append(String line) {
+        Writer w = null;
+        try {
+            if (file.getParentFile() != null) file.getParentFile().mkdirs();
+            w = new OutputStreamWriter(new FileOutputStream(file, true), UTF8);
+            w.write(line);
+            w.write('\n');
+        } catch (IOException e) {
+            SWGAide.printDebug("outb", 1, "SWGResourceOutbox:append: ",
+                    e.toString());
+        } finally {
+            if (w != null) {
+                try {
+                    w.close();
+                } catch (IOException e) { /* ignore */
+                }
+            }
+        }
+    }
+
+    /**
+     * Helper method which returns the delay before the next attempt for an
+     * entry which has failed the specified number of times.
+     *
+     * @param attempts the number of failed attempts
+     * @return a delay in milliseconds
+     */
+    private static long backoff(int attempts) {
+        int shift = Math.min(attempts, 16);
+        return Math.min(BACKOFF_MAX, BACKOFF_MIN << shift);
+    }
+
+    /**
+     * Helper method which rewrites the outbox file with just the pending
+     * entries. The caller must hold the lock. If there is an error it is
+     * logged and the file is left as is.
+     */
+    private void compact() {
+        File temp = new File(file.getPath() + ".part");
+        Writer w = null;
+        try {
+            w = new OutputStreamWriter(new FileOutputStream(temp), UTF8);
+            for (Entry e : entries.values()) {
+                w.write(e.line());
+                w.write('\n');
+            }
+            w.close();
+            w = null;
+
+            if (file.exists() && !file.delete())
+                throw new IOException("Cannot replace " + file);
+            if (!temp.renameTo(file))
+                throw new IOException("Cannot rename " + temp);
+        } catch (IOException e) {
+            SWGAide.printDebug("outb", 1, "SWGResourceOutbox:compact: ",
+                    e.toString());
+        } finally {
+            if (w != null) {
+                try {
+                    w.close();
+                } catch (IOException e) { /* ignore */
+                }
+            }
+            temp.delete();
+        }
+    }
+
+    /**
+     * Helper method which sends due entries, at most {@link #BATCH} entries,
+     * and schedules the next drain. This method executes on the worker
+     * thread.
+     */
+    private void drain() {
+        List<Entry> batch;
+        synchronized (entries) {
+            next = null;
+            long now = System.currentTimeMillis();
+            batch = new ArrayList<Entry>();
+            for (Entry e : entries.values())
+                if (e.due <= now) batch.add(e);
+
+            Collections.sort(batch, new Comparator<Entry>() {
+                @Override
+                public int compare(Entry o1, Entry o2) {
+                    return o1.seq < o2.seq
+                            ? -1
+                            : o1.seq == o2.seq
+                                    ? 0
+                                    : 1;
+                }
+            });
+            if (batch.size() > BATCH) batch = batch.subList(0, BATCH);
+        }
+
+        for (Entry e : batch) {
+            boolean done;
+            try {
+                done = sender.send(e);
+            } catch (Throwable t) {
+                // not recoverable by retrying, log and discard
+                SWGAide.printError("SWGResourceOutbox:drain: " + e.key, t);
+                done = true;
+            }
+
+            synchronized (entries) {
+                if (done) {
+                    remove(e);
+                } else {
+                    e.attempts += 1;
+                    if (e.attempts >= ATTEMPTS_MAX) {
+                        SWGAide.printDebug("outb", 1,
+                                "SWGResourceOutbox: discarded ", e.line());
+                        remove(e);
+                    } else
+                        e.due = System.currentTimeMillis()
+                                + backoff(e.attempts);
+                    break; // still unreachable, the rest waits
+                }
+            }
+        }
+
+        synchronized (entries) {
+            if (entries.isEmpty()) {
+                compact();
+                return;
+            }
+            long due = Long.MAX_VALUE;
+            for (Entry e : entries.values())
+                due = Math.min(due, e.due);
+            schedule(Math.max(0, due - System.currentTimeMillis()));
+        }
+    }
+
+    /**
+     * Adds the specified operation to this outbox and schedules an immediate
+     * drain. If an entry with the same key is pending it is replaced.
+     *
+     * @param op the operation
+     * @param galaxy the ID of the galaxy for the resource
+     * @param id the SWGCraft ID for the resource
+     * @param planet the ID of the planet, or 0 if not applicable
+     * @param date the date for the operation, in seconds, or 0
+     * @param name the name of the resource, for display
+     * @throws IllegalArgumentException if the resource ID is invalid
+     */
+    void enqueue(Op op, int galaxy, long id, int planet, long date,
+            String name) {
+
+        if (id <= 0) throw new IllegalArgumentException("Invalid ID: " + id);
+
+        synchronized (entries) {
+            Entry e = new Entry(op, galaxy, id, planet, date, name,
+                    ++sequence);
+            e.due = System.currentTimeMillis();
+            entries.remove(e.key); // re-insert, keep order by recency
+            entries.put(e.key, e);
+            append("+\t" + e.line());
+
+            // a drain which is scheduled for a backed-off entry is moved up
+            if (next != null && next.getDelay(TimeUnit.MILLISECONDS) > 0
+                    && next.cancel(false))
+                next = null;
+            schedule(0);
+        }
+    }
+
+    /**
+     * Helper method which reads the outbox file and populates the map of
+     * pending entries, then the file is compacted. The caller must hold the
+     * lock. If there is an error it is logged and as much as possible is
+     * read.
+     */
+    private void load() {
+        if (!file.exists()) return;
+
+        BufferedReader br = null;
+        try {
+            br = new BufferedReader(new InputStreamReader(
+                    new FileInputStream(file), UTF8));
+            String line;
+            while ((line = br.readLine()) != null) {
+                try {
+                    if (line.startsWith("+\t")) {
+                        Entry e = Entry.parse(line.substring(2));
+                        entries.remove(e.key);
+                        entries.put(e.key, e);
+                        sequence = Math.max(sequence, e.seq);
+                    } else if (line.startsWith("-\t")) {
+                        String[] s = line.split("\t");
+                        Entry e = entries.get(s[1]);
+                        if (e != null && e.seq == Long.parseLong(s[2]))
+                            entries.remove(s[1]);
+                    } else if (!line.isEmpty()) {
+                        // compacted lines are not prefixed
+                        Entry e = Entry.parse(line);
+                        entries.put(e.key, e);
+                        sequence = Math.max(sequence, e.seq);
+                    }
+                } catch (Exception e) {
+                    SWGAide.printDebug("outb", 1,
+                            "SWGResourceOutbox:load: ", line);
+                }
+            }
+        } catch (IOException e) {
+            SWGAide.printDebug("outb", 1, "SWGResourceOutbox:load: ",
+                    e.toString());
+        } finally {
+            if (br != null) {
+                try {
+                    br.close();
+                } catch (IOException e) { /* ignore */
+                }
+            }
+        }
+        compact();
+    }
+
+    /**
+     * Returns a list of descriptions for the pending entries, in the order
+     * they are sent. This method is meant for a status view.
+     *
+     * @return a list of descriptions, or an empty list
+     */
+    List<String> pending() {
+        synchronized (entries) {
+            List<String> ret = new ArrayList<String>(entries.size());
+            for (Entry e : entries.values())
+                ret.add(e.toString());
+            return ret;
+        }
+    }
+
+    /**
+     * Helper method which removes the specified entry and appends a line which
+     * marks it as done. The caller must hold the lock.
+     *
+     * @param e the entry to remove
+     */
+    private void remove(Entry e) {
+        if (entries.get(e.key) == e) {
+            entries.remove(e.key);
+            append("-\t" + e.key + '\t' + e.seq);
+        }
+    }
+
+    /**
+     * Helper method which schedules a drain after the specified delay, unless
+     * a drain is already scheduled. The caller must hold the lock.
+     *
+     * @param delay a delay in milliseconds
+     */
+    private void schedule(long delay) {
+        if (next != null) return;
+        next = executor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                drain();
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns the number of pending entries.
+     *
+     * @return the number of pending entries
+     */
+    int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * An entry in the outbox, one write operation for one resource.
+     */
+    static final class Entry {
+
+        /**
+         * The number of failed attempts for this entry during this session.
+         */
+        int attempts;
+
+        /**
+         * The date for the operation, in seconds, or 0.
+         */
+        final long date;
+
+        /**
+         * The time in milliseconds when this entry is due for an attempt.
+         */
+        long due;
+
+        /**
+         * The ID of the galaxy for the resource.
+         */
+        final int galaxy;
+
+        /**
+         * The SWGCraft ID for the resource.
+         */
+        final long id;
+
+        /**
+         * The deduplication key for this entry.
+         */
+        final String key;
+
+        /**
+         * The name of the resource, for display.
+         */
+        final String name;
+
+        /**
+         * The operation for this entry.
+         */
+        final Op op;
+
+        /**
+         * The ID of the planet, or 0 if not applicable.
+         */
+        final int planet;
+
+        /**
+         * The sequence number for this entry.
+         */
+        final long seq;
+
+        /**
+         * Creates an entry from the specified values.
+         *
+         * @param op the operation
+         * @param galaxy a galaxy ID
+         * @param id a SWGCraft ID
+         * @param planet a planet ID, or 0
+         * @param date a date in seconds, or 0
+         * @param name the name of the resource
+         * @param seq a sequence number
+         */
+        Entry(Op op, int galaxy, long id, int planet, long date, String name,
+                long seq) {
+            this.op = op;
+            this.galaxy = galaxy;
+            this.id = id;
+            this.planet = planet;
+            this.date = date;
+            this.name = name == null
+                    ? ""
+                    : name.replace('\t', ' ');
+            this.seq = seq;
+
+            switch (op) {
+            case DEPLETE:
+            case REVIVE:
+                key = "state:" + id;
+                break;
+            case AVAILABLE:
+                key = "avail:" + id + ':' + planet;
+                break;
+            default:
+                key = "edit:" + id;
+            }
+        }
+
+        /**
+         * Returns a line for the outbox file for this entry.
+         *
+         * @return a line, without line terminator
+         */
+        String line() {
+            return op.name() + '\t' + galaxy + '\t' + id + '\t' + planet
+                    + '\t' + date + '\t' + seq + '\t' + name;
+        }
+
+        /**
+         * Creates an entry from the specified line.
+         *
+         * @param line a line as created by {@link #line()}
+         * @return an entry
+         * @throws Exception if the line is invalid
+         */
+        static Entry parse(String line) throws Exception {
+            String[] s = line.split("\t", 7);
+            return new Entry(Op.valueOf(s[0]), Integer.parseInt(s[1]),
+                    Long.parseLong(s[2]), Integer.parseInt(s[3]),
+                    Long.parseLong(s[4]), s.length > 6
+                            ? s[6]
+                            : "", Long.parseLong(s[5]));
+        }
+
+        @Override
+        public String toString() {
+            return op.name().toLowerCase() + ' ' + name + " (" + id + ')'
+                    + (attempts > 0
+                            ? ", attempts: " + attempts
+                            : "");
+        }
+    }
+
+    /**
+     * The write operations which can be stored in the outbox.
+     */
+    enum Op {
+        /**
+         * Add availability at a planet.
+         */
+        AVAILABLE,
+
+        /**
+         * Mark a resource as depleted.
+         */
+        DEPLETE,
+
+        /**
+         * Edit the name or the stats of a resource.
+         */
+        EDIT,
+
+        /**
+         * Mark a resource as available again.
+         */
+        REVIVE
+    }
+
+    /**
+     * The sender which delivers entries to SWGCraft.org.
+     */
+    interface Sender {
+
+        /**
+         * Sends the specified entry and returns {@code true} if the entry is
+         * done, that is, if it is delivered or if it is rejected by the server
+         * and should not be retried. Returns {@code false} if the server could
+         * not be reached. This method is invoked on the worker thread.
+         *
+         * @param e the entry to send
+         * @return {@code false} if the entry should be retried
+         */
+        boolean send(Entry e);
+    }
+}
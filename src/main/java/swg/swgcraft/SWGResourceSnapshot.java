@@ -0,0 +1,309 @@
+package swg.swgcraft;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.List;
+
+import swg.SWGAide;
+import swg.crafting.Stat;
+import swg.crafting.resources.SWGMutableResource;
+import swg.crafting.resources.SWGPlanetAvailabilityInfo;
+import swg.crafting.resources.SWGResource;
+import swg.crafting.resources.SWGResourceClass;
+import swg.crafting.resources.SWGResourceList;
+import swg.crafting.resources.SWGResourceStats;
+import swg.crafting.resources.SWGWayPointInfo;
+import swg.model.SWGCGalaxy;
+import swg.model.SWGPlanet;
+
+/**
+ * This type reads and writes a compact binary snapshot of a parsed resource
+ * export, see {@link SWGResourceXmlParser}. A snapshot is stored next to the
+ * XML file in the cache directory and it is keyed by galaxy and by the status
+ * time at SWGCraft.org for the download it was created from. Reading a
+ * snapshot is much faster than parsing the XML file, the file is read into one
+ * buffer and decoded in one pass with no intermediate objects. The file is not
+ * memory-mapped, on Windows a mapped file cannot be replaced until the mapping
+ * is garbage collected.
+ * <p>
+ * A snapshot which does not match the galaxy or the status time, or which is
+ * truncated or of another format version, is considered stale and
+ * {@link #read(File, SWGCGalaxy, long)} returns {@code null}; the client then
+ * falls back to the XML file.
+ * <p>
+ * The layout is: magic, version, galaxy name, status time, resource count, and
+ * for each resource its ID, name, resource class ID, stats, planet records,
+ * and waypoints. Strings are length-prefixed UTF-8.
+ */
+final class SWGResourceSnapshot {
+
+    /**
+     * The magic number which starts a snapshot file.
+     */
+    private static final int MAGIC = 0x53574753; // SWGS
+
+    /**
+     * The version of the snapshot format, increment for any change.
+     */
+    private static final int VERSION = 2;
+
+    /**
+     * The charset for strings in a snapshot.
+     */
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * Do not instantiate.
+     */
+    private SWGResourceSnapshot() {
+        throw new IllegalStateException("Do not instantiate");
+    }
+
+    /**
+     * Returns a list of resources read from the specified snapshot file, or
+     * {@code null} if the file does not exist, if it is stale for the specified
+     * galaxy and status time, or if there is an error. The returned list
+     * contains objects of type {@link SWGMutableResource}, just like the list
+     * which is returned by {@link SWGResourceXmlParser}.
+     *
+     * @param file the snapshot file
+     * @param gxy a galaxy constant
+     * @param statusTime the status time for the local XML file
+     * @return a list of resources, or {@code null}
+     */
+    static SWGResourceList read(File file, SWGCGalaxy gxy, long statusTime) {
+        if (!file.exists() || statusTime <= 0) return null;
+
+        RandomAccessFile raf = null;
+        try {
+            raf = new RandomAccessFile(file, "r");
+            FileChannel fc = raf.getChannel();
+            if (fc.size() > Integer.MAX_VALUE) return null; // corrupt
+
+            ByteBuffer bb = ByteBuffer.allocate((int) fc.size());
+            while (bb.hasRemaining())
+                if (fc.read(bb) < 0) break;
+            bb.flip();
+
+            if (bb.getInt() != MAGIC || bb.getInt() != VERSION
+                    || !gxy.getName().equals(string(bb))
+                    || bb.getLong() != statusTime)
+                return null; // stale
+
+            int count = bb.getInt();
+            if (count < 0 || count > bb.remaining()) return null; // corrupt
+
+            SWGResourceList ret = new SWGResourceList(count);
+            for (int i = 0; i < count; ++i) {
+                long id = bb.getLong();
+                String name = string(bb);
+                SWGResourceClass rc = SWGResourceClass.rc(bb.getShort());
+
+                SWGMutableResource mr = new SWGMutableResource(name, rc);
+                mr.galaxy(gxy);
+                mr.id(id);
+                mr.depleted(false);
+
+                int[] values = new int[Stat.COUNT];
+                for (int s = 0; s < values.length; ++s)
+                    values[s] = bb.getShort();
+                mr.stats(new SWGResourceStats(values), false);
+
+                for (int p = bb.get(); p > 0; --p) {
+                    SWGPlanet pl = SWGPlanet.fromID(bb.get());
+                    long date = bb.getLong();
+                    mr.availability(new SWGPlanetAvailabilityInfo(
+                            pl, date, string(bb)));
+                }
+                for (int w = bb.getShort(); w > 0; --w) {
+                    int wid = bb.getInt();
+                    mr.waypointAdd(new SWGWayPointInfo(wid, string(bb)));
+                }
+                ret.add(mr);
+            }
+            return ret.toReturn();
+
+        } catch (BufferUnderflowException e) {
+            SWGAide.printDebug("cmgr", 1,
+                    "SWGResourceSnapshot:read: truncated ", file.getName());
+        } catch (Exception e) {
+            SWGAide.printDebug("cmgr", 1,
+                    "SWGResourceSnapshot:read: ", e.toString());
+        } finally {
+            if (raf != null) {
+                try {
+                    raf.close();
+                } catch (IOException e) { /* ignore */
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Helper method which reads a length-prefixed string from the buffer, the
+     * length is an int and -1 denotes {@code null}.
+     *
+     * @param bb a buffer
+     * @return a string, or {@code null}
+     */
+    private static String string(ByteBuffer bb) {
+        int len = bb.getInt();
+        if (len < 0) return null;
+        if (len > bb.remaining()) throw new BufferUnderflowException();
+
+        byte[] b = new byte[len];
+        bb.get(b);
+        return new String(b, UTF8);
+    }
+
+    /**
+     * Helper method which writes a length-prefixed string to the stream, the
+     * length is an int and -1 denotes {@code null}.
+     *
+     * @param s a string, or {@code null}
+     * @param out the stream to write to
+     * @throws IOException if there is an I/O error
+     */
+    private static void string(String s, DataOutputStream out)
+            throws IOException {
+
+        if (s == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] b = s.getBytes(UTF8);
+        out.writeInt(b.length);
+        out.write(b);
+    }
+
+    /**
+     * Re-keys the specified snapshot file from the old to the new status time.
+     * This method is used when the server responds that the export for the
+     * galaxy is not modified although the status time at SWGCraft.org is
+     * updated, the content of the snapshot is then still current. If the file
+     * does not exist or is not keyed by the old status time this method does
+     * nothing and the snapshot is left stale. If there is an error it is
+     * logged.
+     *
+     * @param file the snapshot file
+     * @param gxy a galaxy constant
+     * @param oldTime the status time the snapshot is keyed by
+     * @param newTime the new status time
+     */
+    static void touch(File file, SWGCGalaxy gxy, long oldTime, long newTime) {
+        if (!file.exists() || oldTime <= 0 || newTime <= 0) return;
+
+        RandomAccessFile raf = null;
+        try {
+            raf = new RandomAccessFile(file, "rw");
+            if (raf.readInt() != MAGIC || raf.readInt() != VERSION) return;
+
+            int len = raf.readInt();
+            if (len < 0 || len > raf.length()) return; // corrupt
+            byte[] b = new byte[len];
+            raf.readFully(b);
+            if (!gxy.getName().equals(new String(b, UTF8))) return;
+
+            long pos = raf.getFilePointer();
+            if (raf.readLong() != oldTime) return;
+
+            raf.seek(pos);
+            raf.writeLong(newTime);
+        } catch (Exception e) {
+            SWGAide.printDebug("cmgr", 1,
+                    "SWGResourceSnapshot:touch: ", e.toString());
+        } finally {
+            if (raf != null) {
+                try {
+                    raf.close();
+                } catch (IOException e) { /* ignore */
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes a snapshot of the specified list to the specified file. The file
+     * is written to a temporary file which replaces the target once it is
+     * complete. If there is an error it is logged and the target file is
+     * deleted so that it is not read as a valid snapshot.
+     *
+     * @param list a list of resources from {@link SWGResourceXmlParser}
+     * @param gxy the galaxy for the list
+     * @param statusTime the status time for the download
+     * @param file the snapshot file
+     */
+    static void write(SWGResourceList list, SWGCGalaxy gxy, long statusTime,
+            File file) {
+
+        if (statusTime <= 0) return;
+
+        File temp = new File(file.getPath() + ".part");
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(
+                    new FileOutputStream(temp), 1 << 16));
+
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            string(gxy.getName(), out);
+            out.writeLong(statusTime);
+            out.writeInt(list.size());
+
+            for (SWGResource r : list) {
+                out.writeLong(r.id());
+                string(r.getName(), out);
+                out.writeShort(r.rc().rcID());
+
+                SWGResourceStats st = r.stats();
+                for (Stat s : Stat.values())
+                    out.writeShort(st.value(s));
+
+                List<SWGPlanet> planets = r.availability();
+                out.writeByte(planets.size());
+                for (SWGPlanet p : planets) {
+                    SWGPlanetAvailabilityInfo pi = r.availabilityFor(p);
+                    out.writeByte(p.id());
+                    out.writeLong(pi.available());
+                    string(pi.availableBy(), out);
+                }
+
+                List<SWGWayPointInfo> wps = r.waypoints();
+                out.writeShort(wps.size());
+                for (SWGWayPointInfo w : wps) {
+                    out.writeInt(w.wid());
+                    string(w.wptext(), out);
+                }
+            }
+            out.close();
+            out = null;
+
+            if (file.exists() && !file.delete())
+                throw new IOException("Cannot replace " + file);
+            if (!temp.renameTo(file))
+                throw new IOException("Cannot rename " + temp);
+
+        } catch (Exception e) {
+            SWGAide.printDebug("cmgr", 1,
+                    "SWGResourceSnapshot:write: ", e.toString());
+            file.delete();
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) { /* ignore */
+                }
+            }
+            temp.delete();
+        }
+    }
+}
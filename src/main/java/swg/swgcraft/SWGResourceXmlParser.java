@@ -0,0 +1,299 @@
+package swg.swgcraft;
+
+import java.io.FilterInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import swg.crafting.Stat;
+import swg.crafting.resources.SWGMutableResource;
+import swg.crafting.resources.SWGPlanetAvailabilityInfo;
+import swg.crafting.resources.SWGResourceClass;
+import swg.crafting.resources.SWGResourceList;
+import swg.crafting.resources.SWGResourceStats;
+import swg.crafting.resources.SWGWayPointInfo;
+import swg.model.SWGCGalaxy;
+import swg.model.SWGPlanet;
+import swg.tools.ZNumber;
+
+/**
+ * A streaming parser for the XML resource export files from SWGCraft.org. This
+ * type reads the export with a pull parser and creates resource objects as the
+ * elements arrive, hence no DOM is created and memory use is bounded by the
+ * size of the resulting list rather than by the size of the document. The
+ * stream is read exactly once, which makes it possible to parse a download
+ * directly from the network while it is copied to the local cache by a
+ * {@link SWGTeeInputStream}.
+ * <p>
+ * Each resource element is read into a small record with the data of interest:
+ * the name, the resource class token, the stats, the first availability
+ * timestamp and reporter, and the lists of planets and waypoints. When the
+ * resource element ends the record is turned into a {@link SWGMutableResource}
+ * or it is merged with an earlier instance with the same ID.
+ * <p>
+ * This type is stateless and thread safe.
+ */
+final class SWGResourceXmlParser {
+
+    /**
+     * A shared factory for stream readers, configured once.
+     */
+    private static final XMLInputFactory factory;
+
+    /**
+     * A map of lower case stat names to stat constants.
+     */
+    private static final Map<String, Stat> stats;
+
+    static {
+        factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        factory.setProperty(
+                XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+
+        stats = new HashMap<String, Stat>();
+        for (Stat s : Stat.values())
+            stats.put(s.getName(), s);
+    }
+
+    /**
+     * Do not instantiate.
+     */
+    private SWGResourceXmlParser() {
+        throw new IllegalStateException("Do not instantiate");
+    }
+
+    /**
+     * Parses the specified stream and returns a list of resources for the
+     * specified galaxy. The returned list contains objects of type
+     * {@link SWGMutableResource}; space and recycled resources are ignored. If
+     * a resource is listed several times its planets and waypoints are merged
+     * to one instance. This method does not close the stream.
+     * <p>
+     * This implementation <i>does not </i> evaluate the elements in the
+     * returned list with the local cache of known resources.
+     *
+     * @param in the stream to read from
+     * @param gxy a galaxy constant
+     * @param initialCapacity the initial capacity of the returned list
+     * @return a list of {@link SWGMutableResource}, or an empty list
+     * @throws IllegalArgumentException if a parsed value is invalid
+     * @throws NullPointerException if an argument is {@code null}
+     * @throws XMLStreamException if there is an XML or I/O error
+     */
+    static SWGResourceList parse(InputStream in, SWGCGalaxy gxy,
+            int initialCapacity) throws XMLStreamException {
+
+        if (in == null || gxy == null) throw new NullPointerException(
+                "Argument is null, stream=" + in + ", galaxy=" + gxy);
+
+        SWGResourceList resources = new SWGResourceList(initialCapacity);
+
+        // some StAX implementations close the stream at the end of the
+        // document, but the caller owns it
+        XMLStreamReader xr = factory.createXMLStreamReader(
+                new FilterInputStream(in) {
+                    @Override
+                    public void close() {
+                        /* ignore */
+                    }
+                });
+        try {
+            Record rec = null;
+            int wpID = 0;
+            String wpText = null;
+
+            while (xr.hasNext()) {
+                int event = xr.next();
+
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    String tag = xr.getLocalName();
+
+                    if (tag.equals("resource")) {
+                        rec = new Record(ZNumber.longVal(
+                                xr.getAttributeValue(null, "swgaide_id")));
+
+                    } else if (rec == null) {
+                        continue; // outside of a resource element
+
+                    } else if (tag.equals("planet")) {
+                        int pid = (int) ZNumber.longVal(
+                                xr.getAttributeValue(null, "swgaide_id"));
+                        if (pid > 0) rec.planets.add(Integer.valueOf(pid));
+
+                    } else if (tag.equals("waypoint")) {
+                        wpID = (int) ZNumber.longVal(
+                                xr.getAttributeValue(null, "swgaide_id"));
+                        wpText = null;
+
+                    } else if (tag.equals("wptext")) {
+                        String t = xr.getElementText();
+                        if (wpText == null) wpText = t;
+
+                    } else
+                        rec.text(tag, xr);
+
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    String tag = xr.getLocalName();
+
+                    if (rec == null) {
+                        continue;
+
+                    } else if (tag.equals("waypoint")) {
+                        if (wpID > 0)
+                            rec.waypoints.add(new SWGWayPointInfo(wpID, wpText));
+                        wpID = 0;
+                        wpText = null;
+
+                    } else if (tag.equals("resource")) {
+                        rec.merge(resources, gxy);
+                        rec = null;
+                    }
+                }
+            }
+        } finally {
+            xr.close();
+        }
+        return resources.toReturn();
+    }
+
+    /**
+     * A helper type which collects the data for one resource element while it
+     * is being parsed. All text elements are read the first time they occur
+     * within the resource element.
+     */
+    private static final class Record {
+
+        /**
+         * The name of the player who reported the resource, or {@code null}.
+         */
+        String availableBy;
+
+        /**
+         * The time the resource was reported, in seconds.
+         */
+        long availableTime;
+
+        /**
+         * The SWGCraft ID for the resource.
+         */
+        final long id;
+
+        /**
+         * The name of the resource, or {@code null}.
+         */
+        String name;
+
+        /**
+         * The IDs of the planets listed for the resource.
+         */
+        final List<Integer> planets = new ArrayList<Integer>(4);
+
+        /**
+         * The resource class token, or {@code null}.
+         */
+        String type;
+
+        /**
+         * The stat values, or {@code null} if no stat is parsed yet.
+         */
+        int[] values;
+
+        /**
+         * The waypoints listed for the resource.
+         */
+        final List<SWGWayPointInfo> waypoints =
+                new ArrayList<SWGWayPointInfo>(2);
+
+        /**
+         * Creates a record for the specified resource ID.
+         *
+         * @param id a SWGCraft ID
+         */
+        Record(long id) {
+            this.id = id;
+        }
+
+        /**
+         * Creates a new resource from this record and adds it to the
+         * specified list, or adds the planets and waypoints of this record to
+         * a resource in the list with the same ID. If this record denotes a
+         * space or recycled resource this method does nothing.
+         *
+         * @param resources the list to add to
+         * @param gxy a galaxy constant
+         * @throws IllegalArgumentException if a parsed value is invalid
+         */
+        void merge(SWGResourceList resources, SWGCGalaxy gxy) {
+            SWGMutableResource mr =
+                    (SWGMutableResource) resources.getByID(id);
+
+            if (mr == null) { // this one is new
+                if (id <= 0)
+                    throw new IllegalArgumentException(
+                            "Invalid argument: " + gxy + ' ' + id);
+
+                SWGResourceClass rc = SWGResourceClass.rc(type);
+                if (rc.isSpaceOrRecycled()) return;
+
+                mr = new SWGMutableResource(name, rc);
+                mr.galaxy(gxy);
+                mr.id(id);
+
+                // remember this, new instances are depleted by default
+                mr.depleted(false);
+
+                mr.stats(new SWGResourceStats(values == null
+                        ? new int[Stat.COUNT]
+                        : values), false); // trust SWGCraft
+                resources.add(mr);
+            }
+
+            for (Integer pid : planets)
+                mr.availability(new SWGPlanetAvailabilityInfo(
+                        SWGPlanet.fromID(pid.intValue()),
+                        availableTime, availableBy));
+
+            for (SWGWayPointInfo w : waypoints)
+                mr.waypointAdd(w);
+        }
+
+        /**
+         * Reads the text of the current element if it is of interest for this
+         * record and if it is not read before. Otherwise this method does
+         * nothing and the reader is left at the start element.
+         *
+         * @param tag the local name of the current element
+         * @param xr the reader, positioned at a start element
+         * @throws XMLStreamException if there is an error
+         */
+        void text(String tag, XMLStreamReader xr) throws XMLStreamException {
+            if (tag.equals("name")) {
+                if (name == null) name = xr.getElementText();
+            } else if (tag.equals("swgaide_type_id")) {
+                if (type == null) type = xr.getElementText();
+            } else if (tag.equals("available_timestamp")) {
+                if (availableTime == 0)
+                    availableTime = ZNumber.longVal(xr.getElementText());
+            } else if (tag.equals("available_by")) {
+                if (availableBy == null) availableBy = xr.getElementText();
+            } else {
+                Stat s = stats.get(tag);
+                if (s == null) return;
+
+                if (values == null) values = new int[Stat.COUNT];
+                else if (values[s.i] != 0) return;
+
+                values[s.i] = (int) ZNumber.longVal(xr.getElementText());
+            }
+        }
+    }
+}
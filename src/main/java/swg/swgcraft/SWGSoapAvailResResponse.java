@@ -1,9 +1,8 @@
 package swg.swgcraft;
 
-import org.w3c.dom.Node;
-
 import swg.crafting.resources.SWGKnownResource;
 import swg.model.SWGPlanet;
+import swg.tools.SOAPNode;
 import swg.tools.ZString;
 
 /**
@@ -90,8 +89,8 @@ public final class SWGSoapAvailResResponse extends SWGSoapResResponse {
     }
 
     @Override
-    void parseNode(Node node) {
-        status = Integer.parseInt(node.getTextContent());
+    void parseNode(SOAPNode node) {
+        status = Integer.parseInt(node.text());
         if (status != 3) {
             faultMessage = getStatusString();
         }
@@ -1,8 +1,6 @@
 package swg.swgcraft;
 
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-
+import swg.tools.SOAPNode;
 import swg.tools.ZString;
 
 /**
@@ -57,10 +55,9 @@ class SWGSoapCryptKeyResponse extends SWGSoapResponse {
      *            the node from the response to parse
      */
     @Override
-    void parseNode(Node node) {
-        NodeList lst = node.getChildNodes();
-        key = SWGSoapManager.parseString(lst, "Key");
-        iv = SWGSoapManager.parseString(lst, "IV");
+    void parseNode(SOAPNode node) {
+        key = SWGSoapManager.parseString(node, "Key");
+        iv = SWGSoapManager.parseString(node, "IV");
     }
 
     @Override
@@ -1,8 +1,7 @@
 package swg.swgcraft;
 
-import org.w3c.dom.Node;
-
 import swg.crafting.resources.SWGKnownResource;
+import swg.tools.SOAPNode;
 import swg.tools.ZString;
 
 /**
@@ -85,8 +84,8 @@ public final class SWGSoapEditResResponse extends SWGSoapResResponse {
     }
 
     @Override
-    void parseNode(Node node) {
-        status = Integer.parseInt(node.getTextContent());
+    void parseNode(SOAPNode node) {
+        status = Integer.parseInt(node.text());
         if (status != 3) {
             faultMessage = getStatusString();
         }
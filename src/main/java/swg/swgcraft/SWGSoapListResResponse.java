@@ -3,11 +3,9 @@ package swg.swgcraft;
 import java.util.ArrayList;
 import java.util.List;
 
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-
 import swg.crafting.resources.SWGResourceClass;
 import swg.model.SWGCGalaxy;
+import swg.tools.SOAPNode;
 import swg.tools.ZString;
 
 /**
@@ -59,6 +57,17 @@ public final class SWGSoapListResResponse extends SWGSoapResponse {
         tuples = new ArrayList<SWGResourceTuple>();
     }
 
+    /**
+     * Adds the specified tuple to this response. This method is used by the
+     * resource manager when it answers a request from the local cache.
+     * 
+     * @param tuple
+     *            the tuple to add
+     */
+    void add(SWGResourceTuple tuple) {
+        tuples.add(tuple);
+    }
+
     /**
      * Returns the galaxy constant denoting the galaxy this response is about.
      * 
@@ -89,29 +98,21 @@ public final class SWGSoapListResResponse extends SWGSoapResponse {
      *            the node to parse
      * @return the new tuple
      */
-    private SWGResourceTuple newTuple(Node node) {
-        Node nameNode = node.getFirstChild();
-        Node name = nameNode.getFirstChild();
-
-        Node typeNode = nameNode.getNextSibling();
-        Node type = typeNode.getFirstChild();
-
-        String n = name.getNodeValue();
-        int typeID = Integer.parseInt(type.getNodeValue());
+    private SWGResourceTuple newTuple(SOAPNode node) {
+        String n = node.child(0).text();
+        int typeID = Integer.parseInt(node.child(1).text());
         SWGResourceClass t = SWGResourceClass.rc(typeID);
         SWGResourceTuple tuple = new SWGResourceTuple(n, t);
         return tuple;
     }
 
     @Override
-    void parseNode(Node node) {
-        NodeList lst = node.getChildNodes();
-
-        final int len = lst.getLength();
-        ((ArrayList<SWGResourceTuple>) tuples).ensureCapacity(len);
+    void parseNode(SOAPNode node) {
+        List<SOAPNode> lst = node.children();
+        ((ArrayList<SWGResourceTuple>) tuples).ensureCapacity(lst.size());
 
-        for (int i = 0; i < len; ++i) {
-            SWGResourceTuple t = newTuple(lst.item(i));
+        for (SOAPNode n : lst) {
+            SWGResourceTuple t = newTuple(n);
             tuples.add(t);
         }
     }
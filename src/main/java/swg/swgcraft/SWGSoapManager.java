@@ -1,18 +1,14 @@
 package swg.swgcraft;
 
+import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
 
-import javax.xml.soap.Name;
 import javax.xml.soap.SOAPBodyElement;
 import javax.xml.soap.SOAPElement;
 import javax.xml.soap.SOAPException;
-import javax.xml.soap.SOAPFault;
 import javax.xml.soap.SOAPMessage;
 
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-
 import swg.SWGAide;
 import swg.SWGConstants;
 import swg.crafting.Stat;
@@ -24,6 +20,7 @@ import swg.crafting.resources.SWGResourceStats;
 import swg.model.SWGCGalaxy;
 import swg.model.SWGPlanet;
 import swg.tools.SOAPManager;
+import swg.tools.SOAPNode;
 //import swg.tools.ZCrypto;
 import swg.tools.ZNumber;
 import swg.tools.ZString;
@@ -56,17 +53,30 @@ final class SWGSoapManager extends SOAPManager {
      */
     private static SWGSoapManager soapHandler;
 
+    /**
+     * SOAP handlers which are bound to worker threads of a submission
+     * pipeline, one per thread. Each handler has its own factories and its own
+     * connection so that the pipeline's calls are in flight concurrently
+     * rather than serialized on the synchronized methods of the shared
+     * {@link #soapHandler}.
+     * 
+     * @see #laneOpen()
+     */
+    private static final ThreadLocal<SWGSoapManager> lanes =
+            new ThreadLocal<SWGSoapManager>();
+
     /**
      * The constant target name space for the SOAP server at SWGCraft.org.
      */
     private static final String TARGET_NAME_SPACE = "urn:swgaide";
 
     /**
-     * The cached user ID at SWGCraft.org for the current user.
+     * The cached user ID at SWGCraft.org for the current user, shared by all
+     * handlers.
      * 
      * @see #resetUserData()
      */
-    private int userID = -1;
+    private static volatile int userID = -1;
 
     /**
      * Creates a SOAP manager for communication with SWGCraft.org and sets the
@@ -164,31 +174,27 @@ final class SWGSoapManager extends SOAPManager {
     }
 
     /**
-     * Helper method that determines if the specified SOAP message contains a
+     * Helper method that determines if the specified SOAP body contains a
      * fault message from the server. If there is a fault message this
      * implementation updates the response with the complete fault message as
      * well as its short fault message.
      * 
      * @see SWGSoapResponse#faultMessage
      * @see SWGSoapResponse#faultMessageShort
-     * @param message the SOAP message which is the response from the server
+     * @param body the SOAP body of the response from the server
      * @param response the instance which is populated with the response data
      * @return {@code true} if there is a fault message, {@code false} otherwise
-     * @throws SOAPException if there is an error
      */
-    private boolean hasFault(SOAPMessage message, SWGSoapResponse response)
-            throws SOAPException {
-
-        if (message.getSOAPBody().hasFault()) {
-            SOAPFault fault = message.getSOAPBody().getFault();
-            Name code = fault.getFaultCodeAsName();
-            String faultStr = fault.getFaultString();
-            String actor = fault.getFaultActor();
+    private boolean hasFault(SOAPNode body, SWGSoapResponse response) {
+        SOAPNode fault = body.child("Fault");
+        if (fault != null) {
+            String faultStr = fault.text("faultstring");
+            SOAPNode actor = fault.child("faultactor");
 
             ZString z = new ZString("Fault: ");
-            z.app("Code: ").app(code.getQualifiedName());
+            z.app("Code: ").app(fault.text("faultcode"));
             z.app("; Reason: ").app(faultStr);
-            if (actor != null) z.app("; Actor: ").app(actor);
+            if (actor != null) z.app("; Actor: ").app(actor.text());
 
             response.faultMessage = z.toString();
             response.faultMessageShort = faultStr;
@@ -261,18 +267,18 @@ final class SWGSoapManager extends SOAPManager {
             newProgramInfoChild(sbe);
 
             // simpleTransform(msg, System.out);
-            SOAPMessage respMsg = sendMessage(msg);
+            SOAPNode respBody = sendMessage(msg);
 
-            // simpleTransform(respMsg, System.out);
-            if (hasFault(respMsg, response))
+            if (hasFault(respBody, response))
                 return response;
 
-            Node n = getFirstChild(respMsg.getSOAPBody(), 1);
+            SOAPNode n = getFirstChild(respBody, 1);
             response.parseNode(n);
         } catch (Exception e) {
             String s = "SWGSoapManager:requestResource(id): " + e.getMessage();
             SWGAide.printDebug("soap", 1, s);
             response.faultMessage = e.toString();
+            response.unreachable = isUnreachable(e);
             response.faultMessageShort = "Error";
         }
         return response;
@@ -311,18 +317,18 @@ final class SWGSoapManager extends SOAPManager {
                 newProgramInfoChild(sbe);
 
             // simpleTransform(msg, System.out);
-            SOAPMessage respMsg = sendMessage(msg);
+            SOAPNode respBody = sendMessage(msg);
 
-            // simpleTransform(respMsg, System.out);
-            if (hasFault(respMsg, response))
+            if (hasFault(respBody, response))
                 return response;
 
-            Node n = getFirstChild(respMsg.getSOAPBody(), 2);
+            SOAPNode n = getFirstChild(respBody, 2);
             response.parseNode(n);
         } catch (Exception e) {
             String s = "SWGSoapManager:requestResource(n,g): " + e.getMessage();
             SWGAide.printDebug("soap", 1, s);
             response.faultMessage = e.getMessage();
+            response.unreachable = isUnreachable(e);
             response.faultMessageShort = "Error";
         }
         return response;
@@ -367,13 +373,12 @@ final class SWGSoapManager extends SOAPManager {
             newProgramInfoChild(sbe);
 
             // simpleTransform(msg, System.out);
-            SOAPMessage respMsg = sendMessage(msg);
+            SOAPNode respBody = sendMessage(msg);
 
-            // simpleTransform(respMsg, System.out);
-            if (hasFault(respMsg, response))
+            if (hasFault(respBody, response))
                 return response;
 
-            Node n = getFirstChild(respMsg.getSOAPBody(), 2);
+            SOAPNode n = getFirstChild(respBody, 2);
             response.parseNode(n);
         } catch (Exception e) {
             String msg = "SWGSoapManager:findResources: " + e.getMessage();
@@ -424,10 +429,9 @@ final class SWGSoapManager extends SOAPManager {
             newProgramInfoChild(sbe);
 
             // simpleTransform(msg, System.out);
-            SOAPMessage respMsg = sendMessage(msg);
+            SOAPNode respBody = sendMessage(msg);
 
-            // simpleTransform(respMsg, System.out);
-            if (hasFault(respMsg, response)) {
+            if (hasFault(respBody, response)) {
                 SWGAide.printDebug("soap", 1,
                         "SWGSoapManager:requestUserInfo: name:" + userName
                                 + ' '
@@ -435,7 +439,7 @@ final class SWGSoapManager extends SOAPManager {
                 return null;
             }
 
-            Node n = getFirstChild(respMsg.getSOAPBody(), 2);
+            SOAPNode n = getFirstChild(respBody, 2);
             response.parseNode(n);
 
             return response;
@@ -484,10 +488,9 @@ final class SWGSoapManager extends SOAPManager {
             newProgramInfoChild(sbe);
 
             // simpleTransform(msg, System.out);
-            SOAPMessage respMsg = sendMessage(msg);
+            SOAPNode respBody = sendMessage(msg);
 
-            // simpleTransform(respMsg, System.out);
-            if (hasFault(respMsg, response)) {
+            if (hasFault(respBody, response)) {
                 if (response.faultMessage.contains("password"))
                     resetUserData();
 
@@ -495,7 +498,7 @@ final class SWGSoapManager extends SOAPManager {
                 return response; // user name and/or password invalid
             }
 
-            Node n = getFirstChild(respMsg.getSOAPBody(), 2);
+            SOAPNode n = getFirstChild(respBody, 2);
             response.parseNode(n);
         } catch (SOAPException e) {
             SWGAide.printDebug("soap", 1,
@@ -542,16 +545,15 @@ final class SWGSoapManager extends SOAPManager {
             newProgramInfoChild(sbe);
 
             // simpleTransform(msg, System.out);
-            SOAPMessage respMsg = sendMessage(msg);
+            SOAPNode respBody = sendMessage(msg);
 
-            // simpleTransform(respMsg, System.out);
-            if (hasFault(respMsg, response)) {
+            if (hasFault(respBody, response)) {
                 SWGAide.printDebug("soap", 1, "id=" + swgcraftID + ' '
                         + response.toString());
                 return null;
             }
 
-            Node n = getFirstChild(respMsg.getSOAPBody(), 2);
+            SOAPNode n = getFirstChild(respBody, 2);
             response.parseNode(n);
             return response;
         } catch (Exception e) {
@@ -612,13 +614,12 @@ final class SWGSoapManager extends SOAPManager {
             avi.addChildElement(newProgramInfoChild(sbe));
 
             // simpleTransform(msg, System.out);
-            SOAPMessage respMsg = sendMessage(msg);
+            SOAPNode respBody = sendMessage(msg);
 
-            // simpleTransform(respMsg, System.out);
-            if (hasFault(respMsg, response))
+            if (hasFault(respBody, response))
                 return response;
 
-            Node n = getFirstChild(respMsg.getSOAPBody(), 1);
+            SOAPNode n = getFirstChild(respBody, 1);
             response.parseNode(n);
             if (response.status == 999)
                 resetUserData();
@@ -627,6 +628,7 @@ final class SWGSoapManager extends SOAPManager {
             String msg = "SWGSoapManager:sendAvailable: " + e.getMessage();
             SWGAide.printDebug("soap", 1, msg);
             response.faultMessage = msg;
+            response.unreachable = isUnreachable(e);
             response.faultMessageShort = "Error";
         }
         return response;
@@ -668,14 +670,13 @@ final class SWGSoapManager extends SOAPManager {
             di.addChildElement(newProgramInfoChild(sbe));
 
             // simpleTransform(msg, System.out);
-            SOAPMessage respMsg = sendMessage(msg);
+            SOAPNode respBody = sendMessage(msg);
 
-            // simpleTransform(respMsg, System.out);
-            if (hasFault(respMsg, response))
+            if (hasFault(respBody, response))
                 return response;
 
-            Node n = getFirstChild(respMsg.getSOAPBody(), 1);
-            response.status = Integer.parseInt(n.getTextContent());
+            SOAPNode n = getFirstChild(respBody, 1);
+            response.status = Integer.parseInt(n.text());
             if (response.status == 999) {
                 resetUserData();
             }
@@ -683,6 +684,7 @@ final class SWGSoapManager extends SOAPManager {
             String msg = "SWGSoapManager:sendDespawn: " + e.getMessage();
             SWGAide.printDebug("soap", 1, msg);
             response.faultMessage = msg;
+            response.unreachable = isUnreachable(e);
             response.faultMessageShort = e.getMessage();
         }
         return response;
@@ -724,14 +726,13 @@ final class SWGSoapManager extends SOAPManager {
             di.addChildElement(newProgramInfoChild(sbe));
 
             // simpleTransform(msg, System.out);
-            SOAPMessage respMsg = sendMessage(msg);
+            SOAPNode respBody = sendMessage(msg);
 
-            // simpleTransform(respMsg, System.out);
-            if (hasFault(respMsg, response))
+            if (hasFault(respBody, response))
                 return response;
 
-            Node n = getFirstChild(respMsg.getSOAPBody(), 1);
-            response.status = Integer.parseInt(n.getTextContent());
+            SOAPNode n = getFirstChild(respBody, 1);
+            response.status = Integer.parseInt(n.text());
             if (response.status == 999) {
                 resetUserData();
             }
@@ -739,6 +740,7 @@ final class SWGSoapManager extends SOAPManager {
             String msg = "SWGSoapManager:sendRespawn: " + e.getMessage();
             SWGAide.printDebug("soap", 1, msg);
             response.faultMessage = msg;
+            response.unreachable = isUnreachable(e);
             response.faultMessageShort = e.getMessage();
         }
         return response;
@@ -792,13 +794,12 @@ final class SWGSoapManager extends SOAPManager {
             eri.addChildElement(newProgramInfoChild(sbe));
 
             // simpleTransform(msg, System.out);
-            SOAPMessage respMsg = sendMessage(msg);
+            SOAPNode respBody = sendMessage(msg);
 
-            // simpleTransform(respMsg, System.out);
-            if (hasFault(respMsg, response))
+            if (hasFault(respBody, response))
                 return response;
 
-            Node n = getFirstChild(respMsg.getSOAPBody(), 2);
+            SOAPNode n = getFirstChild(respBody, 2);
             response.parseNode(n);
             if (response.status == 999) {
                 resetUserData();
@@ -807,6 +808,7 @@ final class SWGSoapManager extends SOAPManager {
             String msg = "SWGSoapManager:addResource: " + e.getMessage();
             SWGAide.printDebug("soap", 1, msg);
             response.faultMessage = msg;
+            response.unreachable = isUnreachable(e);
             response.faultMessageShort = e.getMessage();
         }
         return response;
@@ -876,13 +878,12 @@ final class SWGSoapManager extends SOAPManager {
             ari.addChildElement(newProgramInfoChild(sbe));
 
             // simpleTransform(msg, System.out);
-            SOAPMessage respMsg = sendMessage(msg);
+            SOAPNode respBody = sendMessage(msg);
 
-            // simpleTransform(respMsg, System.out);
-            if (hasFault(respMsg, response))
+            if (hasFault(respBody, response))
                 return response;
 
-            Node n = getFirstChild(respMsg.getSOAPBody(), 2);
+            SOAPNode n = getFirstChild(respBody, 2);
 
             response.parseNode(n);
             if (response.status == 999) {
@@ -936,13 +937,12 @@ final class SWGSoapManager extends SOAPManager {
             ari.addChildElement(newProgramInfoChild(sbe));
 
             // simpleTransform(msg, System.out);
-            SOAPMessage respMsg = sendMessage(msg);
+            SOAPNode respBody = sendMessage(msg);
 
-            // simpleTransform(respMsg, System.out);
-            if (hasFault(respMsg, response))
+            if (hasFault(respBody, response))
                 return response;
 
-            Node n = getFirstChild(respMsg.getSOAPBody(), 2);
+            SOAPNode n = getFirstChild(respBody, 2);
 
             response.parseNode(n);
             if (response.status == 999) {
@@ -957,6 +957,28 @@ final class SWGSoapManager extends SOAPManager {
     	
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * This implementation is paced by {@link SWGCraft#traffic}, it blocks until
+     * the limiter admits another call and a concurrency slot is available. A
+     * call which throws an exception, a connection error, a timeout, or a
+     * response which is not a SOAP envelope, is reported as a failure so that
+     * the limiter backs off; a SOAP fault is a valid response.
+     */
+    @Override
+    protected SOAPNode sendMessage(SOAPMessage msg) throws Exception {
+        SWGCraft.traffic.acquire(true);
+        boolean ok = false;
+        try {
+            SOAPNode body = super.sendMessage(msg);
+            ok = true;
+            return body;
+        } finally {
+            SWGCraft.traffic.release(ok);
+        }
+    }
+
     /**
      * Helper method that sets the URL for the SOAP server. More specifically,
      * this implementation obtains the values from SWGAide's preference keeper
@@ -977,13 +999,18 @@ final class SWGSoapManager extends SOAPManager {
 
     /**
      * Returns the SOAP handler for communicating with the SOAP server at
-     * SWGCraft.org. If there is an error creating the SOAP handler it is
+     * SWGCraft.org. If the current thread has a handler of its own, see
+     * {@link #laneOpen()}, that handler is returned, otherwise the shared
+     * handler. If there is an error creating the SOAP handler it is
      * intercepted and a message is written to SWGAide's debug log and {@code
      * null} is returned.
      * 
      * @return the SOAP handler for SWGCraft.org, or {@code null}
      */
     static SWGSoapManager getSOAPHandler() {
+        SWGSoapManager lane = lanes.get();
+        if (lane != null) return lane;
+
         // lock on something never null and otherwise not locked on
         synchronized (NAME_SPACE_PREFIX) {
             if (soapHandler == null) {
@@ -997,6 +1024,46 @@ final class SWGSoapManager extends SOAPManager {
         return soapHandler;
     }
 
+    /**
+     * Helper method which determines if the specified exception denotes that
+     * the SOAP server could not be reached, rather than a failure to create or
+     * to parse a message. Only a connection error, a timeout, or another I/O
+     * error of the HTTP exchange denotes that the server could not be reached.
+     * A {@link SOAPException} is not such an error, it is thrown if a message
+     * cannot be created or if the server responds with something else than a
+     * SOAP message, such as an error page, and a retry will fail the same way.
+     * 
+     * @param e an exception
+     * @return {@code true} if the exception is a connection or I/O error
+     */
+    private static boolean isUnreachable(Exception e) {
+        return e instanceof IOException; // ConnectException, timeouts, etc.
+    }
+
+    /**
+     * Releases the SOAP handler which is bound to the current thread, see
+     * {@link #laneOpen()}. If there is no such handler this method does
+     * nothing.
+     */
+    static void laneClose() {
+        lanes.remove();
+    }
+
+    /**
+     * Binds a new SOAP handler to the current thread. Until
+     * {@link #laneClose()} is invoked {@link #getSOAPHandler()} returns this
+     * handler for the current thread. This method must only be used by worker
+     * threads of a submission pipeline. If there is an error it is logged and
+     * the thread uses the shared handler.
+     */
+    static void laneOpen() {
+        try {
+            lanes.set(new SWGSoapManager());
+        } catch (Exception e) {
+            SWGAide.printError("SWGCraft:laneOpen: ", e);
+        }
+    }
+
     /**
      * A convenience integer-to-string method. This method is just a shorthand
      * for {@link Long#toString(long)}.
@@ -1009,32 +1076,32 @@ final class SWGSoapManager extends SOAPManager {
     }
 
     /**
-     * Returns the {@code int} value from the element contained in the list of
-     * nodes and identified by its name. If the element is not found 0 is
-     * returned. This implementation logs errors to SWGAide's log file.
+     * Returns the {@code int} value from the child element of the specified
+     * node identified by its name. If the element is not found 0 is returned.
+     * This implementation logs errors to SWGAide's log file.
      * 
-     * @param nodes a list of nodes
+     * @param node the parent node
      * @param elementName the name of the element
      * @return the {@code int} value from the identified element, or 0
-     * @throws NullPointerException if the list is {@code null}
+     * @throws NullPointerException if the node is {@code null}
      */
-    static int parseInt(NodeList nodes, String elementName) {
-        return (int) parseLong(nodes, elementName);
+    static int parseInt(SOAPNode node, String elementName) {
+        return (int) parseLong(node, elementName);
     }
 
     /**
-     * Returns the {@code long} value from the element contained in the list of
-     * nodes and identified by its name. If the element is not found 0 is
-     * returned. This implementation logs errors to SWGAide's log file.
+     * Returns the {@code long} value from the child element of the specified
+     * node identified by its name. If the element is not found 0 is returned.
+     * This implementation logs errors to SWGAide's log file.
      * 
-     * @param nodes a list of nodes
+     * @param node the parent node
      * @param elementName the name of the element
      * @return the {@code long} value from the identified element, or 0
-     * @throws NullPointerException if the list is {@code null}
+     * @throws NullPointerException if the node is {@code null}
      */
-    static long parseLong(NodeList nodes, String elementName) {
+    static long parseLong(SOAPNode node, String elementName) {
         try {
-            String l = parseString(nodes, elementName);
+            String l = parseString(node, elementName);
             return ZNumber.longExc(l);
         } catch (Exception e) {
             String msg = "SWGSoapManager:parseLong: " + elementName + ':';
@@ -1045,22 +1112,17 @@ final class SWGSoapManager extends SOAPManager {
     }
 
     /**
-     * Returns the text content from the element contained in the list of nodes
-     * and identified by its name. If the element is not found the empty string
-     * is returned.
+     * Returns the text content from the child element of the specified node
+     * identified by its name, the name is matched ignoring case. If the
+     * element is not found the empty string is returned.
      * 
-     * @param nodes a list of nodes
+     * @param node the parent node
      * @param elementName the name of the element
      * @return the text content from the identified element, or the empty string
-     * @throws NullPointerException if the list is {@code null}
+     * @throws NullPointerException if the node is {@code null}
      */
-    static String parseString(NodeList nodes, String elementName) {
-        for (int i = 0; i < nodes.getLength(); ++i) {
-            Node nn = nodes.item(i);
-            String nName = nn.getNodeName();
-            if (nName.equalsIgnoreCase(elementName)) { return nn.getTextContent(); }
-        }
-        return "";
+    static String parseString(SOAPNode node, String elementName) {
+        return node.text(elementName);
     }
 
     /**
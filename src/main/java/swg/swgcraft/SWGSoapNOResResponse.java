@@ -1,12 +1,10 @@
 package swg.swgcraft;
 
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-
 import swg.crafting.resources.SWGKnownResource;
 import swg.crafting.resources.SWGResource;
 import swg.crafting.resources.SWGResourceSet;
 import swg.model.SWGPlanet;
+import swg.tools.SOAPNode;
 import swg.tools.ZString;
 
 /**
@@ -131,15 +129,14 @@ public final class SWGSoapNOResResponse extends SWGSoapResResponse {
     }
 
     @Override
-    void parseNode(Node node) {
-        NodeList lst = node.getChildNodes();
-        status = SWGSoapManager.parseInt(lst, "Status");
+    void parseNode(SOAPNode node) {
+        status = SWGSoapManager.parseInt(node, "Status");
         if (!isFaultless()) {
             faultMessage = getStatusString();
             return;
         }
 
-        swgcraftID = SWGSoapManager.parseInt(lst, "ResourceID");
+        swgcraftID = SWGSoapManager.parseInt(node, "ResourceID");
         if (resource != null) {
 	        if (resource.id() <= 0) {
 	            SWGResourceManager.supplyID(resource, swgcraftID);
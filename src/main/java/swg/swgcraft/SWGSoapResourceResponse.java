@@ -1,14 +1,12 @@
 package swg.swgcraft;
 
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-
 import swg.SWGAide;
 import swg.crafting.Stat;
 import swg.crafting.resources.SWGMutableResource;
 import swg.crafting.resources.SWGResourceClass;
 import swg.crafting.resources.SWGResourceStats;
 import swg.model.SWGCGalaxy;
+import swg.tools.SOAPNode;
 import swg.tools.ZString;
 
 /**
@@ -176,27 +174,25 @@ final class SWGSoapResourceResponse extends SWGSoapResponse {
 
     /*
      * (non-Javadoc)
-     * @see swg.swgcraft.SWGSoapResponse#parseNode(org.w3c.dom.Node)
+     * @see swg.swgcraft.SWGSoapResponse#parseNode(swg.tools.SOAPNode)
      */
     @Override
-    void parseNode(Node node) {
-        NodeList lst = node.getChildNodes();
-
-        int typeID = SWGSoapManager.parseInt(lst, "Class");
+    void parseNode(SOAPNode node) {
+        int typeID = SWGSoapManager.parseInt(node, "Class");
         SWGResourceClass type = SWGResourceClass.rc(typeID);
 
         // need to differ between the two request types, ID vs. name/gxy
         if (resourceName == null)
-            resourceName = SWGSoapManager.parseString(lst, "Name");
+            resourceName = SWGSoapManager.parseString(node, "Name");
 
         // create the resource, now we know enough
         resource = new SWGMutableResource(resourceName, type);
 
         if (galaxy == null)
-            galaxy = SWGCGalaxy.fromID(SWGSoapManager.parseInt(lst, "ServerID"));
+            galaxy = SWGCGalaxy.fromID(SWGSoapManager.parseInt(node, "ServerID"));
         resource.galaxy(galaxy);
 
-        long id = SWGSoapManager.parseLong(lst, "ID");
+        long id = SWGSoapManager.parseLong(node, "ID");
         if (swgcraftID <= 0 || id == swgcraftID)
             resource.id(id);
         else {
@@ -207,13 +203,13 @@ final class SWGSoapResourceResponse extends SWGSoapResponse {
 
         SWGResourceStats stats = new SWGResourceStats();
         for (Stat s : Stat.values()) {
-            int v = SWGSoapManager.parseInt(lst, s.getName());
+            int v = SWGSoapManager.parseInt(node, s.getName());
             stats.set(s, v);
         }
         resource.stats(stats, false);
 
-        available = SWGSoapManager.parseLong(lst, "AddedStamp");
-        availableBy = SWGSoapManager.parseInt(lst, "AddedBy");
+        available = SWGSoapManager.parseLong(node, "AddedStamp");
+        availableBy = SWGSoapManager.parseInt(node, "AddedBy");
     }
 
     @Override
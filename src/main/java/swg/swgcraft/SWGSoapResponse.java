@@ -1,6 +1,6 @@
 package swg.swgcraft;
 
-import org.w3c.dom.Node;
+import swg.tools.SOAPNode;
 
 /**
  * This class is the abstract super type for all types of SOAP responses from
@@ -27,6 +27,13 @@ public abstract class SWGSoapResponse {
      */
     protected int status = -1;
 
+    /**
+     * A flag which denotes if the SOAP server could not be reached, that is,
+     * the request failed with a connection or I/O error rather than being
+     * answered by the server. The default value is {@code false}.
+     */
+    protected boolean unreachable;
+
     /**
      * Returns the message contained in a fault error from the SOAP server,
      * otherwise {@code null}. If an exception occurs and no SOAP fault message
@@ -83,12 +90,23 @@ public abstract class SWGSoapResponse {
         return (faultMessage == null);
     }
 
+    /**
+     * Returns {@code true} if the SOAP server could not be reached, that is,
+     * if the request failed with a connection or I/O error. A request which
+     * failed for this reason may be retried later.
+     * 
+     * @return {@code true} if the server could not be reached
+     */
+    boolean isUnreachable() {
+        return unreachable;
+    }
+
     /**
      * Parses and adds to this object's info from the argument.
      * 
      * @param node
      *            the node to parse
      */
-    abstract void parseNode(Node node);
+    abstract void parseNode(SOAPNode node);
 
 }
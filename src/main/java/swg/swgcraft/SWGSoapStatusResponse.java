@@ -1,8 +1,6 @@
 package swg.swgcraft;
 
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-
+import swg.tools.SOAPNode;
 import swg.tools.ZString;
 
 /**
@@ -71,9 +69,8 @@ public class SWGSoapStatusResponse extends SWGSoapResponse {
     }
 
     @Override
-    void parseNode(Node node) {
-        NodeList lst = node.getChildNodes();
-        status = SWGSoapManager.parseInt(lst, "Status");
+    void parseNode(SOAPNode node) {
+        status = SWGSoapManager.parseInt(node, "Status");
     }
 
     @Override
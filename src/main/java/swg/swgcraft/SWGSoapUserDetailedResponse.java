@@ -2,9 +2,7 @@ package swg.swgcraft;
 
 import java.util.Date;
 
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-
+import swg.tools.SOAPNode;
 import swg.tools.ZString;
 
 /**
@@ -90,13 +88,12 @@ final class SWGSoapUserDetailedResponse extends SWGSoapUserResponse {
     }
 
     @Override
-    void parseNode(Node node) {
-        NodeList lst = node.getChildNodes();
-        userName = SWGSoapManager.parseString(lst, "Username");
-        dateFormat = SWGSoapManager.parseString(lst, "Dateformat");
-        email = SWGSoapManager.parseString(lst, "Email");
-        lastStamp = SWGSoapManager.parseLong(lst, "LastStamp");
-        timezone = SWGSoapManager.parseString(lst, "Timezone");
+    void parseNode(SOAPNode node) {
+        userName = SWGSoapManager.parseString(node, "Username");
+        dateFormat = SWGSoapManager.parseString(node, "Dateformat");
+        email = SWGSoapManager.parseString(node, "Email");
+        lastStamp = SWGSoapManager.parseLong(node, "LastStamp");
+        timezone = SWGSoapManager.parseString(node, "Timezone");
 
         // order of this call does not matter but userName should be set first
         super.parseNode(node);
@@ -2,11 +2,9 @@ package swg.swgcraft;
 
 import java.util.Date;
 
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-
 import swg.model.SWGCGalaxy;
 import swg.model.SWGPlanet;
+import swg.tools.SOAPNode;
 import swg.tools.ZString;
 
 /**
@@ -185,22 +183,20 @@ class SWGSoapUserResponse extends SWGSoapResponse {
 
     /*
      * (non-Javadoc)
-     * @see swg.swgcraft.SWGSoapUserInfo#parseNode(org.w3c.dom.Node)
+     * @see swg.swgcraft.SWGSoapUserInfo#parseNode(swg.tools.SOAPNode)
      */
     @Override
-    void parseNode(Node node) {
-        NodeList lst = node.getChildNodes();
-
-        int id = SWGSoapManager.parseInt(lst, "Server");
+    void parseNode(SOAPNode node) {
+        int id = SWGSoapManager.parseInt(node, "Server");
         galaxy = id > 0
             ? SWGCGalaxy.fromID(id)
             : null;
-        id = SWGSoapManager.parseInt(lst, "Planet");
+        id = SWGSoapManager.parseInt(node, "Planet");
         planet = id > 0
             ? SWGPlanet.fromID(id)
             : null;
-        posts = SWGSoapManager.parseInt(lst, "Posts");
-        regStamp = SWGSoapManager.parseLong(lst, "RegStamp");
+        posts = SWGSoapManager.parseInt(node, "Posts");
+        regStamp = SWGSoapManager.parseLong(node, "RegStamp");
 
         // this method serves both SWGSoapManager#requestUserInfo(String)
         // and SWGSoapManager#requestUserName(int) thus the following two
@@ -209,10 +205,10 @@ class SWGSoapUserResponse extends SWGSoapResponse {
         // while the other once has its default value.
 
         if (userID <= 0)
-            userID = SWGSoapManager.parseInt(lst, "UserID");
+            userID = SWGSoapManager.parseInt(node, "UserID");
 
         if (userName == null)
-            userName = SWGSoapManager.parseString(lst, "Name");
+            userName = SWGSoapManager.parseString(node, "Name");
     }
 
     @Override
@@ -0,0 +1,126 @@
+package swg.swgcraft;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * An input stream which copies every byte it reads to a file. This type makes
+ * it possible to consume a download once, for example parse it, while a copy of
+ * the raw content is stored in the local cache. The bytes are written to a
+ * temporary file next to the target file and the target is replaced just when
+ * {@link #commit()} is invoked, hence an aborted download or a parse error
+ * never leaves a truncated cache file. If this stream is closed without a
+ * commit the temporary file is deleted.
+ * <p>
+ * This type is not thread safe, it is meant to be consumed by one thread.
+ */
+final class SWGTeeInputStream extends FilterInputStream {
+
+    /**
+     * The file which is replaced by {@link #temp} at {@link #commit()}.
+     */
+    private final File target;
+
+    /**
+     * The temporary file which is written to while this stream is read.
+     */
+    private final File temp;
+
+    /**
+     * The output stream for {@link #temp}, or {@code null} if this stream is
+     * committed or closed.
+     */
+    private OutputStream to;
+
+    /**
+     * Creates an instance of this type which reads from the specified stream
+     * and writes a copy to the specified file.
+     *
+     * @param in the stream to read from
+     * @param target the file to store a copy at
+     * @throws IOException if there is an error creating the temporary file
+     */
+    SWGTeeInputStream(InputStream in, File target) throws IOException {
+        super(in);
+        this.target = target;
+        this.temp = new File(target.getPath() + ".part");
+        this.to = new BufferedOutputStream(new FileOutputStream(temp));
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            super.close();
+        } finally {
+            if (to != null) {
+                try {
+                    to.close();
+                } catch (IOException e) { /* ignore */
+                }
+                to = null;
+                temp.delete();
+            }
+        }
+    }
+
+    /**
+     * Reads the remainder of the wrapped stream and replaces the target file
+     * with the copy. Once this method returns this stream is closed.
+     *
+     * @throws IOException if there is an I/O error or if the target file cannot
+     *         be replaced
+     */
+    void commit() throws IOException {
+        if (to == null) throw new IOException("Stream is closed");
+
+        byte[] buffer = new byte[4096];
+        while (read(buffer) >= 0) {
+            // drain trailing bytes so the copy is complete
+        }
+        to.close();
+        to = null;
+        super.close();
+
+        if (target.exists() && !target.delete())
+            throw new IOException("Cannot replace " + target);
+        if (!temp.renameTo(target))
+            throw new IOException("Cannot rename " + temp);
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b >= 0 && to != null) to.write(b);
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int n = super.read(b, off, len);
+        if (n > 0 && to != null) to.write(b, off, n);
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        // skip by reading so that skipped bytes are copied as well
+        byte[] buffer = new byte[(int) Math.min(n, 4096)];
+        long left = n;
+        while (left > 0) {
+            int r = read(buffer, 0, (int) Math.min(left, buffer.length));
+            if (r < 0) break;
+            left -= r;
+        }
+        return n - left;
+    }
+}
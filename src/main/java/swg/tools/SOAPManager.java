@@ -1,28 +1,31 @@
 package swg.tools;
 
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.PrintStream;
+import java.net.HttpURLConnection;
 import java.net.URL;
+import java.util.Iterator;
 
 import javax.xml.soap.MessageFactory;
+import javax.xml.soap.MimeHeader;
 import javax.xml.soap.Name;
 import javax.xml.soap.SOAPBody;
 import javax.xml.soap.SOAPBodyElement;
-import javax.xml.soap.SOAPConnection;
-import javax.xml.soap.SOAPConnectionFactory;
 import javax.xml.soap.SOAPElement;
 import javax.xml.soap.SOAPEnvelope;
 import javax.xml.soap.SOAPException;
 import javax.xml.soap.SOAPFactory;
 import javax.xml.soap.SOAPMessage;
 import javax.xml.soap.SOAPPart;
+import javax.xml.stream.XMLStreamException;
 import javax.xml.transform.Source;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.stream.StreamResult;
 
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-
 import swg.SWGAide;
 import swg.SWGConstants;
 
@@ -32,6 +35,9 @@ import swg.SWGConstants;
  * implementation must be extended by a sub-class that implements the particular
  * SOAP actions that will be used. Hence most methods have the access modifier
  * {@code protected}.
+ * <P>
+ * Requests are built with SAAJ but responses are read with a pull parser into
+ * a light tree of {@link SOAPNode}, no SAAJ DOM is created for a response.
  * 
  * @author <a href="mailto:simongronlund@gmail.com">Simon Gronlund</a> aka
  *         Europe-Chimaera.Zimoon
@@ -39,14 +45,19 @@ import swg.SWGConstants;
 public class SOAPManager {
 
     /**
-     * The target name space prefix.
+     * The timeout in milliseconds for establishing a connection.
      */
-    private String nameSpacePrefix;
+    private static final int CONNECT_TIMEOUT = 15000;
+
+    /**
+     * The timeout in milliseconds for reading a response.
+     */
+    private static final int READ_TIMEOUT = 60000;
 
     /**
-     * The SOAP connection factory for creating connections.
+     * The target name space prefix.
      */
-    private SOAPConnectionFactory soapConnectionFactory;
+    private String nameSpacePrefix;
 
     /**
      * The SOAP factory for creating SOAP messages.
@@ -64,19 +75,17 @@ public class SOAPManager {
     private URL url;
 
     /**
-     * Creates a plain instance with a {@link SOAPConnectionFactory} and a
-     * {@link SOAPFactory}. The setters listed below must be used before it is
-     * possible to use this instance.
+     * Creates a plain instance with a {@link SOAPFactory}. The setters listed
+     * below must be used before it is possible to use this instance.
      * 
      * @see #setNameSpacePrefix(String)
      * @see #setTargetNameSpace(String)
      * @see #setURL(URL)
      * @throws Exception
      *             something went wrong with obtaining a new instance of a
-     *             {@link SOAPConnectionFactory} or a {@link SOAPFactory}
+     *             {@link SOAPFactory}
      */
     protected SOAPManager() throws Exception {
-        soapConnectionFactory = SOAPConnectionFactory.newInstance();
         soapFactory = SOAPFactory.newInstance();
     }
 
@@ -189,24 +198,75 @@ public class SOAPManager {
     }
 
     /**
-     * Sends the given message to {@link #url} and returns the response from the
-     * transaction. This implementation is blocking until the response is
-     * returned.
+     * Sends the given message to {@link #url} and returns the body of the
+     * response from the transaction. The request is posted over HTTP and the
+     * response is read with a pull parser into a tree of {@link SOAPNode},
+     * the returned node is the SOAP body element. This implementation is
+     * blocking until the response is read, or until it times out.
      * <P>
      * This implementation requires that {@link #url} is already set prior.
      * 
      * @param msg the SOAP message to be sent
-     * @return the response from the connection
-     * @throws Exception if there is an error
+     * @return the body element of the response
+     * @throws IOException if there is a connection or I/O error
+     * @throws SOAPException if the response has no content or no SOAP body
+     * @throws Exception if there is another error
      */
-    protected SOAPMessage sendMessage(SOAPMessage msg) throws Exception {
+    protected SOAPNode sendMessage(SOAPMessage msg) throws Exception {
+        HttpURLConnection conn = null;
         try {
-            SOAPConnection conn = soapConnectionFactory.createConnection();
-            return conn.call(msg, url);
+            if (msg.saveRequired()) msg.saveChanges();
+
+            conn = (HttpURLConnection) url.openConnection();
+            conn.setConnectTimeout(CONNECT_TIMEOUT);
+            conn.setReadTimeout(READ_TIMEOUT);
+            conn.setUseCaches(false);
+            conn.setDoOutput(true);
+            conn.setRequestMethod("POST");
+
+            Iterator<?> it = msg.getMimeHeaders().getAllHeaders();
+            while (it.hasNext()) {
+                MimeHeader h = (MimeHeader) it.next();
+                conn.addRequestProperty(h.getName(), h.getValue());
+            }
+            if (conn.getRequestProperty("SOAPAction") == null)
+                conn.setRequestProperty("SOAPAction", "\"\"");
+
+            OutputStream out = conn.getOutputStream();
+            try {
+                msg.writeTo(out);
+            } finally {
+                out.close();
+            }
+
+            // a SOAP fault is sent with HTTP status 500
+            int code = conn.getResponseCode();
+            InputStream in = code >= 400
+                    ? conn.getErrorStream()
+                    : conn.getInputStream();
+            if (in == null) // the server responded, but with no content
+                throw new SOAPException("No content, HTTP status " + code);
+
+            try {
+                SOAPNode body = SOAPNode.parse(new BufferedInputStream(in))
+                        .child("Body");
+                if (body == null)
+                    throw new SOAPException("No SOAP body, HTTP status " + code);
+                return body;
+            } catch (XMLStreamException e) {
+                // an I/O error while reading is wrapped by the reader
+                if (e.getNestedException() instanceof IOException)
+                    throw (IOException) e.getNestedException();
+                throw e;
+            } finally {
+                in.close();
+            }
         } catch (Exception e) {
             if (SWGConstants.DEV_DEBUG)
                 SWGAide.printError("SOAPManager:sendMessage", e);
             throw e;
+        } finally {
+            if (conn != null) conn.disconnect();
         }
     }
 
@@ -258,12 +318,12 @@ public class SOAPManager {
      *             if the argument is {@code null} or if level is greater than
      *             the tree's depth
      */
-    protected static Node getFirstChild(Node node, int level) {
+    protected static SOAPNode getFirstChild(SOAPNode node, int level) {
         if (level < 0)
             throw new IllegalArgumentException("Illegal level: " + level);
-        Node n = node;
+        SOAPNode n = node;
         for (int i = 0; i < level; ++i) {
-            n = n.getFirstChild();
+            n = n.child(0);
         }
         return n;
     }
@@ -323,17 +383,12 @@ public class SOAPManager {
         simpleTransform(msg, System.out);
 
         // Send the message
-        SOAPMessage response = sm.sendMessage(msg);
+        SOAPNode response = sm.sendMessage(msg);
 
-        simpleTransform(response, System.out);
+        SOAPNode n = getFirstChild(response, 2);
 
-        Node n = getFirstChild(response.getSOAPBody(), 2);
-
-        NodeList lst = n.getChildNodes();
-        for (int i = 0; i < lst.getLength(); ++i) {
-            Node nn = lst.item(i);
-            System.out.println(nn + " " + nn.getTextContent());
-        }
+        for (SOAPNode nn : n.children())
+            System.out.println(nn + " " + nn.text());
     }
 
     /**
@@ -0,0 +1,223 @@
+package swg.tools;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * This type is a lightweight, read-only element of a SOAP response. A response
+ * is read with a pull parser in one pass into a small tree of instances of
+ * this type, which is much cheaper than the DOM that is created by SAAJ. Only
+ * elements and their text are retained; attributes, comments, and name spaces
+ * are dropped, elements are known by their local names.
+ * <p>
+ * Each element indexes its children by name so that a child element is found
+ * in constant time, see {@link #child(String)}; names are matched ignoring
+ * case, and if several children have the same name the first one is found.
+ * <p>
+ * Instances of this type are immutable once they are parsed and thus thread
+ * safe.
+ */
+public final class SOAPNode {
+
+    /**
+     * A shared factory for stream readers, configured once.
+     */
+    private static final XMLInputFactory factory;
+
+    static {
+        factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        factory.setProperty(
+                XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+    }
+
+    /**
+     * The child elements of this element, or an empty list.
+     */
+    private List<SOAPNode> children = Collections.emptyList();
+
+    /**
+     * A map of lower case names to the first child element with that name, or
+     * {@code null} if this element has no children.
+     */
+    private Map<String, SOAPNode> index;
+
+    /**
+     * The local name of this element.
+     */
+    private final String name;
+
+    /**
+     * The text of this element, not including the text of its children, or
+     * {@code null} if there is no text.
+     */
+    private String text;
+
+    /**
+     * Creates an element with the specified name.
+     *
+     * @param name the local name
+     */
+    private SOAPNode(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Helper method which adds the specified child to this element.
+     *
+     * @param c the child to add
+     */
+    private void add(SOAPNode c) {
+        if (index == null) {
+            children = new ArrayList<SOAPNode>(4);
+            index = new HashMap<String, SOAPNode>();
+        }
+        children.add(c);
+        String k = c.name.toLowerCase(Locale.ENGLISH);
+        if (!index.containsKey(k)) index.put(k, c);
+    }
+
+    /**
+     * Returns the child element at the specified index, or {@code null} if
+     * there is no such child.
+     *
+     * @param i the index of the child
+     * @return a child element, or {@code null}
+     */
+    public SOAPNode child(int i) {
+        return i >= 0 && i < children.size()
+                ? children.get(i)
+                : null;
+    }
+
+    /**
+     * Returns the first child element with the specified name, or {@code null}
+     * if there is no such child. The name is matched ignoring case.
+     *
+     * @param elementName the local name of the child
+     * @return a child element, or {@code null}
+     */
+    public SOAPNode child(String elementName) {
+        return index == null
+                ? null
+                : index.get(elementName.toLowerCase(Locale.ENGLISH));
+    }
+
+    /**
+     * Returns a read-only list of the child elements of this element.
+     *
+     * @return a list of children, or an empty list
+     */
+    public List<SOAPNode> children() {
+        return Collections.unmodifiableList(children);
+    }
+
+    /**
+     * Returns the local name of this element.
+     *
+     * @return the local name
+     */
+    public String name() {
+        return name;
+    }
+
+    /**
+     * Reads the specified stream and returns the root element of the
+     * document. This method does not close the stream.
+     *
+     * @param in the stream to read
+     * @return the root element
+     * @throws XMLStreamException if there is an XML or I/O error, or if the
+     *         document has no root element
+     */
+    public static SOAPNode parse(InputStream in) throws XMLStreamException {
+        XMLStreamReader xr = factory.createXMLStreamReader(in);
+        try {
+            List<SOAPNode> stack = new ArrayList<SOAPNode>();
+            List<StringBuilder> texts = new ArrayList<StringBuilder>();
+            SOAPNode root = null;
+
+            while (xr.hasNext()) {
+                int event = xr.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    SOAPNode n = new SOAPNode(xr.getLocalName());
+                    if (stack.isEmpty())
+                        root = n;
+                    else
+                        stack.get(stack.size() - 1).add(n);
+                    stack.add(n);
+                    texts.add(null);
+
+                } else if (event == XMLStreamConstants.CHARACTERS
+                        || event == XMLStreamConstants.CDATA) {
+                    if (stack.isEmpty()) continue;
+                    int i = texts.size() - 1;
+                    StringBuilder sb = texts.get(i);
+                    if (sb == null) texts.set(i, sb = new StringBuilder());
+                    sb.append(xr.getText());
+
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    SOAPNode n = stack.remove(stack.size() - 1);
+                    StringBuilder sb = texts.remove(texts.size() - 1);
+                    if (sb != null) n.text = sb.toString();
+                }
+            }
+            if (root == null) throw new XMLStreamException("No root element");
+            return root;
+        } finally {
+            xr.close();
+        }
+    }
+
+    /**
+     * Returns the text content of this element, that is the text of this
+     * element followed by the text of all its descendants. If there is no text
+     * the empty string is returned.
+     *
+     * @return the text content, or the empty string
+     */
+    public String text() {
+        if (children.isEmpty())
+            return text == null
+                    ? ""
+                    : text;
+
+        // mixed content is not expected from SOAP servers
+        StringBuilder sb = new StringBuilder();
+        if (text != null) sb.append(text);
+        for (SOAPNode c : children)
+            sb.append(c.text());
+        return sb.toString();
+    }
+
+    /**
+     * Returns the text content of the first child element with the specified
+     * name, or the empty string if there is no such child. The name is matched
+     * ignoring case.
+     *
+     * @param elementName the local name of the child
+     * @return the text content of the child, or the empty string
+     */
+    public String text(String elementName) {
+        SOAPNode c = child(elementName);
+        return c == null
+                ? ""
+                : c.text();
+    }
+
+    @Override
+    public String toString() {
+        return "SOAPNode[" + name + ", " + children.size() + ']';
+    }
+}
@@ -0,0 +1,303 @@
+package swg.crafting.resources;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import swg.crafting.SWGWeights;
+import swg.crafting.Stat;
+import swg.model.SWGCGalaxy;
+
+/**
+ * This type is a benchmark for the bulk rating and filtering of resources. It
+ * generates a set of resources with random stats and compares the throughput
+ * of rating and filtering one resource at a time, as by
+ * {@link SWGWeights.RatingPlan#rate(SWGResource)} and
+ * {@link SWGResourceFilter#isBetter(SWGResource, boolean)}, with that of the
+ * column kernels of {@link SWGResourceColumns}, see
+ * {@link SWGWeights.RatingPlan#rate(SWGResourceColumns)} and
+ * {@link SWGResourceColumns#isBetter(SWGResourceFilter, boolean)}.
+ * <p>
+ * Each kernel is first verified to yield results which are identical to the
+ * per-resource methods, rates are compared bit by bit, and then each variant
+ * is timed over a number of rounds after a warm-up. The output is the time
+ * per resource and the gain of the column kernel.
+ * <p>
+ * The benchmark is configured from the command line: the number of resources,
+ * the number of rounds, and the seed for the random data. Run with
+ * {@code -help} for the options.
+ * <p>
+ * This type is for development only, it is in the test sources and it is not
+ * part of SWGAide.
+ */
+public final class SWGRatingBenchmark {
+
+    /**
+     * A value which keeps the benchmarked work from being optimized away.
+     */
+    private static volatile double blackhole;
+
+    /**
+     * The resource class for caps, all generated resources are sub-classes.
+     */
+    private final SWGResourceClass caps;
+
+    /**
+     * A columnar snapshot of {@link #resources}.
+     */
+    private final SWGResourceColumns columns;
+
+    /**
+     * The random filters to benchmark.
+     */
+    private final List<SWGResourceFilter> filters;
+
+    /**
+     * The generated resources.
+     */
+    private final List<SWGKnownResource> resources;
+
+    /**
+     * The number of timed rounds.
+     */
+    private final int rounds;
+
+    /**
+     * The random weights to benchmark.
+     */
+    private final List<SWGWeights> weights;
+
+    /**
+     * Creates a benchmark with the specified number of random resources.
+     *
+     * @param size the number of resources
+     * @param rounds the number of timed rounds
+     * @param seed the seed for the random data
+     */
+    private SWGRatingBenchmark(int size, int rounds, long seed) {
+        this.rounds = rounds;
+        Random rnd = new Random(seed);
+
+        caps = SWGResourceClass.rc("Inorganic");
+        List<SWGResourceClass> rcs = SWGResourceClass.rcsFor(
+                new Comparable<SWGResourceClass>() {
+                    @Override
+                    public int compareTo(SWGResourceClass o) {
+                        return o.isSpawnable() && o.isSub(caps)
+                                ? 0
+                                : -1;
+                    }
+                });
+
+        SWGCGalaxy gxy = SWGCGalaxy.defaultGalaxy();
+        resources = new ArrayList<SWGKnownResource>(size);
+        for (int i = 0; i < size; ++i) {
+            SWGResourceClass rc = rcs.get(rnd.nextInt(rcs.size()));
+            SWGMutableResource mr = new SWGMutableResource("Bench" + i, rc);
+            mr.galaxy(gxy);
+
+            // some resources lack a value, some lack all values
+            int[] sv = new int[Stat.COUNT];
+            for (Stat s : Stat.values())
+                if (rc.has(s) && rnd.nextInt(10) != 0)
+                    sv[s.i] = rc.min(s)
+                            + rnd.nextInt(rc.max(s) - rc.min(s) + 1);
+            if (rnd.nextInt(20) != 0) mr.stats(sv, false);
+
+            resources.add(new SWGKnownResource(mr));
+        }
+        columns = new SWGResourceColumns(resources);
+
+        weights = new ArrayList<SWGWeights>();
+        filters = new ArrayList<SWGResourceFilter>();
+        for (int i = 0; i < 8; ++i) {
+            int[] w = new int[Stat.COUNT];
+            int left = 100;
+            for (int k = 1 + rnd.nextInt(4); k > 0; --k) {
+                int v = k == 1
+                        ? left
+                        : rnd.nextInt(left + 1);
+                w[rnd.nextInt(Stat.COUNT)] += v;
+                left -= v;
+            }
+            weights.add(new SWGWeights(w, false));
+
+            int[] f = new int[Stat.COUNT];
+            for (int k = 1 + rnd.nextInt(3); k > 0; --k)
+                f[rnd.nextInt(Stat.COUNT)] = 1 + rnd.nextInt(700);
+            filters.add(new SWGResourceFilter(f));
+        }
+    }
+
+    /**
+     * Helper method which benchmarks filtering for the specified mode and
+     * prints the result.
+     *
+     * @param all {@code true} if all values of the filter must match
+     */
+    private void filter(boolean all) {
+        long sink = 0;
+        long[] ns = new long[2];
+        for (int round = -rounds; round < rounds; ++round) {
+            for (SWGResourceFilter f : filters) {
+                long t = System.nanoTime();
+                for (SWGKnownResource kr : resources)
+                    if (f.isBetter(kr, all)) ++sink;
+                long u = System.nanoTime();
+                boolean[] flags = columns.isBetter(f, all);
+                long v = System.nanoTime();
+                sink += flags.length;
+
+                if (round >= 0) { // else warm-up
+                    ns[0] += u - t;
+                    ns[1] += v - u;
+                }
+            }
+        }
+        blackhole = sink;
+        print(all
+                ? "filter, all"
+                : "filter, any", ns);
+    }
+
+    /**
+     * The main method for this benchmark.
+     *
+     * @param args the command line options, see {@code -help}
+     */
+    public static void main(String[] args) {
+        int size = 20000;
+        int rounds = 50;
+        long seed = 1;
+
+        try {
+            for (int i = 0; i < args.length; ++i) {
+                String a = args[i];
+                if (a.equals("-help") || i + 1 >= args.length) {
+                    usage();
+                    return;
+                }
+                String v = args[++i];
+                if (a.equals("-resources")) size = Integer.parseInt(v);
+                else if (a.equals("-rounds")) rounds = Integer.parseInt(v);
+                else if (a.equals("-seed")) seed = Long.parseLong(v);
+                else {
+                    usage();
+                    return;
+                }
+            }
+        } catch (NumberFormatException e) {
+            usage();
+            return;
+        }
+        if (size <= 0 || rounds <= 0) {
+            usage();
+            return;
+        }
+
+        SWGRatingBenchmark b = new SWGRatingBenchmark(size, rounds, seed);
+        if (!b.verify()) {
+            System.out.println("Mismatch, the column kernels are broken");
+            System.exit(1);
+        }
+        System.out.println(String.format("%d resources, %d rounds",
+                Integer.valueOf(size), Integer.valueOf(rounds)));
+        b.rate(false);
+        b.rate(true);
+        b.filter(true);
+        b.filter(false);
+    }
+
+    /**
+     * Helper method which prints the result of a benchmark.
+     *
+     * @param name the name of the benchmark
+     * @param ns the total time in nanoseconds per resource and per column
+     */
+    private void print(String name, long[] ns) {
+        double n = (double) rounds * weights.size() * resources.size();
+        double r = ns[0] / n;
+        double c = ns[1] / n;
+        System.out.println(String.format(
+                "%-16s per resource %7.2f ns, columns %7.2f ns, gain %5.2fx",
+                name, Double.valueOf(r), Double.valueOf(c),
+                Double.valueOf(r / c)));
+    }
+
+    /**
+     * Helper method which benchmarks rating for the specified mode and prints
+     * the result.
+     *
+     * @param zeroIsMax {@code true} if zero-values are considered
+     */
+    private void rate(boolean zeroIsMax) {
+        double sink = 0;
+        long[] ns = new long[2];
+        for (int round = -rounds; round < rounds; ++round) {
+            for (SWGWeights w : weights) {
+                SWGWeights.RatingPlan plan = w.plan(caps, zeroIsMax, true);
+                long t = System.nanoTime();
+                for (SWGKnownResource kr : resources)
+                    sink += plan.rate(kr);
+                long u = System.nanoTime();
+                double[] rates = plan.rate(columns);
+                long v = System.nanoTime();
+                sink += rates[0];
+
+                if (round >= 0) { // else warm-up
+                    ns[0] += u - t;
+                    ns[1] += v - u;
+                }
+            }
+        }
+        blackhole = sink;
+        print(zeroIsMax
+                ? "rate, zero-max"
+                : "rate", ns);
+    }
+
+    /**
+     * Helper method which prints the command line options.
+     */
+    private static void usage() {
+        System.out.println("Usage: SWGRatingBenchmark [options]");
+        System.out.println("  -resources <n>   number of resources, 20000");
+        System.out.println("  -rounds <n>      number of timed rounds, 50");
+        System.out.println("  -seed <n>        seed for the random data, 1");
+        System.out.println("  -help            this text");
+    }
+
+    /**
+     * Helper method which determines if the column kernels yield results which
+     * are identical to the per-resource methods, rates are compared bit by
+     * bit.
+     *
+     * @return {@code true} if all results are identical
+     */
+    private boolean verify() {
+        for (SWGWeights w : weights)
+            for (int z = 0; z < 2; ++z)
+                for (int j = 0; j < 2; ++j) {
+                    SWGWeights.RatingPlan plan =
+                            w.plan(caps, z == 0, j == 0);
+                    double[] rates = plan.rate(columns);
+                    for (int r = 0; r < rates.length; ++r)
+                        if (Double.doubleToLongBits(rates[r]) != Double.
+                                doubleToLongBits(plan.rate(resources.get(r))))
+                            return false;
+                }
+
+        for (SWGResourceFilter f : filters)
+            for (int a = 0; a < 2; ++a) {
+                boolean[] flags = columns.isBetter(f, a == 0);
+                boolean[] has = columns.hasAllValues(f);
+                for (int r = 0; r < flags.length; ++r) {
+                    SWGKnownResource kr = resources.get(r);
+                    if (flags[r] != f.isBetter(kr, a == 0)
+                            || has[r] != f.hasAllValues(kr))
+                        return false;
+                }
+            }
+        return true;
+    }
+}
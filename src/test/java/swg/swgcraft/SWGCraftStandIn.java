@@ -0,0 +1,977 @@
+package swg.swgcraft;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import swg.crafting.Stat;
+import swg.crafting.resources.SWGResourceClass;
+import swg.model.SWGPlanet;
+import swg.tools.SOAPNode;
+import swg.tools.ZNumber;
+import swg.tools.ZString;
+import swg.tools.ZXml;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * This type is a local stand-in for SWGCraft.org, for offline load testing,
+ * latency testing, and regression testing of the download, SOAP submit, and
+ * cache-refresh paths. It is a small HTTP server which serves the same paths as
+ * SWGCraft.org from generated data:
+ * <ul>
+ * <li>the resource export per galaxy, gzipped XML</li>
+ * <li>the text and XML status files</li>
+ * <li>the catalog files for categories, professions, servers, and schematics;
+ * these are read from a data folder if one is specified, such as a copy of
+ * SWGAide's "crafting" folder, otherwise minimal documents are generated</li>
+ * <li>the SOAP operations which are used by {@link SWGSoapManager}: resource
+ * info by ID and by name, find resources, user info, and add, edit, deplete,
+ * revive, and add availability</li>
+ * </ul>
+ * Resources which are submitted over SOAP are added to the generated data and
+ * they are included in the next export. All GET requests support conditional
+ * requests by ETag and Last-Modified.
+ * <p>
+ * The server is configured from the command line: port, number of galaxies,
+ * resources per galaxy, latency and jitter, and the rate of injected errors.
+ * An injected error is either a "503 Service Unavailable" response or a
+ * connection which is closed without a response. Run with {@code -help} for
+ * the options.
+ * <p>
+ * SWGAide is pointed at the stand-in with the system properties
+ * {@code swgaide.baseURL} and optionally {@code swgaide.soapPath}, see
+ * {@link SWGCraft#getBaseURL()}, or with the corresponding options in
+ * SWGAide's preference keeper.
+ * <p>
+ * This type is for development only, it is in the test sources and it is not
+ * part of SWGAide.
+ */
+public final class SWGCraftStandIn implements HttpHandler {
+
+    /**
+     * The syllables for the names of generated resources.
+     */
+    private static final String[] SYLLABLES = { "ba", "che", "dro", "fa",
+            "gil", "ha", "ju", "ka", "lo", "me", "nu", "o", "pi", "qua", "ro",
+            "su", "ti", "u", "vo", "xa", "yi", "zo", "an", "el", "is", "or" };
+
+    /**
+     * The resource classes which are used for generated resources, the
+     * spawnable classes which are neither space nor recycled.
+     */
+    private final List<SWGResourceClass> classes;
+
+    /**
+     * The folder to read catalog files from, or {@code null}.
+     */
+    private final File data;
+
+    /**
+     * The rate of injected errors, 0.0 to 1.0.
+     */
+    private final double errors;
+
+    /**
+     * A map of galaxy IDs to cached export files, each is valid for as long as
+     * the version of the galaxy is unchanged.
+     */
+    private final Map<Integer, Export> exports =
+            new ConcurrentHashMap<Integer, Export>();
+
+    /**
+     * The IDs of the galaxies for which data is generated.
+     */
+    private final List<Integer> galaxies;
+
+    /**
+     * The next SWGCraft ID for a resource.
+     */
+    private final AtomicLong ids = new AtomicLong(1000);
+
+    /**
+     * The jitter in milliseconds which is randomly added to the latency.
+     */
+    private final int jitter;
+
+    /**
+     * The latency in milliseconds for each request.
+     */
+    private final int latency;
+
+    /**
+     * A map of lower case keys on the form "galaxy:name" to resources.
+     */
+    private final ConcurrentHashMap<String, Res> names =
+            new ConcurrentHashMap<String, Res>();
+
+    /**
+     * The number of handled requests.
+     */
+    private final AtomicLong requests = new AtomicLong();
+
+    /**
+     * A map of SWGCraft IDs to resources.
+     */
+    private final Map<Long, Res> resources = new ConcurrentHashMap<Long, Res>();
+
+    /**
+     * The path to the SOAP server.
+     */
+    private final String soapPath;
+
+    /**
+     * The time in seconds when data was last changed, this is the time of the
+     * status file.
+     */
+    private volatile long status = System.currentTimeMillis() / 1000L;
+
+    /**
+     * {@code true} if each request is printed to {@code System.out}.
+     */
+    private final boolean verbose;
+
+    /**
+     * A map of galaxy IDs to version numbers, a version is incremented each
+     * time the resources of a galaxy change.
+     */
+    private final Map<Integer, AtomicLong> versions =
+            new ConcurrentHashMap<Integer, AtomicLong>();
+
+    /**
+     * Creates an instance of this type and generates its data.
+     *
+     * @param galaxies the number of galaxies, ignored if the data folder has
+     *        a servers file
+     * @param perGalaxy the number of resources per galaxy
+     * @param latency the latency in milliseconds
+     * @param jitter the jitter in milliseconds
+     * @param errors the rate of injected errors
+     * @param data a folder with catalog files, or {@code null}
+     * @param soapPath the path to the SOAP server
+     * @param seed the seed for the generated data
+     * @param verbose {@code true} to print each request
+     * @throws Exception if there is an error reading the data folder
+     */
+    private SWGCraftStandIn(int galaxies, int perGalaxy, int latency,
+            int jitter, double errors, File data, String soapPath, long seed,
+            boolean verbose) throws Exception {
+
+        this.latency = latency;
+        this.jitter = jitter;
+        this.errors = errors;
+        this.data = data;
+        this.soapPath = soapPath;
+        this.verbose = verbose;
+
+        this.classes = new ArrayList<SWGResourceClass>();
+        for (int i = 1; i < 1000; ++i) {
+            try {
+                SWGResourceClass rc = SWGResourceClass.rc(i);
+                if (rc.isSpawnable() && !rc.isSpaceOrRecycled())
+                    classes.add(rc);
+            } catch (IllegalArgumentException e) {
+                // unused ID or out of range
+            }
+        }
+
+        this.galaxies = galaxyIDs(galaxies);
+        Random rnd = new Random(seed);
+        for (Integer g : this.galaxies) {
+            versions.put(g, new AtomicLong());
+            for (int i = 0; i < perGalaxy; ++i)
+                add(generate(g.intValue(), rnd));
+        }
+    }
+
+    /**
+     * Helper method which adds the specified resource and updates the version
+     * of its galaxy. If the name is taken at the galaxy this method does
+     * nothing and returns {@code false}.
+     *
+     * @param r a resource
+     * @return {@code false} if the name is taken
+     */
+    private boolean add(Res r) {
+        if (names.putIfAbsent(key(r.galaxy, r.name), r) != null) return false;
+        resources.put(Long.valueOf(r.id), r);
+        changed(r.galaxy);
+        return true;
+    }
+
+    /**
+     * Helper method which returns the specified text as a SOAP envelope.
+     *
+     * @param body the content of the SOAP body
+     * @return a SOAP envelope
+     */
+    private static byte[] envelope(String body) {
+        ZString z = new ZString("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+        z.app("<SOAP-ENV:Envelope xmlns:SOAP-ENV=")
+                .app("\"http://schemas.xmlsoap.org/soap/envelope/\" ")
+                .app("xmlns:ns1=\"urn:swgaide\"><SOAP-ENV:Body>");
+        z.app(body).app("</SOAP-ENV:Body></SOAP-ENV:Envelope>");
+        return z.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Helper method which increments the version of the specified galaxy and
+     * updates the status time.
+     *
+     * @param galaxy a galaxy ID
+     */
+    private void changed(int galaxy) {
+        AtomicLong v = versions.get(Integer.valueOf(galaxy));
+        if (v != null) v.incrementAndGet();
+        status = System.currentTimeMillis() / 1000L;
+    }
+
+    /**
+     * Helper method which returns the specified time formatted by the
+     * specified pattern, in UTC.
+     *
+     * @param pattern a pattern for {@link SimpleDateFormat}
+     * @param time a time in milliseconds
+     * @return a formatted date
+     */
+    private static String date(String pattern, long time) {
+        SimpleDateFormat df = new SimpleDateFormat(pattern, Locale.ENGLISH);
+        df.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return df.format(new Date(time));
+    }
+
+    /**
+     * Helper method which returns the content for the identified catalog
+     * file. If the data folder contains the file it is read, otherwise a
+     * minimal document is generated.
+     *
+     * @param name the file name
+     * @return the content
+     * @throws IOException if there is an I/O error
+     */
+    private byte[] catalog(String name) throws IOException {
+        if (data != null) {
+            File f = new File(data, name);
+            if (f.isFile()) return Files.readAllBytes(f.toPath());
+            if (name.endsWith(".gz")) {
+                f = new File(data, name.substring(0, name.length() - 3));
+                if (f.isFile()) return gzip(Files.readAllBytes(f.toPath()));
+            }
+        }
+
+        String stamp = date("yyyy-MM-dd HH:mm:ss 'UTC'", status * 1000L);
+
+        ZString z = new ZString("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        if (name.startsWith("servers")) {
+            z.app("<servers last_updated=\"").app(stamp).appnl("\">");
+            for (Integer g : galaxies)
+                z.app("<server name=\"StandIn").app(g).app("\" swgaide_id=\"")
+                        .app(g).app("\" folder_name=\"StandIn").app(g)
+                        .appnl("\" type=\"nge\" custom_schematics=\"false\""
+                                + " active=\"true\"/>");
+            z.appnl("</servers>");
+        } else {
+            String root = name.startsWith("categories")
+                    ? "categories"
+                    : name.startsWith("professions")
+                            ? "professions"
+                            : "schematics";
+            z.app('<').app(root).app(" last_updated=\"").app(stamp)
+                    .app("\"></").app(root).appnl(">");
+        }
+        byte[] b = z.toString().getBytes(StandardCharsets.UTF_8);
+        return name.endsWith(".gz")
+                ? gzip(b)
+                : b;
+    }
+
+    /**
+     * Helper method which returns the export file for the specified galaxy.
+     * The export is generated once per version of the galaxy.
+     *
+     * @param galaxy a galaxy ID
+     * @return an export file, or {@code null} if the galaxy is unknown
+     * @throws IOException if there is an error
+     */
+    private Export export(int galaxy) throws IOException {
+        Integer g = Integer.valueOf(galaxy);
+        AtomicLong v = versions.get(g);
+        if (v == null) return null;
+
+        long ver = v.get();
+        Export e = exports.get(g);
+        if (e != null && e.version == ver) return e;
+
+        ZString z = new ZString("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        z.appnl("<resources>");
+        for (Res r : resources.values()) {
+            if (r.galaxy != galaxy || r.depleted) continue;
+
+            z.app("<resource swgaide_id=\"").app(r.id).app("\"><name>")
+                    .app(r.name).app("</name><swgaide_type_id>")
+                    .app(r.rc.rcToken()).app("</swgaide_type_id><stats>");
+            for (Stat s : Stat.values())
+                if (r.stats[s.i] > 0)
+                    z.app('<').app(s.getName()).app('>').app(r.stats[s.i])
+                            .app("</").app(s.getName()).app('>');
+            z.app("</stats><available_timestamp>").app(r.added)
+                    .app("</available_timestamp><available_by>")
+                    .app(r.addedBy).app("</available_by><planets>");
+            synchronized (r) {
+                for (Integer p : r.planets)
+                    z.app("<planet swgaide_id=\"").app(p).app("\"/>");
+            }
+            z.appnl("</planets></resource>");
+        }
+        z.appnl("</resources>");
+
+        e = new Export(ver, status * 1000L,
+                gzip(z.toString().getBytes(StandardCharsets.UTF_8)));
+        exports.put(g, e);
+        return e;
+    }
+
+    /**
+     * Helper method which returns a SOAP fault with the specified message.
+     *
+     * @param msg a message
+     * @return a SOAP envelope
+     */
+    private static byte[] fault(String msg) {
+        return envelope("<SOAP-ENV:Fault><faultcode>SOAP-ENV:Server</faultcode>"
+                + "<faultstring>" + msg + "</faultstring></SOAP-ENV:Fault>");
+    }
+
+    /**
+     * Helper method which returns the IDs of the galaxies to generate data
+     * for. If the data folder contains a servers file the IDs of its active
+     * servers are used, otherwise the IDs 1 through {@code n}.
+     *
+     * @param n the number of galaxies
+     * @return a list of galaxy IDs
+     * @throws Exception if there is an error reading the servers file
+     */
+    private List<Integer> galaxyIDs(int n) throws Exception {
+        List<Integer> gs = new ArrayList<Integer>();
+        File f = data != null
+                ? new File(data, "servers.xml")
+                : null;
+        if (f != null && f.isFile()) {
+            NodeList nl = ZXml.parse(f).getElementsByTagName("server");
+            for (int i = 0; i < nl.getLength(); ++i) {
+                Element e = (Element) nl.item(i);
+                if (ZXml.booleanFromAttr(e, "active"))
+                    gs.add(Integer.valueOf(ZXml.intFromAttr(e, "swgaide_id")));
+            }
+        } else
+            for (int i = 1; i <= n; ++i)
+                gs.add(Integer.valueOf(i));
+        return gs;
+    }
+
+    /**
+     * Helper method which generates a resource for the specified galaxy with
+     * a random name, class, stats, and planets.
+     *
+     * @param galaxy a galaxy ID
+     * @param rnd a random generator
+     * @return a resource
+     */
+    private Res generate(int galaxy, Random rnd) {
+        SWGResourceClass rc = classes.get(rnd.nextInt(classes.size()));
+        int[] stats = new int[Stat.COUNT];
+        for (Stat s : Stat.values())
+            if (rc.has(s))
+                stats[s.i] = rc.min(s)
+                        + rnd.nextInt(Math.max(1, rc.max(s) - rc.min(s) + 1));
+
+        while (true) {
+            ZString n = new ZString();
+            int k = 2 + rnd.nextInt(3);
+            for (int i = 0; i < k; ++i)
+                n.app(SYLLABLES[rnd.nextInt(SYLLABLES.length)]);
+            String s = n.toString();
+            s = Character.toUpperCase(s.charAt(0)) + s.substring(1);
+            if (names.containsKey(key(galaxy, s))) continue;
+
+            Res r = new Res(ids.incrementAndGet(), galaxy, s, rc, stats);
+            SWGPlanet[] ps = SWGPlanet.values();
+            int np = 1 + rnd.nextInt(3);
+            for (int i = 0; i < np; ++i) {
+                SWGPlanet p = ps[rnd.nextInt(ps.length)];
+                if (p.id() > 0 && !r.planets.contains(Integer.valueOf(p.id())))
+                    r.planets.add(Integer.valueOf(p.id()));
+            }
+            return r;
+        }
+    }
+
+    /**
+     * Helper method which returns the specified data gzipped.
+     *
+     * @param b the data
+     * @return the gzipped data
+     * @throws IOException if there is an error
+     */
+    private static byte[] gzip(byte[] b) throws IOException {
+        ByteArrayOutputStream bo = new ByteArrayOutputStream(b.length / 4 + 64);
+        GZIPOutputStream gz = new GZIPOutputStream(bo);
+        gz.write(b);
+        gz.close();
+        return bo.toByteArray();
+    }
+
+    @Override
+    public void handle(HttpExchange ex) throws IOException {
+        try {
+            long n = requests.incrementAndGet();
+            String path = ex.getRequestURI().getPath();
+            if (verbose)
+                System.out.println(n + " " + ex.getRequestMethod() + ' ' + path);
+
+            int delay = latency + (jitter > 0
+                    ? ThreadLocalRandom.current().nextInt(jitter + 1)
+                    : 0);
+            if (delay > 0) Thread.sleep(delay);
+
+            if (errors > 0 && ThreadLocalRandom.current().nextDouble() < errors) {
+                if (ThreadLocalRandom.current().nextBoolean()) {
+                    ex.getResponseHeaders().set("Retry-After", "5");
+                    send(ex, 503, null, "text/plain");
+                }
+                // else close without response
+                return;
+            }
+
+            if (path.equals(soapPath)) {
+                soap(ex);
+            } else if (path.equals(SWGCraft.statusTxtPath)) {
+                send(ex, 200, Long.toString(status).getBytes(
+                        StandardCharsets.US_ASCII), "text/plain");
+            } else if (path.equals(SWGCraft.statusXmlPath)) {
+                send(ex, 200, ("<?xml version=\"1.0\"?><status><timestamp>"
+                        + status + "</timestamp></status>").getBytes(
+                        StandardCharsets.US_ASCII), "text/xml");
+            } else if (path.startsWith(SWGCraft.currentResourcesPath)
+                    && path.endsWith(".xml.gz")) {
+                String g = path.substring(
+                        SWGCraft.currentResourcesPath.length(),
+                        path.length() - 7);
+                Export e;
+                try {
+                    e = export(Integer.parseInt(g));
+                } catch (NumberFormatException x) {
+                    e = null;
+                }
+                if (e == null)
+                    send(ex, 404, null, "text/plain");
+                else
+                    sendConditional(ex, e.data, e.modified,
+                            "\"" + g + '-' + e.version + '"');
+            } else if (isCatalog(path)) {
+                byte[] b = catalog(path.substring(path.lastIndexOf('/') + 1));
+                sendConditional(ex, b, status * 1000L,
+                        "\"" + Integer.toHexString(
+                                Arrays.hashCode(b)) + '"');
+            } else
+                send(ex, 404, null, "text/plain");
+
+        } catch (Exception e) {
+            e.printStackTrace();
+            try {
+                send(ex, 500, null, "text/plain");
+            } catch (IOException x) { /* ignore */
+            }
+        } finally {
+            ex.close();
+        }
+    }
+
+    /**
+     * Helper method which determines if the specified path is one of the
+     * catalog files.
+     *
+     * @param path a path
+     * @return {@code true} if the path denotes a catalog file
+     */
+    private static boolean isCatalog(String path) {
+        return path.equals(SWGCraft.categoriesXmlPath)
+                || path.equals(SWGCraft.profLevelsXmlPath)
+                || path.equals(SWGCraft.serversXmlPath)
+                || path.equals(SWGCraft.schematicsXmlPath);
+    }
+
+    /**
+     * Helper method which returns a key for the specified galaxy and name.
+     *
+     * @param galaxy a galaxy ID
+     * @param name a resource name
+     * @return a key
+     */
+    private static String key(int galaxy, String name) {
+        return galaxy + ":" + name.toLowerCase(Locale.ENGLISH);
+    }
+
+    /**
+     * Starts a stand-in server. Run with {@code -help} for the options.
+     *
+     * @param args the command line arguments
+     * @throws Exception if there is an error
+     */
+    public static void main(String[] args) throws Exception {
+        int port = 8780;
+        int galaxies = 3;
+        int perGalaxy = 500;
+        int latency = 0;
+        int jitter = 0;
+        double errors = 0.0;
+        File data = null;
+        String soapPath = SWGCraft.soapServerPath;
+        long seed = 1;
+        boolean verbose = false;
+
+        try {
+            for (int i = 0; i < args.length; ++i) {
+                String a = args[i];
+                if (a.equals("-verbose")) {
+                    verbose = true;
+                    continue;
+                }
+                if (a.equals("-help") || i + 1 >= args.length) {
+                    usage();
+                    return;
+                }
+                String v = args[++i];
+                if (a.equals("-port")) port = Integer.parseInt(v);
+                else if (a.equals("-galaxies")) galaxies = Integer.parseInt(v);
+                else if (a.equals("-resources")) perGalaxy = Integer.parseInt(v);
+                else if (a.equals("-latency")) latency = Integer.parseInt(v);
+                else if (a.equals("-jitter")) jitter = Integer.parseInt(v);
+                else if (a.equals("-errors")) errors = Double.parseDouble(v);
+                else if (a.equals("-data")) data = new File(v);
+                else if (a.equals("-soap")) soapPath = v;
+                else if (a.equals("-seed")) seed = Long.parseLong(v);
+                else {
+                    usage();
+                    return;
+                }
+            }
+        } catch (NumberFormatException e) {
+            usage();
+            return;
+        }
+
+        SWGCraftStandIn si = new SWGCraftStandIn(galaxies, perGalaxy, latency,
+                jitter, errors, data, soapPath, seed, verbose);
+
+        HttpServer server = HttpServer.create(new InetSocketAddress(port), 64);
+        server.createContext("/", si);
+        server.setExecutor(Executors.newFixedThreadPool(16));
+        server.start();
+
+        System.out.println(String.format("SWGCraft stand-in at "
+                + "http://localhost:%d, %d galaxies, %d resources",
+                Integer.valueOf(port), Integer.valueOf(si.galaxies.size()),
+                Integer.valueOf(si.resources.size())));
+        System.out.println(String.format("Run SWGAide with "
+                + "-Dswgaide.baseURL=http://localhost:%d", Integer.valueOf(port)));
+    }
+
+    /**
+     * Helper method which reads the request body of the specified exchange.
+     *
+     * @param ex an exchange
+     * @return the request body
+     * @throws IOException if there is an I/O error
+     */
+    private static byte[] read(HttpExchange ex) throws IOException {
+        InputStream in = ex.getRequestBody();
+        ByteArrayOutputStream bo = new ByteArrayOutputStream(1024);
+        byte[] buf = new byte[4096];
+        int n;
+        while ((n = in.read(buf)) >= 0)
+            bo.write(buf, 0, n);
+        return bo.toByteArray();
+    }
+
+    /**
+     * Helper method which returns the specified resource as the elements of a
+     * resource info response.
+     *
+     * @param r a resource
+     * @return XML elements
+     */
+    private static String resourceInfo(Res r) {
+        ZString z = new ZString();
+        z.app("<ID>").app(r.id).app("</ID><Name>").app(r.name).app("</Name>");
+        z.app("<Class>").app(r.rc.rcID()).app("</Class>");
+        z.app("<ServerID>").app(r.galaxy).app("</ServerID>");
+        for (Stat s : Stat.values())
+            z.app('<').app(s.getName()).app('>').app(r.stats[s.i])
+                    .app("</").app(s.getName()).app('>');
+        z.app("<AddedStamp>").app(r.added).app("</AddedStamp>");
+        z.app("<AddedBy>1</AddedBy>");
+        return z.toString();
+    }
+
+    /**
+     * Helper method which sends a response with the specified status and
+     * content.
+     *
+     * @param ex an exchange
+     * @param code the HTTP status
+     * @param body the content, or {@code null}
+     * @param type the content type
+     * @throws IOException if there is an I/O error
+     */
+    private static void send(HttpExchange ex, int code, byte[] body,
+            String type) throws IOException {
+
+        ex.getResponseHeaders().set("Content-Type", type);
+        if (body == null || code == 304
+                || ex.getRequestMethod().equals("HEAD")) {
+            ex.sendResponseHeaders(code, -1);
+            return;
+        }
+        ex.sendResponseHeaders(code, body.length);
+        OutputStream out = ex.getResponseBody();
+        out.write(body);
+        out.close();
+    }
+
+    /**
+     * Helper method which sends the specified content with validators, or
+     * "304 Not Modified" if the request is conditional and the content is not
+     * modified.
+     *
+     * @param ex an exchange
+     * @param body the content
+     * @param modified the modification time in milliseconds
+     * @param etag the ETag for the content
+     * @throws IOException if there is an I/O error
+     */
+    private static void sendConditional(HttpExchange ex, byte[] body,
+            long modified, String etag) throws IOException {
+
+        String lm = date("EEE, dd MMM yyyy HH:mm:ss 'GMT'", modified);
+
+        ex.getResponseHeaders().set("ETag", etag);
+        ex.getResponseHeaders().set("Last-Modified", lm);
+
+        String inm = ex.getRequestHeaders().getFirst("If-None-Match");
+        String ims = ex.getRequestHeaders().getFirst("If-Modified-Since");
+        if ((inm != null && inm.equals(etag))
+                || (inm == null && lm.equals(ims)))
+            send(ex, 304, null, "application/octet-stream");
+        else
+            send(ex, 200, body, "application/octet-stream");
+    }
+
+    /**
+     * Helper method which handles a SOAP request.
+     *
+     * @param ex an exchange
+     * @throws Exception if there is an error
+     */
+    private void soap(HttpExchange ex) throws Exception {
+        SOAPNode body = SOAPNode.parse(new ByteArrayInputStream(
+                read(ex))).child("Body");
+        SOAPNode op = body == null
+                ? null
+                : body.child(0);
+        if (op == null) {
+            send(ex, 500, fault("No operation"), "text/xml; charset=utf-8");
+            return;
+        }
+
+        String r = soap(op.name(), op);
+        if (r == null)
+            send(ex, 500, fault("Not found"), "text/xml; charset=utf-8");
+        else
+            send(ex, 200, envelope("<ns1:" + op.name() + "Response>" + r
+                    + "</ns1:" + op.name() + "Response>"),
+                    "text/xml; charset=utf-8");
+    }
+
+    /**
+     * Helper method which executes the identified SOAP operation and returns
+     * the content of its response element, or {@code null} for a fault. The
+     * responses are shaped as they are read by {@link SWGSoapManager}.
+     *
+     * @param name the name of the operation
+     * @param op the operation element of the request
+     * @return the content of the response, or {@code null}
+     */
+    private String soap(String name, SOAPNode op) {
+        if (name.equals("GetResourceInfoFromID")) {
+            Res r = resources.get(Long.valueOf(ZNumber.longVal(op.text("id"))));
+            return r == null
+                    ? null
+                    : resourceInfo(r);
+        }
+        if (name.equals("GetResourceInfo")) {
+            SOAPNode in = op.child("Input");
+            Res r = in == null
+                    ? null
+                    : names.get(key((int) ZNumber.longVal(in.text("server")),
+                            in.text("name")));
+            return r == null
+                    ? null
+                    : "<return>" + resourceInfo(r) + "</return>";
+        }
+        if (name.equals("FindResources")) {
+            SOAPNode in = op.child("Input");
+            if (in == null) return null;
+            String pre = key((int) ZNumber.longVal(in.text("server")),
+                    in.text("name"));
+            ZString z = new ZString("<return>");
+            for (Map.Entry<String, Res> e : names.entrySet())
+                if (e.getKey().startsWith(pre))
+                    z.app("<item><name>").app(e.getValue().name)
+                            .app("</name><swgaide_type_id>")
+                            .app(e.getValue().rc.rcID())
+                            .app("</swgaide_type_id></item>");
+            return z.app("</return>").toString();
+        }
+        if (name.equals("GetUserInfo") || name.equals("GetUserInfoByID"))
+            return "<return><UserID>1</UserID><Name>StandIn</Name>"
+                    + "<Server>0</Server><Planet>0</Planet><Posts>0</Posts>"
+                    + "<RegStamp>0</RegStamp></return>";
+        if (name.equals("GetDetailedUserInfo"))
+            return "<return><Username>StandIn</Username><Dateformat>Y-m-d"
+                    + "</Dateformat><Email>stand.in@localhost</Email>"
+                    + "<LastStamp>" + status + "</LastStamp>"
+                    + "<Timezone>UTC</Timezone></return>";
+        if (name.equals("SoapAddAvailability")) {
+            SOAPNode in = op.child("AddAvailabilityInput");
+            Res r = in == null
+                    ? null
+                    : resources.get(Long.valueOf(ZNumber.longVal(
+                            in.text("ResourceID"))));
+            if (r == null) return "4";
+            Integer p = Integer.valueOf((int) ZNumber.longVal(in.text("Planet")));
+            synchronized (r) {
+                if (!r.planets.contains(p)) r.planets.add(p);
+                r.depleted = false;
+            }
+            changed(r.galaxy);
+            return "1";
+        }
+        if (name.equals("SoapDespawn") || name.equals("SoapRespawn")) {
+            SOAPNode in = op.child(name.equals("SoapDespawn")
+                    ? "DespawnInput"
+                    : "RespawnInput");
+            Res r = in == null
+                    ? null
+                    : resources.get(Long.valueOf(ZNumber.longVal(
+                            in.text("ResourceID"))));
+            if (r == null) return "4";
+            r.depleted = name.equals("SoapDespawn");
+            changed(r.galaxy);
+            return "1";
+        }
+        if (name.equals("SoapEditResource")) {
+            SOAPNode in = op.child("EditResourceInput");
+            Res r = in == null
+                    ? null
+                    : resources.get(Long.valueOf(ZNumber.longVal(
+                            in.text("ResourceID"))));
+            if (r == null) return "<return>4</return>";
+            stats(in.child("Stats"), r.stats);
+            changed(r.galaxy);
+            return "<return>3</return>";
+        }
+        if (name.equals("SoapAddResource")) {
+            SOAPNode in = op.child("AddResourceInput");
+            if (in == null) return null;
+            int g = (int) ZNumber.longVal(in.text("Server"));
+            Res r = names.get(key(g, in.text("Name")));
+            if (r == null) {
+                SWGResourceClass rc;
+                try {
+                    rc = SWGResourceClass.rc(in.text("Class"));
+                } catch (IllegalArgumentException e) {
+                    return "<return><Status>4</Status></return>";
+                }
+                int[] stats = new int[Stat.COUNT];
+                stats(in.child("Stats"), stats);
+                r = new Res(ids.incrementAndGet(), g, in.text("Name"), rc,
+                        stats);
+                if (!versions.containsKey(Integer.valueOf(g)))
+                    versions.put(Integer.valueOf(g), new AtomicLong());
+                if (!add(r)) r = names.get(key(g, r.name));
+            }
+            int p = (int) ZNumber.longVal(in.text("Planet"));
+            if (p > 0) {
+                synchronized (r) {
+                    if (!r.planets.contains(Integer.valueOf(p)))
+                        r.planets.add(Integer.valueOf(p));
+                }
+                changed(g);
+            }
+            return "<return><Status>1</Status><ResourceID>" + r.id
+                    + "</ResourceID></return>";
+        }
+        return null;
+    }
+
+    /**
+     * Helper method which reads the stats of the specified element to the
+     * specified array. If the element is {@code null} this method does
+     * nothing.
+     *
+     * @param node a stats element, or {@code null}
+     * @param stats the array to update
+     */
+    private static void stats(SOAPNode node, int[] stats) {
+        if (node == null) return;
+        for (Stat s : Stat.values()) {
+            SOAPNode c = node.child(s.getName());
+            if (c != null) stats[s.i] = (int) ZNumber.longVal(c.text());
+        }
+    }
+
+    /**
+     * Prints the command line options to {@code System.out}.
+     */
+    private static void usage() {
+        System.out.println("Usage: SWGCraftStandIn [options]\n"
+                + "  -port <n>       the port, default 8780\n"
+                + "  -galaxies <n>   the number of galaxies, default 3\n"
+                + "  -resources <n>  resources per galaxy, default 500\n"
+                + "  -latency <ms>   latency per request, default 0\n"
+                + "  -jitter <ms>    random latency added, default 0\n"
+                + "  -errors <rate>  rate of injected errors, 0.0 to 1.0\n"
+                + "  -data <dir>     a folder with catalog files and servers.xml\n"
+                + "  -soap <path>    the path to the SOAP server\n"
+                + "  -seed <n>       the seed for generated data, default 1\n"
+                + "  -verbose        print each request");
+    }
+
+    /**
+     * A cached export file for a galaxy.
+     */
+    private static final class Export {
+
+        /**
+         * The gzipped content.
+         */
+        final byte[] data;
+
+        /**
+         * The modification time in milliseconds.
+         */
+        final long modified;
+
+        /**
+         * The version of the galaxy this export is generated from.
+         */
+        final long version;
+
+        /**
+         * Creates an instance of this type.
+         *
+         * @param version the version of the galaxy
+         * @param modified the modification time in milliseconds
+         * @param data the gzipped content
+         */
+        Export(long version, long modified, byte[] data) {
+            this.version = version;
+            this.modified = modified;
+            this.data = data;
+        }
+    }
+
+    /**
+     * A resource of the generated data.
+     */
+    private static final class Res {
+
+        /**
+         * The time in seconds when this resource was added.
+         */
+        final long added = System.currentTimeMillis() / 1000L;
+
+        /**
+         * The name of the player who added this resource.
+         */
+        final String addedBy = "StandIn";
+
+        /**
+         * {@code true} if this resource is depleted.
+         */
+        volatile boolean depleted;
+
+        /**
+         * The galaxy ID for this resource.
+         */
+        final int galaxy;
+
+        /**
+         * The SWGCraft ID for this resource.
+         */
+        final long id;
+
+        /**
+         * The name of this resource.
+         */
+        final String name;
+
+        /**
+         * The IDs of the planets this resource is reported at.
+         */
+        final List<Integer> planets = new ArrayList<Integer>(3);
+
+        /**
+         * The resource class of this resource.
+         */
+        final SWGResourceClass rc;
+
+        /**
+         * The stats of this resource, indexed by {@link Stat#i}.
+         */
+        final int[] stats;
+
+        /**
+         * Creates an instance of this type.
+         *
+         * @param id the SWGCraft ID
+         * @param galaxy the galaxy ID
+         * @param name the name
+         * @param rc the resource class
+         * @param stats the stats
+         */
+        Res(long id, int galaxy, String name, SWGResourceClass rc, int[] stats) {
+            this.id = id;
+            this.galaxy = galaxy;
+            this.name = name;
+            this.rc = rc;
+            this.stats = stats;
+        }
+    }
+}